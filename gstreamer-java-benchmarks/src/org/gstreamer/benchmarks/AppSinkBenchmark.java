@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.gstreamer.elements.AppSink;
+import org.gstreamer.elements.BufferBatch;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of pulling buffers from an {@link AppSink} fed by fakesrc, one
+ * at a time and in batches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppSinkBenchmark {
+    private static final String PIPELINE = "fakesrc sizetype=fixed sizemax=4096 filltype=nothing "
+            + "! appsink name=sink sync=false max-buffers=64";
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Source {
+        Pipeline pipeline;
+        AppSink sink;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            GstInit.init();
+            pipeline = Pipeline.launch(PIPELINE);
+            sink = (AppSink) pipeline.getElementByName("sink");
+            pipeline.setState(State.PLAYING);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pipeline.setState(State.NULL);
+            pipeline.dispose();
+        }
+    }
+
+    /**
+     * Pulls in batches, which needs the sink callbacks installed before the
+     * pipeline starts, so nothing is left queued in the sink itself.
+     */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class BatchSource {
+        final BufferBatch batch = new BufferBatch(32);
+        Pipeline pipeline;
+        AppSink sink;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            GstInit.init();
+            pipeline = Pipeline.launch(PIPELINE);
+            sink = (AppSink) pipeline.getElementByName("sink");
+            sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+            pipeline.setState(State.PLAYING);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            batch.release();
+            pipeline.setState(State.NULL);
+            pipeline.dispose();
+        }
+    }
+
+    /** Counts buffers, so batched pulls report buffers per second too. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Counters {
+        public long buffers;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            buffers = 0;
+        }
+    }
+
+    @Benchmark
+    public int pullBuffer(Source source, Counters counters) {
+        Buffer buffer = source.sink.pullBuffer();
+        int size = buffer.getSize();
+        buffer.dispose();
+        counters.buffers++;
+        return size;
+    }
+
+    @Benchmark
+    public int pullBuffers(BatchSource source, Counters counters) {
+        int n = source.sink.pullBuffers(source.batch, 1, TimeUnit.SECONDS);
+        counters.buffers += n;
+        return n;
+    }
+}
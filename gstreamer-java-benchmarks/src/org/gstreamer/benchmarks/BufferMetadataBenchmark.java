@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.ClockTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading and writing the metadata of a {@link Buffer}, as a per-buffer
+ * callback would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferMetadataBenchmark {
+    private Buffer buffer;
+    private long n = 0;
+
+    @Setup
+    public void setUp() {
+        GstInit.init();
+        buffer = new Buffer(4096);
+        buffer.setTimestamp(ClockTime.fromMillis(40));
+        buffer.setDuration(ClockTime.fromMillis(40));
+        buffer.setOffset(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.dispose();
+    }
+
+    @Benchmark
+    public void readAll(Blackhole bh) {
+        bh.consume(buffer.getTimestamp());
+        bh.consume(buffer.getDuration());
+        bh.consume(buffer.getOffset());
+        bh.consume(buffer.getLastOffset());
+        bh.consume(buffer.getSize());
+        bh.consume(buffer.getFlags());
+    }
+
+    @Benchmark
+    public ClockTime readTimestamp() {
+        return buffer.getTimestamp();
+    }
+
+    @Benchmark
+    public void writeTimestamp() {
+        buffer.setTimestamp(ClockTime.fromNanos(++n));
+    }
+
+    @Benchmark
+    public int readByteBuffer() {
+        return buffer.getByteBuffer().remaining();
+    }
+}
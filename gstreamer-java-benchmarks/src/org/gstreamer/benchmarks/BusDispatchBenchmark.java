@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gstreamer.Bus;
+import org.gstreamer.Element;
+import org.gstreamer.ElementFactory;
+import org.gstreamer.Format;
+import org.gstreamer.Message;
+import org.gstreamer.Pipeline;
+import org.gstreamer.message.DurationMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The latency from posting a message on a {@link Bus} until a listener
+ * receives it on the dispatch thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusDispatchBenchmark {
+    private Pipeline pipeline;
+    private Element src;
+    private Bus bus;
+    private final AtomicLong received = new AtomicLong();
+    private long posted = 0;
+
+    @Setup
+    public void setUp() {
+        GstInit.init();
+        pipeline = new Pipeline("BusDispatchBenchmark");
+        src = ElementFactory.make("fakesrc", "src");
+        pipeline.add(src);
+        bus = pipeline.getBus();
+        bus.connect(new Bus.MESSAGE() {
+            public void busMessage(Bus bus, Message message) {
+                received.incrementAndGet();
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.dispose();
+    }
+
+    @Benchmark
+    public long postAndDeliver() {
+        final long target = ++posted;
+        bus.post(new DurationMessage(src, Format.TIME, target));
+        long n;
+        while ((n = received.get()) < target) {
+            Thread.yield();
+        }
+        return n;
+    }
+}
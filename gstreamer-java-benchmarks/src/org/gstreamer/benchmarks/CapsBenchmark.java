@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Caps;
+import org.gstreamer.Structure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading the fields of negotiated video caps, as size trackers and
+ * frame sinks do for every caps change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapsBenchmark {
+    private static final String CAPS = "video/x-raw-rgb, bpp=32, depth=24, "
+            + "width=640, height=480, framerate=25/1, pixel-aspect-ratio=1/1";
+    private Caps caps;
+
+    @Setup
+    public void setUp() {
+        GstInit.init();
+        caps = Caps.fromString(CAPS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        caps.dispose();
+    }
+
+    @Benchmark
+    public void readVideoFields(Blackhole bh) {
+        Structure s = caps.getStructure(0);
+        bh.consume(s.getName());
+        bh.consume(s.getInteger("width"));
+        bh.consume(s.getInteger("height"));
+        bh.consume(s.getFraction("framerate"));
+    }
+
+    @Benchmark
+    public int readWidth() {
+        return caps.getStructure(0).getInteger("width");
+    }
+
+    @Benchmark
+    public Caps parse() {
+        Caps c = Caps.fromString(CAPS);
+        c.dispose();
+        return c;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import org.gstreamer.Gst;
+
+/**
+ * Initializes gstreamer once per JVM, however many benchmarks run in it.
+ */
+final class GstInit {
+    private static boolean initialized = false;
+
+    private GstInit() {}
+
+    static synchronized void init() {
+        if (!initialized) {
+            Gst.init("Benchmarks", new String[] {});
+            initialized = true;
+        }
+    }
+}
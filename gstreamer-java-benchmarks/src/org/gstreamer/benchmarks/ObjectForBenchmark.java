@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Element;
+import org.gstreamer.ElementFactory;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.NativeObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Wrapping native pointers with {@link NativeObject#objectFor}, both for an
+ * object that already has a wrapper and for a new one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectForBenchmark {
+    private Element element;
+    private Pointer elementPtr;
+    private Pointer bufferPtr;
+
+    @Setup
+    public void setUp() {
+        GstInit.init();
+        element = ElementFactory.make("fakesink", "sink");
+        elementPtr = GstDirectAPI.ptr(element);
+        bufferPtr = GstDirectAPI.gst_buffer_new_and_alloc(64);
+    }
+
+    @TearDown
+    public void tearDown() {
+        GstDirectAPI.gst_mini_object_unref(bufferPtr);
+        element.dispose();
+    }
+
+    /** Looks up the existing wrapper of a GObject. */
+    @Benchmark
+    public Element existingGObject() {
+        return NativeObject.objectFor(elementPtr, Element.class, true);
+    }
+
+    /** Creates a new borrowed wrapper for a mini object, as callbacks do. */
+    @Benchmark
+    public Buffer newMiniObject() {
+        Buffer buffer = NativeObject.objectFor(bufferPtr, Buffer.class, false, false);
+        buffer.dispose();
+        return buffer;
+    }
+
+    /** Creates and disposes an owned buffer, native allocation included. */
+    @Benchmark
+    public Buffer newBuffer() {
+        Buffer buffer = new Buffer(64);
+        buffer.dispose();
+        return buffer;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Element;
+import org.gstreamer.ElementFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round-trips of element properties through {@link Element#set}/{@link Element#get}
+ * and the primitive accessors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyBenchmark {
+    private Element src;
+    private int value = 0;
+
+    @Setup
+    public void setUp() {
+        GstInit.init();
+        src = ElementFactory.make("fakesrc", "src");
+    }
+
+    @TearDown
+    public void tearDown() {
+        src.dispose();
+    }
+
+    @Benchmark
+    public Object setGetBoxed() {
+        src.set("num-buffers", ++value & 0xffff);
+        return src.get("num-buffers");
+    }
+
+    @Benchmark
+    public int setGetInt() {
+        src.setInt("num-buffers", ++value & 0xffff);
+        return src.getInt("num-buffers");
+    }
+
+    @Benchmark
+    public boolean setGetBoolean() {
+        src.setBoolean("silent", (++value & 1) == 0);
+        return src.getBoolean("silent");
+    }
+
+    @Benchmark
+    public Object getString() {
+        return src.get("name");
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.benchmarks;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gstreamer.Caps;
+import org.gstreamer.Element;
+import org.gstreamer.ElementFactory;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.gstreamer.elements.RGBDataSink;
+import org.gstreamer.elements.RGBFramePool;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame rate of {@link RGBDataSink} fed by an unsynchronized videotestsrc,
+ * with the plain listener that gets a fresh buffer per frame and with
+ * frames leased from an {@link RGBFramePool}.  Each operation waits for at
+ * least one frame to reach the listener; the <tt>frames</tt> counter is the
+ * frame rate, since frames that arrive together end one operation.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RGBDataSinkBenchmark {
+    @Param({ "320x240", "1280x720" })
+    public String size;
+
+    @Param({ "listener", "pool" })
+    public String delivery;
+
+    private Pipeline pipeline;
+    private final AtomicLong frames = new AtomicLong();
+    private long seen = 0;
+
+    /** Counts frames, as several can arrive within one operation. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Counters {
+        public long frames;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            frames = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        GstInit.init();
+        String[] dims = size.split("x");
+        pipeline = new Pipeline("RGBDataSinkBenchmark");
+        Element src = ElementFactory.make("videotestsrc", "src");
+        src.set("pattern", 2); // black, so the source does little work
+        Element filter = ElementFactory.make("capsfilter", "filter");
+        filter.setCaps(Caps.fromString("video/x-raw-yuv, width=" + dims[0]
+                + ", height=" + dims[1] + ", framerate=1000/1"));
+        RGBDataSink sink = new RGBDataSink("sink", new RGBDataSink.Listener() {
+            public void rgbFrame(boolean isPrerollFrame, int width, int height, IntBuffer rgb) {
+                frames.incrementAndGet();
+            }
+        });
+        if ("pool".equals(delivery)) {
+            sink.setFrameListener(new RGBFramePool.FrameListener() {
+                public void rgbFrame(boolean isPrerollFrame, RGBFramePool.Frame frame) {
+                    frame.release();
+                    frames.incrementAndGet();
+                }
+            }, new RGBFramePool(4, true));
+        }
+        sink.getSinkElement().setSync(false);
+        pipeline.addMany(src, filter, sink);
+        Element.linkMany(src, filter, sink);
+        pipeline.setState(State.PLAYING);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.setState(State.NULL);
+        pipeline.dispose();
+    }
+
+    @Benchmark
+    public long frame(Counters counters) {
+        long n;
+        while ((n = frames.get()) == seen) {
+            Thread.yield();
+        }
+        counters.frames += n - seen;
+        seen = n;
+        return n;
+    }
+}
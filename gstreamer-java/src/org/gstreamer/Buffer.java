@@ -24,9 +24,9 @@ import java.nio.ByteBuffer;
 
 import org.gstreamer.lowlevel.GstBufferAPI;
 import org.gstreamer.lowlevel.GstBufferAPI.BufferStruct;
-import org.gstreamer.lowlevel.GstMiniObjectAPI;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.GstMiniObjectAPI.MiniObjectStruct;
 import org.gstreamer.lowlevel.GstNative;
-import org.gstreamer.lowlevel.annotations.CallerOwnsReturn;
 
 import com.sun.jna.Pointer;
 
@@ -86,25 +86,34 @@ import com.sun.jna.Pointer;
  * gst_buffer_merge() and gst_buffer_span() if the gst_buffer_is_span_fast()
  * function returns TRUE.
  * <p>
+ * The metadata accessors read and write the GstBuffer fields directly at
+ * offsets computed once from {@link BufferStruct}.  The <tt>...Nanos</tt>
+ * variants and {@link #readMetadata} do not allocate, so they are the ones to
+ * use when inspecting every buffer of a stream.
  */
 public class Buffer extends MiniObject {
     public static final String GTYPE_NAME = "GstBuffer";
 
-    private static interface API extends GstBufferAPI, GstMiniObjectAPI {
-        @CallerOwnsReturn Pointer ptr_gst_buffer_new();
-        @CallerOwnsReturn Pointer ptr_gst_buffer_new_and_alloc(int size);
-    }
-    private static final API gst = GstNative.load(API.class);
+    private static final GstBufferAPI gst = GstNative.load(GstBufferAPI.class);
+    private static final int FLAGS_OFFSET = BufferStruct.offsetOf("mini_object")
+            + MiniObjectStruct.offsetOf("flags");
+    private static final int DATA_OFFSET = BufferStruct.offsetOf("data");
+    private static final int SIZE_OFFSET = BufferStruct.offsetOf("size");
+    private static final int TIMESTAMP_OFFSET = BufferStruct.offsetOf("timestamp");
+    private static final int DURATION_OFFSET = BufferStruct.offsetOf("duration");
+    private static final int OFFSET_OFFSET = BufferStruct.offsetOf("offset");
+    private static final int OFFSET_END_OFFSET = BufferStruct.offsetOf("offset_end");
+
     public Buffer(Initializer init) {
         super(init);
-        struct = new BufferStruct(handle());
+        trackNativeSize();
     }
     
     /**
      * Creates a newly allocated buffer without any data.
      */
     public Buffer() {
-        this(initializer(gst.ptr_gst_buffer_new()));
+        this(initializer(GstDirectAPI.gst_buffer_new()));
     }
     
     /**
@@ -121,7 +130,7 @@ public class Buffer extends MiniObject {
     }
     
     private static Pointer allocBuffer(int size) {
-        Pointer ptr = gst.ptr_gst_buffer_new_and_alloc(size);
+        Pointer ptr = GstDirectAPI.gst_buffer_new_and_alloc(size);
         if (ptr == null) {
             throw new OutOfMemoryError("Could not allocate Buffer of size "+ size);
         }
@@ -168,7 +177,7 @@ public class Buffer extends MiniObject {
      * @return The new Buffer, or null if the arguments were invalid.
      */
     public Buffer createSubBuffer(int offset, int size) {
-        return gst.gst_buffer_create_sub(this, offset, size);
+        return objectFor(GstDirectAPI.gst_buffer_create_sub(handle(), offset, size), Buffer.class, -1, true);
     }
     
     /**
@@ -192,7 +201,8 @@ public class Buffer extends MiniObject {
      * @return A writable Buffer referring to the same memory as this one.
      */
     public Buffer makeWritable() {
-        Buffer buf = (Buffer) gst.gst_mini_object_make_writable(this);
+        Buffer buf = objectFor(GstDirectAPI.gst_mini_object_make_writable(GstDirectAPI.invalidate(this)), 
+                Buffer.class, -1, true);
         if (buf == null) {
             throw new NullPointerException("Could not make Buffer writable");
         }
@@ -208,7 +218,12 @@ public class Buffer extends MiniObject {
      * @return the size of the buffer data in bytes.
      */
     public int getSize() {
-        return (Integer) struct.readField("size");
+        return handle().getInt(SIZE_OFFSET);
+    }
+
+    @Override
+    protected long getNativeSize() {
+        return getSize();
     }
     /**
      * Gets the duration in time of the buffer data, can be {@link ClockTime#NONE}
@@ -217,11 +232,28 @@ public class Buffer extends MiniObject {
      * @return a ClockTime representing the duration.
      */
     public ClockTime getDuration() {
-        return (ClockTime) struct.readField("duration");
+        return ClockTime.fromNanos(getDurationNanos());
     }
     public void setDuration(ClockTime dur) {
-        struct.duration = dur;
-        struct.writeField("duration");
+        setDurationNanos(dur.toNanos());
+    }
+    
+    /**
+     * Gets the duration of the buffer data in nanoseconds.
+     * 
+     * @return the duration, or -1 if it is not known or relevant.
+     */
+    public long getDurationNanos() {
+        return handle().getLong(DURATION_OFFSET);
+    }
+    
+    /**
+     * Sets the duration of the buffer data in nanoseconds.
+     * 
+     * @param duration the duration, or -1 if it is not known or relevant.
+     */
+    public void setDurationNanos(long duration) {
+        handle().setLong(DURATION_OFFSET, duration);
     }
     /**
      * Gets the timestamp in time of the buffer data, can be {@link ClockTime#NONE}
@@ -230,7 +262,7 @@ public class Buffer extends MiniObject {
      * @return a ClockTime representing the timestamp.
      */
     public ClockTime getTimestamp() {
-        return (ClockTime) struct.readField("timestamp");
+        return ClockTime.fromNanos(getTimestampNanos());
     }
     
     /**
@@ -238,8 +270,25 @@ public class Buffer extends MiniObject {
      * when the timestamp is not known or relevant.
      */
     public void setTimestamp(ClockTime timestamp) {
-        struct.timestamp = timestamp;
-        struct.writeField("timestamp");
+        setTimestampNanos(timestamp.toNanos());
+    }
+    
+    /**
+     * Gets the timestamp of the buffer data in nanoseconds.
+     * 
+     * @return the timestamp, or -1 if it is not known or relevant.
+     */
+    public long getTimestampNanos() {
+        return handle().getLong(TIMESTAMP_OFFSET);
+    }
+    
+    /**
+     * Sets the timestamp of the buffer data in nanoseconds.
+     * 
+     * @param timestamp the timestamp, or -1 if it is not known or relevant.
+     */
+    public void setTimestampNanos(long timestamp) {
+        handle().setLong(TIMESTAMP_OFFSET, timestamp);
     }
     
     /**
@@ -250,14 +299,14 @@ public class Buffer extends MiniObject {
      * media type associated with the buffer.
      */
     public Caps getCaps() {
-        return gst.gst_buffer_get_caps(this);
+        return objectFor(GstDirectAPI.gst_buffer_get_caps(handle()), Caps.class, -1, true);
     }
     /**
      * Sets the media type on the buffer. 
      * @param caps the {@link Caps} describing the media type.
      */
     public void setCaps(Caps caps) {
-        gst.gst_buffer_set_caps(this, caps);
+        GstDirectAPI.gst_buffer_set_caps(handle(), GstDirectAPI.ptr(caps));
     }
     
     /**
@@ -269,7 +318,7 @@ public class Buffer extends MiniObject {
     public synchronized ByteBuffer getByteBuffer() {
         if (byteBuffer == null) {
             int size = getSize();
-            Pointer data = (Pointer) struct.readField("data");
+            Pointer data = handle().getPointer(DATA_OFFSET);
             if (data != null && size > 0) {
                 byteBuffer = data.getByteBuffer(0, size);
             }
@@ -289,7 +338,7 @@ public class Buffer extends MiniObject {
      * @return the offset
      */
     public long getOffset() {
-        return (Long) struct.readField("offset");
+        return handle().getLong(OFFSET_OFFSET);
     }
     
     /**
@@ -299,8 +348,7 @@ public class Buffer extends MiniObject {
      * @see #getOffset
      */
     public void setOffset(long offset) {
-        struct.offset = offset;
-        struct.writeField("offset");
+        handle().setLong(OFFSET_OFFSET, offset);
     }
     
     /**
@@ -310,7 +358,7 @@ public class Buffer extends MiniObject {
      * @return the last offset
      */
     public long getLastOffset() {
-        return (Long) struct.readField("offset_end");
+        return handle().getLong(OFFSET_END_OFFSET);
     }
     
     /**
@@ -319,8 +367,7 @@ public class Buffer extends MiniObject {
      * 
      */
     public void setLastOffset(long offset) {
-        struct.offset_end = offset;
-        struct.writeField("offset_end");
+        handle().setLong(OFFSET_END_OFFSET, offset);
     }
     /**
      * Gets GstBuffer flags
@@ -328,9 +375,38 @@ public class Buffer extends MiniObject {
      * @return an integer value containing flags
      */
     public int getFlags() {
-        return struct.mini_object.flags;
+        return handle().getInt(FLAGS_OFFSET);
+    }
+
+    /**
+     * Sets GstBuffer flags
+     *
+     * @param flags an integer value containing flags
+     */
+    public void setFlags(int flags) {
+        handle().setInt(FLAGS_OFFSET, flags);
+    }
+
+    /**
+     * Reads the size, timestamp, duration, offsets and flags of this buffer
+     * in one go.
+     * <p>
+     * The same {@link BufferMeta} can be passed in for every buffer, so
+     * nothing is allocated.
+     *
+     * @param meta the metadata holder to fill in.
+     * @return <tt>meta</tt>.
+     */
+    public BufferMeta readMetadata(BufferMeta meta) {
+        Pointer ptr = handle();
+        meta.size = ptr.getInt(SIZE_OFFSET);
+        meta.timestamp = ptr.getLong(TIMESTAMP_OFFSET);
+        meta.duration = ptr.getLong(DURATION_OFFSET);
+        meta.offset = ptr.getLong(OFFSET_OFFSET);
+        meta.offsetEnd = ptr.getLong(OFFSET_END_OFFSET);
+        meta.flags = ptr.getInt(FLAGS_OFFSET);
+        return meta;
     }
 
-    private final BufferStruct struct;
     private ByteBuffer byteBuffer;
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer;
+
+/**
+ * A snapshot of the metadata of a {@link Buffer}, filled in by
+ * {@link Buffer#readMetadata}.
+ * <p>
+ * A BufferMeta is meant to be reused for every buffer that passes through a
+ * handler, so it is mutable and not thread safe.
+ */
+public final class BufferMeta {
+    int size;
+    long timestamp = -1;
+    long duration = -1;
+    long offset = -1;
+    long offsetEnd = -1;
+    int flags;
+
+    /**
+     * Gets the size of the buffer data.
+     *
+     * @return the size in bytes.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the timestamp of the buffer data.
+     *
+     * @return the timestamp in nanoseconds, or -1 if not known.
+     */
+    public long getTimestampNanos() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the duration of the buffer data.
+     *
+     * @return the duration in nanoseconds, or -1 if not known.
+     */
+    public long getDurationNanos() {
+        return duration;
+    }
+
+    /**
+     * Gets the media specific offset of the buffer data.
+     *
+     * @return the offset, or -1 if not known.
+     * @see Buffer#getOffset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the media specific offset of the end of the buffer data.
+     *
+     * @return the last offset, or -1 if not known.
+     * @see Buffer#getLastOffset
+     */
+    public long getLastOffset() {
+        return offsetEnd;
+    }
+
+    /**
+     * Gets the GstBuffer flags.
+     *
+     * @return the flags.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferMeta[size=" + size + ", timestamp=" + timestamp + ", duration=" + duration
+                + ", offset=" + offset + ", offsetEnd=" + offsetEnd + ", flags=" + flags + "]";
+    }
+}
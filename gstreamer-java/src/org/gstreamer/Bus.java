@@ -21,11 +21,14 @@ package org.gstreamer;
 
 import static org.gstreamer.lowlevel.GlibAPI.GLIB_API;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +40,7 @@ import org.gstreamer.lowlevel.GstBusAPI.BusCallback;
 import org.gstreamer.lowlevel.GstMessageAPI;
 import org.gstreamer.lowlevel.GstMiniObjectAPI;
 import org.gstreamer.lowlevel.GstNative;
+import org.gstreamer.message.MessageView;
 
 import com.sun.jna.Callback;
 import com.sun.jna.Pointer;
@@ -92,6 +96,143 @@ public class Bus extends GstObject {
         gst.gst_bus_set_sync_handler(this, syncCallback, null);
     }
     
+    /**
+     * Switches this Bus between dispatching messages to its listeners, which is
+     * the default, and leaving them queued for {@link #poll}, {@link #drain}
+     * or {@link #messages}.
+     * <p>
+     * In pull mode the sync callback is removed, so messages are not passed to
+     * the {@link BusSyncHandler}, the listeners or the dispatch executor.  They
+     * stay on the bus until they are taken off it, so something must keep
+     * consuming them, e.g. a worker thread servicing several pipelines.
+     * 
+     * @param pull true to consume messages by pulling them off the bus.
+     */
+    public synchronized void setPullMode(boolean pull) {
+        if (pull == pullMode) {
+            return;
+        }
+        gst.gst_bus_set_sync_handler(this, null, null);
+        if (!pull) {
+            gst.gst_bus_set_sync_handler(this, syncCallback, null);
+        }
+        pullMode = pull;
+    }
+    
+    /**
+     * Checks whether messages on this Bus are left for the application to pull.
+     * 
+     * @return true if the bus is in pull mode.
+     * @see #setPullMode
+     */
+    public boolean isPullMode() {
+        return pullMode;
+    }
+    
+    /**
+     * Takes the next message of the given types off the bus, waiting for one
+     * if there is none.
+     * <p>
+     * Messages of other types that are ahead of it are taken off the bus and
+     * dropped.  This is only useful in {@link #setPullMode pull mode}, since
+     * otherwise the messages never stay on the bus.
+     * 
+     * @param type the message type to wait for, or {@link MessageType#ANY}.
+     * @param timeout how long to wait; 0 to not wait, negative to wait forever.
+     * @param unit the unit of {@code timeout}.
+     * @return the message, or null if none arrived in time.
+     */
+    public Message poll(MessageType type, long timeout, TimeUnit unit) {
+        return poll(type.intValue(), timeout, unit);
+    }
+    
+    /**
+     * Takes the next message of any of the given types off the bus, waiting
+     * for one if there is none.
+     * 
+     * @param types the message types to wait for, see {@link MessageType#mask}.
+     * @param timeout how long to wait; 0 to not wait, negative to wait forever.
+     * @param unit the unit of {@code timeout}.
+     * @return the message, or null if none arrived in time.
+     * @see #poll(MessageType, long, TimeUnit)
+     */
+    public Message poll(int types, long timeout, TimeUnit unit) {
+        if (timeout == 0) {
+            return gst.gst_bus_pop_filtered(this, types);
+        }
+        long nanos = timeout < 0 ? ClockTime.NONE.toNanos() : unit.toNanos(timeout);
+        return gst.gst_bus_timed_pop_filtered(this, nanos, types);
+    }
+    
+    /**
+     * Takes up to {@code maxMessages} messages of the given types that are
+     * already on the bus, without waiting.
+     * <p>
+     * Messages of other types are taken off the bus and dropped.
+     * 
+     * @param types the message types to take, see {@link MessageType#mask}.
+     * @param maxMessages the most messages to take.
+     * @param messages the collection to add the messages to.
+     * @return the number of messages added.
+     */
+    public int drain(int types, int maxMessages, Collection<? super Message> messages) {
+        int count = 0;
+        while (count < maxMessages) {
+            Message msg = gst.gst_bus_pop_filtered(this, types);
+            if (msg == null) {
+                break;
+            }
+            messages.add(msg);
+            ++count;
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the messages of the given types as they arrive on the bus.
+     * <p>
+     * The iterator takes each message off the bus in {@code hasNext()},
+     * waiting up to {@code timeout} for it, and ends when no message arrives
+     * in time.  Each call to {@code iterator()} starts a new iteration.
+     * 
+     * @param types the message types to take, see {@link MessageType#mask}.
+     * @param timeout how long to wait for each message; negative to wait forever.
+     * @param unit the unit of {@code timeout}.
+     * @return the messages.
+     * @see #poll(int, long, TimeUnit)
+     */
+    public Iterable<Message> messages(final int types, final long timeout, final TimeUnit unit) {
+        return new Iterable<Message>() {
+            public Iterator<Message> iterator() {
+                return new Iterator<Message>() {
+                    private Message next;
+                    private boolean done;
+                    
+                    public boolean hasNext() {
+                        if (next == null && !done) {
+                            next = poll(types, timeout, unit);
+                            done = next == null;
+                        }
+                        return next != null;
+                    }
+                    
+                    public Message next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Message msg = next;
+                        next = null;
+                        return msg;
+                    }
+                    
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+    
     /**
      * Instructs the bus to flush out any queued messages.
      * 
@@ -336,6 +477,26 @@ public class Bus extends GstObject {
         public void busMessage(Bus bus, Message message);
     }
 
+    /**
+     * Catch all signals emitted on the Bus, seen through a {@link MessageView}.
+     * <p>
+     * The view decodes the message fields without allocating, for listeners
+     * that handle many messages.  It is only valid until the listener returns.
+     * 
+     * @see #connect(MESSAGE_VIEW)
+     * @see #connect(MessageType, MESSAGE_VIEW)
+     * @see #disconnect(MESSAGE_VIEW)
+     */
+    public static interface MESSAGE_VIEW {
+        /**
+         * Called when a {@link Element} posts a {@link Message} on the Bus.
+         * 
+         * @param bus the Bus the message was posted on.
+         * @param view a view of the message that was posted.
+         */
+        public void busMessage(Bus bus, MessageView view);
+    }
+
     /**
      * Add a listener for end-of-stream messages.
      * 
@@ -448,11 +609,13 @@ public class Bus extends GstObject {
     public void connect(final STATE_CHANGED listener) {
         connect(STATE_CHANGED.class, listener, new BusCallback() {
             public boolean callback(Bus bus, Message msg, Pointer user_data) {
-                State[] o = new State[1];
-                State[] n = new State[1];
-                State[] p = new State[1];
-                gst.gst_message_parse_state_changed(msg, o, n, p);
-                listener.stateChanged(msg.getSource(), o[0], n[0], p[0]);
+                MessageView view = acquireView(msg);
+                try {
+                    listener.stateChanged(msg.getSource(), view.getOldState(),
+                            view.getNewState(), view.getPendingState());
+                } finally {
+                    view.clear();
+                }
                 return true;
             }
         });
@@ -499,9 +662,12 @@ public class Bus extends GstObject {
     public void connect(final BUFFERING listener) {
         connect(BUFFERING.class, listener, new BusCallback() {
             public boolean callback(Bus bus, Message msg, Pointer user_data) {
-                int[] percent = { 0 };
-                gst.gst_message_parse_buffering(msg, percent);
-                listener.bufferingData(msg.getSource(), percent[0]);
+                MessageView view = acquireView(msg);
+                try {
+                    listener.bufferingData(msg.getSource(), view.getBufferingPercent());
+                } finally {
+                    view.clear();
+                }
                 return true;
             }
         });
@@ -524,11 +690,12 @@ public class Bus extends GstObject {
     public void connect(final DURATION listener) {
         connect(DURATION.class, listener, new BusCallback() {
             public boolean callback(Bus bus, Message msg, Pointer user_data) {
-                System.out.println("duration update");
-                Format[] format = new Format[1];
-                long[] duration = { 0 };
-                gst.gst_message_parse_duration(msg, format, duration);
-                listener.durationChanged(msg.getSource(), format[0], duration[0]);
+                MessageView view = acquireView(msg);
+                try {
+                    listener.durationChanged(msg.getSource(), view.getFormat(), view.getDuration());
+                } finally {
+                    view.clear();
+                }
                 return true;
             }
         });
@@ -550,10 +717,12 @@ public class Bus extends GstObject {
     public void connect(final SEGMENT_START listener) {
         connect(SEGMENT_START.class, listener, new BusCallback() {
             public boolean callback(Bus bus, Message msg, Pointer user_data) {
-                Format[] format = new Format[1];
-                long[] position = { 0 };
-                gst.gst_message_parse_segment_start(msg, format, position);
-                listener.segmentStart(msg.getSource(), format[0], position[0]);
+                MessageView view = acquireView(msg);
+                try {
+                    listener.segmentStart(msg.getSource(), view.getFormat(), view.getPosition());
+                } finally {
+                    view.clear();
+                }
                 return true;
             }
         });
@@ -576,10 +745,12 @@ public class Bus extends GstObject {
     public void connect(final SEGMENT_DONE listener) {
         connect(SEGMENT_DONE.class, listener, new BusCallback() {
             public boolean callback(Bus bus, Message msg, Pointer user_data) {
-                Format[] format = new Format[1];
-                long[] position = { 0 };
-                gst.gst_message_parse_segment_done(msg, format, position);
-                listener.segmentDone(msg.getSource(), format[0], position[0]);
+                MessageView view = acquireView(msg);
+                try {
+                    listener.segmentDone(msg.getSource(), view.getFormat(), view.getPosition());
+                } finally {
+                    view.clear();
+                }
                 return true;
             }
         });
@@ -662,6 +833,69 @@ public class Bus extends GstObject {
         disconnect(MESSAGE.class, listener);
     }
     
+    /**
+     * Add a listener for all messages posted on the Bus, seen through a
+     * {@link MessageView}.
+     * 
+     * @param listener The listener to be called when a {@link Message} is posted.
+     */
+    public void connect(MESSAGE_VIEW listener) {
+        connect(MessageType.ANY, listener);
+    }
+    
+    /**
+     * Add a listener for messages of one type posted on the Bus, seen through
+     * a {@link MessageView}.  The same listener can be connected for several
+     * types; connecting it again for a type it already has replaces that
+     * connection.
+     * 
+     * @param type the type of message to listen for, or {@link MessageType#ANY}.
+     * @param listener The listener to be called when a {@link Message} is posted.
+     */
+    public void connect(MessageType type, final MESSAGE_VIEW listener) {
+        String signal = type == MessageType.ANY ? "message" : type.getName();
+        connect(signal, MESSAGE_VIEW.class, listener, new BusCallback() {
+            public boolean callback(Bus bus, Message msg, Pointer user_data) {
+                MessageView view = acquireView(msg);
+                try {
+                    listener.busMessage(bus, view);
+                } finally {
+                    view.clear();
+                }
+                return true;
+            }
+        });
+    }
+    
+    /**
+     * Disconnect a message view listener, for all the types it was connected for.
+     * 
+     * @param listener The listener that was registered to receive messages.
+     */
+    public void disconnect(MESSAGE_VIEW listener) {
+        disconnect(MESSAGE_VIEW.class, listener);
+    }
+    
+    /**
+     * Gets the message view of the calling thread, pointed at a message.  A
+     * listener that causes another message to be dispatched on the same
+     * thread gets a new view, so it does not lose the one it has.
+     */
+    private static MessageView acquireView(Message msg) {
+        MessageView view = views.get();
+        if (view.getMessage() != null) {
+            view = new MessageView();
+        }
+        return view.reset(msg);
+    }
+    
+    private static final ThreadLocal<MessageView> views = new ThreadLocal<MessageView>() {
+        @Override
+        protected MessageView initialValue() {
+            return new MessageView();
+        }
+    };
+    
     /**
      * Posts a {@link Message} on this Bus.
      * 
@@ -691,11 +925,7 @@ public class Bus extends GstObject {
 	            BusSyncReply reply = bus.syncHandler.syncMessage(msg);
 	            
 	            if (reply != BusSyncReply.DROP) {
-	                Gst.getExecutor().execute(new Runnable() {
-	                    public void run() {
-	                        bus.dispatchMessage(msg);
-	                    }
-	                });
+	                bus.dispatcher.post(msg);
 	            }
         	}
             //
@@ -747,14 +977,18 @@ public class Bus extends GstObject {
             throw new IllegalArgumentException("Illegal signal: " + signal);
         }
         final Map<Class<?>, Map<Object, MessageProxy>> signals = getListenerMap();
-        Map<Object, MessageProxy> m = signals.get(type);
+        Map<Object, MessageProxy> m = signals.get(listenerClass);
         if (m == null) {
             m = new HashMap<Object, MessageProxy>();
             signals.put(listenerClass, m);
         }
         MessageProxy proxy = new MessageProxy(type, (BusCallback) callback);
-        m.put(listener, proxy);
-        messageProxies.add(proxy);
+        // A MESSAGE_VIEW listener can be connected for several types at once
+        MessageProxy old = m.put(new ListenerKey(listener, type), proxy);
+        if (old != null) {
+            dispatcher.remove(old);
+        }
+        dispatcher.add(proxy);
     }
     
     @Override
@@ -766,9 +1000,12 @@ public class Bus extends GstObject {
         final Map<Class<?>, Map<Object, MessageProxy>> signals = getListenerMap();
         Map<Object, MessageProxy> m = signals.get(listenerClass);
         if (m != null) {
-            MessageProxy proxy = m.remove(listener);
-            if (proxy != null) {
-                messageProxies.remove(proxy);
+            for (Iterator<Map.Entry<Object, MessageProxy>> it = m.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Object, MessageProxy> e = it.next();
+                if (((ListenerKey) e.getKey()).listener.equals(listener)) {
+                    it.remove();
+                    dispatcher.remove(e.getValue());
+                }
             }
             if (m.isEmpty()) {
                 signals.remove(listenerClass);
@@ -777,32 +1014,69 @@ public class Bus extends GstObject {
     }
     
     /**
-     * Dispatches a message to all interested listeners.
+     * Gets the dispatcher that delivers messages to the listeners on this Bus.
+     * <p>
+     * Messages are dispatched from the sync callback, not the default gstbus 
+     * dispatch, because that uses the default main context to signal that there 
+     * are messages waiting on the bus.  Since that is used by the GTK L&F under 
+     * swing, we never get those notifications, and the messages just queue up.
      * 
-     * <p> 
-     * We do this here from a sync callback, because the default gstbus dispatch
-     * uses the default main context to signal that there are messages waiting on
-     * the bus.  Since that is used by the GTK L&F under swing, we never get those
-     * notifications, and the messages just queue up.
-     * @param message
+     * @return the message dispatcher of this Bus.
      */
-    private void dispatchMessage(Message msg) {
-        // Dispatch to listeners
-        for (Object listener : messageProxies) {
-            ((MessageProxy) listener).busMessage(this, msg);
+    public BusDispatcher getDispatcher() {
+        return dispatcher;
+    }
+    
+    /**
+     * Sets the executor a listener is called on, instead of the dispatch 
+     * executor of this Bus.  A slow listener can be given its own executor so 
+     * it does not hold up the delivery of messages to the other listeners.
+     * 
+     * @param listener a listener that was previously added.
+     * @param executor the executor to call the listener on, or null to call
+     * it on the dispatch executor.
+     */
+    public synchronized void setListenerExecutor(Object listener, Executor executor) {
+        for (Map<Object, MessageProxy> m : getListenerMap().values()) {
+            for (Map.Entry<Object, MessageProxy> e : m.entrySet()) {
+                if (((ListenerKey) e.getKey()).listener.equals(listener)) {
+                    e.getValue().executor = executor;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Identifies a connection by its listener and the message type it is for.
+     */
+    private static final class ListenerKey {
+        final Object listener;
+        final MessageType type;
+        ListenerKey(Object listener, MessageType type) {
+            this.listener = listener;
+            this.type = type;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ListenerKey && ((ListenerKey) obj).listener.equals(listener)
+                    && ((ListenerKey) obj).type == type;
+        }
+        @Override
+        public int hashCode() {
+            return listener.hashCode() * 31 + type.hashCode();
         }
     }
-    private static class MessageProxy implements MESSAGE {
-        private final MessageType type;
+    
+    static class MessageProxy implements MESSAGE {
+        final MessageType type;
         private final BusCallback callback;
+        volatile Executor executor;
         public MessageProxy(MessageType type, BusCallback callback) {
             this.type = type;
             this.callback = callback;
         }
         public void busMessage(Bus bus, Message msg) {
-            if ((type.intValue() & msg.getType().intValue()) != 0) {
-                callback.callback(bus, msg, null);
-            }
+            callback.callback(bus, msg, null);
         }
     }
     
@@ -814,5 +1088,6 @@ public class Bus extends GstObject {
     }
     
     private Map<Class<?>, Map<Object, MessageProxy>> signalListeners;
-    private List<MessageProxy> messageProxies = new CopyOnWriteArrayList<MessageProxy>();
+    private volatile boolean pullMode = false;
+    private final BusDispatcher dispatcher = new BusDispatcher(this);
 }
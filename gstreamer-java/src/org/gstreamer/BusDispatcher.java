@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Delivers the messages posted on a {@link Bus} to its listeners.
+ * <p>
+ * Messages are put on a bounded queue by the thread posting them, and are
+ * delivered in order by a single drain task run on the dispatch executor, so
+ * several buses can share a multi-threaded executor without one slow bus
+ * holding up the others.  By default, messages are dispatched on
+ * {@link Gst#getExecutor}.  A listener can also be given its own executor
+ * with {@link Bus#setListenerExecutor}.
+ * <p>
+ * Listeners are indexed by {@link MessageType}, so delivering a message only
+ * visits the listeners interested in it.
+ * <p>
+ * When the queue is full, the {@link OverflowPolicy} of the incoming
+ * message type decides what happens.  By default, {@link MessageType#ERROR},
+ * {@link MessageType#EOS} and {@link MessageType#ASYNC_DONE} messages are never
+ * dropped, and every other type uses {@link OverflowPolicy#DROP_OLDEST}.
+ * Queued messages are also kept per type, so finding the oldest message to
+ * drop does not scan the whole queue.
+ */
+public final class BusDispatcher {
+    /** The default maximum number of queued messages. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * What to do with a message when the dispatch queue is full.
+     */
+    public static enum OverflowPolicy {
+        /** Queue the message regardless of the queue capacity. */
+        NEVER_DROP,
+        /** Discard the incoming message. */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest queued message that may be dropped, or the
+         * incoming message if there is none.
+         */
+        DROP_OLDEST;
+    }
+
+    // One slot per type bit, and one more for UNKNOWN (type 0)
+    private static final int UNKNOWN_INDEX = 32;
+    private static final int TYPE_COUNT = UNKNOWN_INDEX + 1;
+    private static final int DRAIN_BATCH = 64;
+    private static final Bus.MessageProxy[] NO_PROXIES = new Bus.MessageProxy[0];
+
+    private final Bus bus;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+    // The queued messages of each type that were droppable when posted
+    private final Queue<Entry>[] droppable = newQueues(TYPE_COUNT);
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final OverflowPolicy[] policies = new OverflowPolicy[TYPE_COUNT];
+    private volatile Bus.MessageProxy[][] index = new Bus.MessageProxy[TYPE_COUNT][];
+    private volatile Executor executor;
+    private volatile int capacity = DEFAULT_CAPACITY;
+
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private final Runnable drainTask = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    BusDispatcher(Bus bus) {
+        this.bus = bus;
+        for (int i = 0; i < TYPE_COUNT; ++i) {
+            index[i] = NO_PROXIES;
+            policies[i] = OverflowPolicy.DROP_OLDEST;
+        }
+        policies[indexOf(MessageType.ERROR.intValue())] = OverflowPolicy.NEVER_DROP;
+        policies[indexOf(MessageType.EOS.intValue())] = OverflowPolicy.NEVER_DROP;
+        policies[indexOf(MessageType.ASYNC_DONE.intValue())] = OverflowPolicy.NEVER_DROP;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Queue<Entry>[] newQueues(int count) {
+        Queue<Entry>[] queues = new Queue[count];
+        for (int i = 0; i < count; ++i) {
+            queues[i] = new ConcurrentLinkedQueue<Entry>();
+        }
+        return queues;
+    }
+
+    /**
+     * Sets the executor messages are dispatched on.
+     *
+     * @param executor the executor to use, or null to use {@link Gst#getExecutor}.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the maximum number of messages waiting to be dispatched before the
+     * {@link OverflowPolicy} of new messages applies.
+     *
+     * @param capacity the queue capacity.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the maximum number of messages waiting to be dispatched.
+     *
+     * @return the queue capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets what happens to messages of <tt>type</tt> when the queue is full.
+     *
+     * @param type the message type, or {@link MessageType#ANY} for all types.
+     * @param policy the overflow policy.
+     */
+    public void setOverflowPolicy(MessageType type, OverflowPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Invalid overflow policy");
+        }
+        synchronized (policies) {
+            for (int i = 0; i < TYPE_COUNT; ++i) {
+                if (covers(type.intValue(), i)) {
+                    policies[i] = policy;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets what happens to messages of <tt>type</tt> when the queue is full.
+     *
+     * @param type the message type.
+     * @return the overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy(MessageType type) {
+        return policies[indexOf(type.intValue())];
+    }
+
+    /**
+     * Gets the number of messages currently waiting to be dispatched.
+     *
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        return queueSize.get();
+    }
+
+    /**
+     * Gets the total number of messages queued for dispatch.
+     *
+     * @return the number of queued messages.
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Gets the total number of messages dropped because the queue was full.
+     *
+     * @return the number of dropped messages.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Gets the total number of messages dispatched.
+     *
+     * @return the number of dispatched messages.
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    /**
+     * Gets the total time messages spent waiting between being posted and
+     * being dispatched.
+     *
+     * @param unit the unit to return the time in.
+     * @return the total dispatch latency.
+     */
+    public long getTotalDispatchLatency(TimeUnit unit) {
+        return unit.convert(totalLatency.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the longest time a message spent waiting between being posted and
+     * being dispatched.
+     *
+     * @param unit the unit to return the time in.
+     * @return the maximum dispatch latency.
+     */
+    public long getMaxDispatchLatency(TimeUnit unit) {
+        return unit.convert(maxLatency.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the mean time messages spent waiting between being posted and
+     * being dispatched.
+     *
+     * @param unit the unit to return the time in.
+     * @return the mean dispatch latency.
+     */
+    public long getMeanDispatchLatency(TimeUnit unit) {
+        long count = dispatchedCount.get();
+        return count > 0 ? unit.convert(totalLatency.get() / count, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    /**
+     * Queues a message for dispatch.  Called from the thread that posted
+     * the message.
+     */
+    void post(Message msg) {
+        MessageType type = msg.getType();
+        int typeIndex = indexOf(type.intValue());
+        if (index[typeIndex].length == 0) {
+            // Nobody is listening for it
+            return;
+        }
+        OverflowPolicy policy = policies[typeIndex];
+        if (queueSize.get() >= capacity) {
+            switch (policy) {
+            case DROP_NEWEST:
+                drop(msg);
+                return;
+            case DROP_OLDEST:
+                if (!dropOldest()) {
+                    drop(msg);
+                    return;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        Entry e = new Entry(msg, typeIndex, policy == OverflowPolicy.DROP_OLDEST,
+                queuedCount.incrementAndGet(), System.nanoTime());
+        queueSize.incrementAndGet();
+        if (e.droppable) {
+            droppable[typeIndex].offer(e);
+        }
+        queue.offer(e);
+        schedule();
+    }
+
+    /**
+     * Drops the oldest queued message that may be dropped.  Only the head of
+     * each type's queue needs looking at, as each is in posting order.
+     */
+    private boolean dropOldest() {
+        while (true) {
+            Entry oldest = null;
+            for (int i = 0; i < TYPE_COUNT; ++i) {
+                if (policies[i] != OverflowPolicy.DROP_OLDEST) {
+                    continue;
+                }
+                Entry head = firstQueued(droppable[i]);
+                if (head != null && (oldest == null || head.sequence < oldest.sequence)) {
+                    oldest = head;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            }
+            if (oldest.claim(Entry.DROPPED)) {
+                droppable[oldest.typeIndex].remove(oldest);
+                queueSize.decrementAndGet();
+                drop(oldest.message);
+                return true;
+            }
+            // Dispatched or dropped by another thread meanwhile; look again
+        }
+    }
+
+    /**
+     * Removes the entries at the head of a per-type queue that have already
+     * been dispatched or dropped, and returns the first one still queued.
+     */
+    private static Entry firstQueued(Queue<Entry> entries) {
+        Entry head;
+        while ((head = entries.peek()) != null && head.state != Entry.QUEUED) {
+            entries.remove(head);
+        }
+        return head;
+    }
+
+    private void drop(Message msg) {
+        droppedCount.incrementAndGet();
+        if (Bus.log.isLoggable(Bus.LOG_DEBUG)) {
+            Bus.log.log(Bus.LOG_DEBUG, "Dropping " + msg.getType() + " message on " + bus);
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Executor exec = executor;
+            try {
+                (exec != null ? exec : Gst.getExecutor()).execute(drainTask);
+            } catch (RuntimeException ex) {
+                scheduled.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void drain() {
+        for (int count = 0; count < DRAIN_BATCH; ++count) {
+            Entry e = queue.poll();
+            if (e == null) {
+                break;
+            }
+            if (!e.claim(Entry.DISPATCHED)) {
+                // Already dropped, and no longer counted
+                continue;
+            }
+            queueSize.decrementAndGet();
+            if (e.droppable) {
+                firstQueued(droppable[e.typeIndex]);
+            }
+            dispatch(e);
+        }
+        scheduled.set(false);
+        //
+        // Pick up anything posted since the queue was found empty, or
+        // re-schedule to give other tasks on the executor a chance to run.
+        //
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void dispatch(Entry e) {
+        long latency = System.nanoTime() - e.posted;
+        totalLatency.addAndGet(latency);
+        for (long max = maxLatency.get(); latency > max; max = maxLatency.get()) {
+            if (maxLatency.compareAndSet(max, latency)) {
+                break;
+            }
+        }
+        dispatchedCount.incrementAndGet();
+        for (final Bus.MessageProxy proxy : index[e.typeIndex]) {
+            Executor exec = proxy.executor;
+            if (exec == null) {
+                invoke(proxy, e.message);
+            } else {
+                final Message msg = e.message;
+                exec.execute(new Runnable() {
+                    public void run() {
+                        invoke(proxy, msg);
+                    }
+                });
+            }
+        }
+    }
+
+    private void invoke(Bus.MessageProxy proxy, Message msg) {
+        try {
+            proxy.busMessage(bus, msg);
+        } catch (RuntimeException ex) {
+            Bus.log.log(Level.WARNING, "Bus listener threw an exception", ex);
+        }
+    }
+
+    /**
+     * Adds a listener to the per-type index.  Called with the Bus locked.
+     */
+    void add(Bus.MessageProxy proxy) {
+        Bus.MessageProxy[][] newIndex = index.clone();
+        for (int i = 0; i < TYPE_COUNT; ++i) {
+            if (covers(proxy.type.intValue(), i)) {
+                Bus.MessageProxy[] proxies = newIndex[i];
+                Bus.MessageProxy[] tmp = new Bus.MessageProxy[proxies.length + 1];
+                System.arraycopy(proxies, 0, tmp, 0, proxies.length);
+                tmp[proxies.length] = proxy;
+                newIndex[i] = tmp;
+            }
+        }
+        index = newIndex;
+    }
+
+    /**
+     * Removes a listener from the per-type index.  Called with the Bus locked.
+     */
+    void remove(Bus.MessageProxy proxy) {
+        Bus.MessageProxy[][] newIndex = index.clone();
+        for (int i = 0; i < TYPE_COUNT; ++i) {
+            Bus.MessageProxy[] proxies = newIndex[i];
+            for (int p = 0; p < proxies.length; ++p) {
+                if (proxies[p] == proxy) {
+                    Bus.MessageProxy[] tmp = new Bus.MessageProxy[proxies.length - 1];
+                    System.arraycopy(proxies, 0, tmp, 0, p);
+                    System.arraycopy(proxies, p + 1, tmp, p, proxies.length - p - 1);
+                    newIndex[i] = tmp;
+                    break;
+                }
+            }
+        }
+        index = newIndex;
+    }
+
+    private static int indexOf(int type) {
+        return type != 0 ? Integer.numberOfTrailingZeros(type) : UNKNOWN_INDEX;
+    }
+
+    /**
+     * Tests if a type mask includes the types in an index slot.
+     */
+    private static boolean covers(int mask, int index) {
+        if (index == UNKNOWN_INDEX) {
+            return mask == MessageType.UNKNOWN.intValue() || mask == MessageType.ANY.intValue();
+        }
+        return (mask & (1 << index)) != 0;
+    }
+
+    private static final class Entry {
+        static final int QUEUED = 0, DISPATCHED = 1, DROPPED = 2;
+        private static final AtomicIntegerFieldUpdater<Entry> STATE
+                = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        final Message message;
+        final int typeIndex;
+        final boolean droppable;
+        final long sequence;
+        final long posted;
+        volatile int state = QUEUED;
+
+        Entry(Message message, int typeIndex, boolean droppable, long sequence, long posted) {
+            this.message = message;
+            this.typeIndex = typeIndex;
+            this.droppable = droppable;
+            this.sequence = sequence;
+            this.posted = posted;
+        }
+
+        /**
+         * Takes the entry out of the queue, either to dispatch or to drop it,
+         * unless another thread already did.
+         */
+        boolean claim(int newState) {
+            return STATE.compareAndSet(this, QUEUED, newState);
+        }
+    }
+}
@@ -423,9 +423,14 @@ public class Caps extends RefCountedObject {
         gst.gst_caps_unref(this);
     }
     @Override
-	protected void disposeNativeHandle(Pointer ptr) {
-        gst.gst_caps_unref(ptr);
-    }
+    protected Disposer createDisposer() {
+        return DISPOSER;
+    }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            gst.gst_caps_unref(ptr);
+        }
+    };
 
     
 }
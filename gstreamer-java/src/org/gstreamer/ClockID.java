@@ -35,9 +35,14 @@ public class ClockID extends RefCountedObject implements Comparable<ClockID> {
     }
     
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-        gst.gst_clock_id_unref(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            gst.gst_clock_id_unref(ptr);
+        }
+    };
 
     @Override
     protected void ref() {
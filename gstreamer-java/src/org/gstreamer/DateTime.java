@@ -48,8 +48,13 @@ public class DateTime extends NativeObject {
     }
 
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-    	gst.gst_date_time_unref(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            gst.gst_date_time_unref(ptr);
+        }
+    };
     
 }
@@ -194,6 +194,39 @@ public class Element extends GstObject {
         return gst.gst_element_set_state(this, state);
     }
     
+    /**
+     * Sets the state of the element without waiting for an asynchronous state
+     * change to complete.
+     * <p>
+     * The returned future completes from the messages posted on the bus of the
+     * element, so the element must be in a {@link Pipeline}, and the bus must
+     * not be in {@link Bus#setPullMode pull mode}.
+     *
+     * @param state the element's new {@link State}.
+     * @return a future that completes when the element has reached {@code state}.
+     * @see StateChangeFuture#setStateAll
+     */
+    public StateChangeFuture setStateAsync(State state) {
+        return setStateAsync(state, -1, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Sets the state of the element without waiting for an asynchronous state
+     * change to complete, failing the returned future if it takes longer than
+     * {@code timeout}.
+     *
+     * @param state the element's new {@link State}.
+     * @param timeout how long the state change may take, negative for no limit.
+     * @param unit the unit of {@code timeout}.
+     * @return a future that completes when the element has reached {@code state}.
+     * @see #setStateAsync(State)
+     */
+    public StateChangeFuture setStateAsync(State state, long timeout, TimeUnit unit) {
+        StateChangeFuture future = new StateChangeFuture(this, state, timeout, unit);
+        future.start();
+        return future;
+    }
+    
     /**
      * Locks the state of an element, so state changes of the parent don't affect this element anymore.
      *
@@ -429,6 +462,19 @@ public class Element extends GstObject {
         return gst.gst_element_send_event(this, ev);
     }
     
+    /**
+     * Performs a query on the element.
+     * <p>
+     * The answer is stored in the query, which can be reused for the next
+     * query of the same kind.
+     *
+     * @param query the {@link Query} to perform.
+     * @return true if the query could be answered.
+     */
+    public boolean query(Query query) {
+        return gst.gst_element_query(this, query);
+    }
+    
     /**
      * Signal emitted when an {@link Pad} is added to this {@link Element}
      * 
@@ -25,6 +25,9 @@ import static org.gstreamer.lowlevel.GObjectAPI.GOBJECT_API;
 import static org.gstreamer.lowlevel.GSignalAPI.GSIGNAL_API;
 import static org.gstreamer.lowlevel.GValueAPI.GVALUE_API;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
@@ -33,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +45,7 @@ import org.gstreamer.lowlevel.EnumMapper;
 import org.gstreamer.lowlevel.GObjectAPI;
 import org.gstreamer.lowlevel.GObjectAPI.GObjectStruct;
 import org.gstreamer.lowlevel.GObjectAPI.GParamSpec;
+import org.gstreamer.lowlevel.GPropertyCache;
 import org.gstreamer.lowlevel.GSignalAPI;
 import org.gstreamer.lowlevel.GType;
 import org.gstreamer.lowlevel.GValueAPI.GValue;
@@ -70,6 +75,7 @@ public abstract class GObject extends RefCountedObject {
     private Map<String, Map<Closure, ClosureProxy>> signalClosures;
     
     private final IntPtr objectID = new IntPtr(System.identityHashCode(this));
+    private volatile GPropertyCache properties;
 
     public GObject(Initializer init) { 
         super(init.needRef ? initializer(init.ptr, false, init.ownsHandle) : init);
@@ -105,10 +111,21 @@ public abstract class GObject extends RefCountedObject {
     // TODO: setGValue code merge
     public void set(String property, Object data) {
         logger.entering("GObject", "set", new Object[] { property, data });
-        GObjectAPI.GParamSpec propertySpec = findProperty(property);
-        if (propertySpec == null || data == null) {
+        GPropertyCache.Property prop = findCachedProperty(property);
+        if (prop == null || data == null) {
             throw new IllegalArgumentException("Unknown property: " + property);
         }
+        if (prop.isPrimitive()) {
+            if (prop.isBoolean()) {
+                prop.setBoolean(handle(), booleanValue(data));
+            } else if (prop.isFloatingPoint()) {
+                prop.setDouble(handle(), doubleValue(data));
+            } else {
+                prop.setLong(handle(), longValue(data));
+            }
+            return;
+        }
+        GObjectAPI.GParamSpec propertySpec = prop.getSpec();
         final GType propType = propertySpec.value_type;
         
         GValue propValue = new GValue();
@@ -173,6 +190,94 @@ public abstract class GObject extends RefCountedObject {
         GVALUE_API.g_value_unset(propValue); // Release any memory
     }
 
+    /**
+     * Sets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The property to set.
+     * @param value The value for the property.
+     */
+    public void setInt(String property, int value) {
+        setLong(property, value);
+    }
+
+    /**
+     * Sets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The property to set.
+     * @param value The value for the property.
+     */
+    public void setLong(String property, long value) {
+        primitiveProperty(property).setLong(handle(), value);
+    }
+
+    /**
+     * Sets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The property to set.
+     * @param value The value for the property.
+     */
+    public void setDouble(String property, double value) {
+        primitiveProperty(property).setDouble(handle(), value);
+    }
+
+    /**
+     * Sets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The property to set.
+     * @param value The value for the property.
+     */
+    public void setBoolean(String property, boolean value) {
+        primitiveProperty(property).setBoolean(handle(), value);
+    }
+
+    /**
+     * Gets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The name of the property to get.
+     * @return the property value, truncated to an int.
+     */
+    public int getInt(String property) {
+        return (int) getLong(property);
+    }
+
+    /**
+     * Gets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The name of the property to get.
+     * @return the property value.
+     */
+    public long getLong(String property) {
+        return primitiveProperty(property).getLong(handle());
+    }
+
+    /**
+     * Gets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The name of the property to get.
+     * @return the property value.
+     */
+    public double getDouble(String property) {
+        return primitiveProperty(property).getDouble(handle());
+    }
+
+    /**
+     * Gets the value of a numeric or boolean <tt>GObject</tt> property without
+     * boxing the value.
+     *
+     * @param property The name of the property to get.
+     * @return the property value.
+     */
+    public boolean getBoolean(String property) {
+        return primitiveProperty(property).getBoolean(handle());
+    }
+
     /**
      * Gets the default value set to <tt>GObject</tt> property.
      * @param property The name of the property.
@@ -224,11 +329,14 @@ public abstract class GObject extends RefCountedObject {
      */
     public Object get(String property) {
         logger.entering("GObject", "get", new Object[] { property });
-        GObjectAPI.GParamSpec propertySpec = findProperty(property);
-        if (propertySpec == null) {
+        GPropertyCache.Property prop = findCachedProperty(property);
+        if (prop == null) {
             throw new IllegalArgumentException("Unknown property: " + property);
         }
-        final GType propType = propertySpec.value_type;
+        if (prop.isPrimitive()) {
+            return prop.get(handle());
+        }
+        final GType propType = prop.getType();
         GValue propValue = new GValue();
         GVALUE_API.g_value_init(propValue, propType);
         GOBJECT_API.g_object_get_property(this, property, propValue);
@@ -412,9 +520,20 @@ public abstract class GObject extends RefCountedObject {
     }
 
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-        logger.log(LIFECYCLE, "Removing toggle ref " + getClass().getSimpleName() + " (" + ptr + ")");
-        GOBJECT_API.g_object_remove_toggle_ref(ptr, toggle, objectID);
+    protected Disposer createDisposer() {
+        return new ToggleRefDisposer(new IntPtr(System.identityHashCode(this)));
+    }
+    private static final class ToggleRefDisposer implements Disposer {
+        private final IntPtr objectID;
+
+        ToggleRefDisposer(IntPtr objectID) {
+            this.objectID = objectID;
+        }
+
+        public void dispose(Pointer ptr) {
+            logger.log(LIFECYCLE, "Removing toggle ref (" + ptr + ")");
+            GOBJECT_API.g_object_remove_toggle_ref(ptr, toggle, objectID);
+        }
     }
     @Override
     protected void ref() {
@@ -444,7 +563,40 @@ public abstract class GObject extends RefCountedObject {
     
     protected NativeLong g_signal_connect(String signal, Callback callback) {
         logger.entering("GObject", "g_signal_connect", new Object[] { signal, callback });
-        return GOBJECT_API.g_signal_connect_data(this, signal, callback, null, null, 0);
+        return connectHandler(signal, callback);
+    }
+
+    /*
+     * A signal handler is only reachable from its java wrapper, which may be
+     * collected while the native object (and so the handler) lives on.  So
+     * every connected callback is held here until glib destroys the handler,
+     * whether it is disconnected or the object is finalized.
+     */
+    private static final Map<Pointer, Callback> connectedHandlers = new ConcurrentHashMap<Pointer, Callback>();
+    private static final AtomicLong handlerKeys = new AtomicLong();
+    private static final GObjectAPI.GClosureNotify releaseHandler = new GObjectAPI.GClosureNotify() {
+        public void callback(Pointer data, Pointer closure) {
+            connectedHandlers.remove(data);
+        }
+    };
+
+    private NativeLong connectHandler(String signal, Callback callback) {
+        Pointer key = new Pointer(handlerKeys.incrementAndGet());
+        connectedHandlers.put(key, callback);
+        NativeLong id = GOBJECT_API.g_signal_connect_data(this, signal, callback, key, releaseHandler, 0);
+        if (id.intValue() == 0) {
+            // No handler was created, so glib will not release it
+            connectedHandlers.remove(key);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the number of signal handlers, across all objects, that glib has not
+     * destroyed yet.
+     */
+    static int getConnectedHandlerCount() {
+        return connectedHandlers.size();
     }
 
     abstract protected class GCallback {
@@ -464,11 +616,6 @@ public abstract class GObject extends RefCountedObject {
             }
         }
         abstract protected void disconnect();
-        @Override
-        protected final void finalize() {
-            // Ensure the native callback is removed
-            remove();
-        }
     }
     private final class SignalCallback extends GCallback {
         protected SignalCallback(String signal, Callback cb) {
@@ -534,51 +681,51 @@ public abstract class GObject extends RefCountedObject {
         removeCallback(listenerClass, listener);
     }
     private final class ClosureProxy implements GSignalAPI.GSignalCallbackProxy {
-        private final Closure closure;
-        private final Method method;
+        private final MethodHandle invoker;
+        private final ArgConverter[] converters;
         private final Class<?>[] parameterTypes;
+        private final Class<?> returnType;
         NativeLong id;
         
         protected ClosureProxy(String signal, Closure closure) {
-            this.closure = closure;
-
-            Method invoke = null;
+            Method method = null;
             for (Method m : closure.getClass().getDeclaredMethods()) {
                 if (m.getName().equals(Closure.METHOD_NAME)) {
-                    invoke = m;
+                    method = m;
                     break;
                 }
             }
-            if (invoke == null) {
+            if (method == null) {
                 throw new IllegalArgumentException(closure.getClass() 
                         + " does not have an invoke method");
             }
-            invoke.setAccessible(true);
-            this.method = invoke;
+            method.setAccessible(true);
+            Class<?>[] javaTypes = method.getParameterTypes();
+            returnType = method.getReturnType();
             //
             // The closure does not have a 'user_data' pointer, so push it in as the 
-            // last arg.  The last arg will be dropped later in callback()
+            // last arg.  The invoker drops it again.
             //
-            parameterTypes = new Class[method.getParameterTypes().length + 1];
-            parameterTypes[parameterTypes.length - 1] = Pointer.class;
-            for (int i = 0; i < method.getParameterTypes().length; ++i) {
-                Class<?> paramType = method.getParameterTypes()[i];
-                Class<?> nativeType = paramType;
-                if (ClockTime.class.isAssignableFrom(paramType)) {
-                    nativeType = long.class;
-                } else if (NativeObject.class.isAssignableFrom(paramType)) {
-                    nativeType = Pointer.class;
-                } else if (Enum.class.isAssignableFrom(paramType)) {
-                    nativeType = int.class;
-                } else if (String.class.isAssignableFrom(paramType)) {
-                    nativeType = Pointer.class;
-                } else if (Boolean.class.isAssignableFrom(paramType)) {
-                    nativeType = int.class;
-                }
-                parameterTypes[i] = nativeType;
+            parameterTypes = new Class<?>[javaTypes.length + 1];
+            parameterTypes[javaTypes.length] = Pointer.class;
+            converters = new ArgConverter[javaTypes.length];
+            for (int i = 0; i < javaTypes.length; ++i) {
+                converters[i] = ArgConverter.forType(javaTypes[i]);
+                parameterTypes[i] = converters[i].nativeType;
             }
-            NativeLong connectID = GSIGNAL_API.g_signal_connect_data(GObject.this, 
-                    signal, this, null, null, 0);
+            //
+            // Bind the closure method once, so each emission is a direct call
+            // taking the argument array JNA passes in, converted in place.
+            //
+            try {
+                MethodHandle mh = MethodHandles.lookup().unreflect(method).bindTo(closure);
+                mh = MethodHandles.dropArguments(mh, javaTypes.length, Object.class);
+                invoker = mh.asSpreader(Object[].class, javaTypes.length + 1)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+            NativeLong connectID = connectHandler(signal, this);
             if (connectID.intValue() == 0) {
                 throw new IllegalArgumentException(String.format("Failed to connect signal '%s'", signal));
             }
@@ -590,45 +737,15 @@ public abstract class GObject extends RefCountedObject {
                 id = null;
             }
         }
-        @Override
-        protected void finalize() {
-            // Ensure the native callback is removed
-            disconnect();
-        }
-        @SuppressWarnings({"unchecked","rawtypes"})
         public Object callback(Object[] parameters) {
-            
             try {
-                // Drop the last arg - it is the 'user_data' pointer
-                Object[] methodParameters = new Object[parameters.length - 1];
-            
-                for (int i = 0; i < methodParameters.length; ++i) {
-                    Class paramType = method.getParameterTypes()[i];
-                    Object nativeParam = parameters[i];
-                    Object javaParam = nativeParam;
-                    if (nativeParam == null) {
-                        continue;
-                    }
-                    if (ClockTime.class.isAssignableFrom(paramType)) {
-                        javaParam = ClockTime.valueOf((Long) nativeParam, 
-                                TimeUnit.NANOSECONDS);
-                    } else if (NativeObject.class.isAssignableFrom(paramType)) {
-                        javaParam = objectFor((Pointer) nativeParam, 
-                                paramType, 1, true);
-                    } else if (Enum.class.isAssignableFrom(paramType)) {
-                        javaParam = EnumMapper.getInstance().valueOf((Integer) nativeParam, 
-                                paramType);
-                    } else if (String.class.isAssignableFrom(paramType)) {
-                        javaParam = ((Pointer) nativeParam).getString(0);
-                    } else if (Boolean.class.isAssignableFrom(paramType)) {
-                        javaParam = Boolean.valueOf(((Integer) nativeParam).intValue() != 0);
-                    } else {
-                        javaParam = nativeParam;
+                // The array is JNA's own, so the java values can replace the native ones
+                for (int i = 0; i < converters.length; ++i) {
+                    if (parameters[i] != null) {
+                        parameters[i] = converters[i].toJava(parameters[i]);
                     }
-                    methodParameters[i] = javaParam;
                 }
-                
-                return method.invoke(closure, methodParameters);
+                return (Object) invoker.invokeExact(parameters);
             } catch (Throwable t) {
                 return Integer.valueOf(0);
             }
@@ -639,7 +756,60 @@ public abstract class GObject extends RefCountedObject {
         }
 
         public Class<?> getReturnType() {
-            return method.getReturnType();
+            return returnType;
+        }
+    }
+    
+    /**
+     * Converts one native signal argument to the type the closure method
+     * declares.  Chosen once per parameter when the closure is connected.
+     */
+    private static class ArgConverter {
+        final Class<?> nativeType;
+        
+        ArgConverter(Class<?> nativeType) {
+            this.nativeType = nativeType;
+        }
+        
+        Object toJava(Object nativeValue) {
+            return nativeValue;
+        }
+        
+        static ArgConverter forType(final Class<?> paramType) {
+            if (ClockTime.class.isAssignableFrom(paramType)) {
+                return new ArgConverter(long.class) {
+                    Object toJava(Object nativeValue) {
+                        return ClockTime.valueOf((Long) nativeValue, TimeUnit.NANOSECONDS);
+                    }
+                };
+            } else if (NativeObject.class.isAssignableFrom(paramType)) {
+                return new ArgConverter(Pointer.class) {
+                    @SuppressWarnings({"unchecked", "rawtypes"})
+                    Object toJava(Object nativeValue) {
+                        return objectFor((Pointer) nativeValue, (Class) paramType, 1, true);
+                    }
+                };
+            } else if (Enum.class.isAssignableFrom(paramType)) {
+                return new ArgConverter(int.class) {
+                    @SuppressWarnings({"unchecked", "rawtypes"})
+                    Object toJava(Object nativeValue) {
+                        return EnumMapper.getInstance().valueOf((Integer) nativeValue, (Class) paramType);
+                    }
+                };
+            } else if (String.class.isAssignableFrom(paramType)) {
+                return new ArgConverter(Pointer.class) {
+                    Object toJava(Object nativeValue) {
+                        return ((Pointer) nativeValue).getString(0);
+                    }
+                };
+            } else if (Boolean.class.isAssignableFrom(paramType)) {
+                return new ArgConverter(int.class) {
+                    Object toJava(Object nativeValue) {
+                        return Boolean.valueOf(((Integer) nativeValue).intValue() != 0);
+                    }
+                };
+            }
+            return new ArgConverter(paramType);
         }
     }
     public synchronized void connect(String signal, Closure closure) {
@@ -684,14 +854,31 @@ public abstract class GObject extends RefCountedObject {
 //    }
     
     private GObjectAPI.GParamSpec findProperty(String propertyName) {
-        Pointer ptr = GOBJECT_API.g_object_class_find_property(handle().getPointer(0), propertyName);
-        if (ptr == null)
-            return null;
-        return new GObjectAPI.GParamSpec(ptr);
+        GPropertyCache.Property prop = findCachedProperty(propertyName);
+        return prop != null ? prop.getSpec() : null;
+    }
+
+    private GPropertyCache.Property findCachedProperty(String propertyName) {
+        GPropertyCache cache = properties;
+        if (cache == null) {
+            properties = cache = GPropertyCache.forClass(handle().getPointer(0));
+        }
+        return cache.find(propertyName);
+    }
+
+    private GPropertyCache.Property primitiveProperty(String propertyName) {
+        GPropertyCache.Property prop = findCachedProperty(propertyName);
+        if (prop == null) {
+            throw new IllegalArgumentException("Unknown property: " + propertyName);
+        }
+        if (!prop.isPrimitive()) {
+            throw new IllegalArgumentException("Property " + propertyName + " is of non-primitive type " + prop.getType());
+        }
+        return prop;
     }
     
     private GObjectAPI.GParamSpecTypeSpecific findProperty(String propertyName, GType type) {
-    	Pointer ptr = GOBJECT_API.g_object_class_find_property(handle().getPointer(0), propertyName);
+    	Pointer ptr = findProperty(propertyName).getPointer();
     	if (type.equals(GType.INT))
     		return new GObjectAPI.GParamSpecInt(ptr);
     	else if(type.equals(GType.UINT))
@@ -48,9 +48,14 @@ class GstIterator<T extends NativeObject> extends NativeObject implements java.l
     }
     
     @Override
-	protected void disposeNativeHandle(Pointer ptr) {
-        gst.gst_iterator_free(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            gst.gst_iterator_free(ptr);
+        }
+    };
     public List<T> asList() {
         List<T> list = new LinkedList<T>();
         for (java.util.Iterator<T> it = iterator(); it.hasNext(); ) {
@@ -22,6 +22,7 @@ package org.gstreamer;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.gstreamer.lowlevel.EnumMapper;
 import org.gstreamer.lowlevel.GstMessageAPI;
@@ -191,6 +192,21 @@ public enum MessageType implements IntegerEnum {
         return EnumMapper.getInstance().valueOf(type, MessageType.class);
     }
     
+    /**
+     * Gets the combined native value of several message types, for methods
+     * such as {@link Bus#poll(int, long, TimeUnit)} that take a mask of types.
+     * 
+     * @param types the message types.
+     * @return the types OR-ed together.
+     */
+    public static final int mask(MessageType... types) {
+        int mask = 0;
+        for (MessageType t : types) {
+            mask |= t.type;
+        }
+        return mask;
+    }
+    
     /**
      * Gets a MessageType that corresponds to the name
      * 
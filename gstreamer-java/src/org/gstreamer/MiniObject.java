@@ -19,6 +19,7 @@
 
 package org.gstreamer;
 
+import org.gstreamer.lowlevel.GstDirectAPI;
 import org.gstreamer.lowlevel.GstMiniObjectAPI;
 import org.gstreamer.lowlevel.GstNative;
 import org.gstreamer.lowlevel.RefCountedObject;
@@ -51,7 +52,7 @@ public class MiniObject extends RefCountedObject {
      * @return true if the object is writable.
      */
     public boolean isWritable() {
-        return gst.gst_mini_object_is_writable(this);
+        return GstDirectAPI.gst_mini_object_is_writable(handle()) != 0;
     }
     
     /**
@@ -78,15 +79,20 @@ public class MiniObject extends RefCountedObject {
     */
     @Override
 	protected void ref() {
-        gst.gst_mini_object_ref(this);
+        GstDirectAPI.gst_mini_object_ref(handle());
     }
     @Override
 	protected void unref() {
-        gst.gst_mini_object_unref(this);
+        GstDirectAPI.gst_mini_object_unref(handle());
     }
     
     @Override
-	protected void disposeNativeHandle(Pointer ptr) {
-        gst.gst_mini_object_unref(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            GstDirectAPI.gst_mini_object_unref(ptr);
+        }
+    };
 }
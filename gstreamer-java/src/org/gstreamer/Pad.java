@@ -21,8 +21,11 @@
 
 package org.gstreamer;
 
+import org.gstreamer.lowlevel.EnumMapper;
 import org.gstreamer.lowlevel.GstAPI.GstCallback;
+import org.gstreamer.lowlevel.GstDirectAPI;
 import org.gstreamer.lowlevel.GstNative;
+import org.gstreamer.lowlevel.GstObjectAPI.GstObjectStruct;
 import org.gstreamer.lowlevel.GstPadAPI;
 import org.gstreamer.lowlevel.GstPadAPI.PadBlockCallback;
 import org.gstreamer.lowlevel.annotations.CallerOwnsReturn;
@@ -74,6 +77,9 @@ public class Pad extends GstObject {
         @CallerOwnsReturn Pointer ptr_gst_pad_new_from_template(PadTemplate templ, String name);
     }
     private static final API gst = GstNative.load(API.class);
+    private static final int FLAGS_OFFSET = GstObjectStruct.offsetOf("flags");
+    // GST_PAD_FLUSHING, i.e. GST_OBJECT_FLAG_LAST << 1
+    private static final int FLUSHING = 1 << 5;
     
     /**
      * Creates a new instance of Pad
@@ -306,6 +312,19 @@ public class Pad extends GstObject {
         return gst.gst_pad_is_blocked(this);
     }
     
+    /**
+     * Checks if this pad is flushing.  A pad flushes while a flush event
+     * passes through it, and from when it is deactivated, e.g. because its
+     * element stopped, until it is activated again.
+     * <p>
+     * This reads the pad flags directly, so it is cheap enough to poll.
+     *
+     * @return true if data sent to the pad is refused.
+     */
+    public boolean isFlushing() {
+        return (handle().getInt(FLAGS_OFFSET) & FLUSHING) != 0;
+    }
+    
     public boolean setBlockedAsync(boolean blocked, PadBlockCallback callback) {
     	return gst.gst_pad_set_blocked_async(this, blocked, callback, null);
     }
@@ -561,7 +580,31 @@ public class Pad extends GstObject {
      * @return a org.gstreamer.FlowReturn
      */
     public FlowReturn chain(Buffer buffer) {
-    	return gst.gst_pad_chain(this, buffer);
+    	return flowReturn(GstDirectAPI.gst_pad_chain(handle(), GstDirectAPI.incRef(buffer)));
+    }
+    
+    /**
+     * Pushes a buffer to the peer of pad.
+     * <p>
+     * This function will call an installed pad block before triggering any 
+     * installed pad probes.
+     * <p>
+     * If the caps on buffer are different from the currently configured caps on 
+     * pad, this function will call any setcaps function installed on pad.
+     * <p>
+     * The function proceeds calling {@link #chain} on the peer pad and returns 
+     * the value from that function. If pad has no peer, 
+     * {@link org.gstreamer.FlowReturn#NOT_LINKED} will be returned.
+     * 
+     * @param buffer the Buffer to push.
+     * @return a org.gstreamer.FlowReturn from the peer pad.
+     */
+    public FlowReturn push(Buffer buffer) {
+        return flowReturn(GstDirectAPI.gst_pad_push(handle(), GstDirectAPI.incRef(buffer)));
+    }
+    
+    private static FlowReturn flowReturn(int value) {
+        return EnumMapper.getInstance().valueOf(value, FlowReturn.class);
     }
     
     /**
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The result of an asynchronous state change started with
+ * {@link Element#setStateAsync}.
+ * <p>
+ * The future completes from messages on the bus of the element, so no thread
+ * is held waiting while the element prerolls.  It succeeds with the target
+ * state when the element has reached it, and fails with a {@link GstException}
+ * if the state change fails or an error is posted by the element or one of its
+ * children, or with a {@link TimeoutException} if a timeout was given and the
+ * state change took longer.
+ * <p>
+ * Cancelling the future only stops waiting for the state change; it does not
+ * change the state back.
+ */
+public class StateChangeFuture implements Future<State> {
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Element element;
+    private final State target;
+    private final long timeoutNanos;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<Runnable> listeners = new ArrayList<Runnable>();
+    private Bus bus;
+    private ScheduledFuture<?> timeout;
+    private boolean completed = false;
+    private boolean cancelled = false;
+    private State result;
+    private Throwable failure;
+
+    private final Bus.STATE_CHANGED stateChanged = new Bus.STATE_CHANGED() {
+        public void stateChanged(GstObject source, State old, State current, State pending) {
+            if (current == target && pending == State.VOID_PENDING && element.equals(source)) {
+                complete(target);
+            }
+        }
+    };
+    private final Bus.ASYNC_DONE asyncDone = new Bus.ASYNC_DONE() {
+        public void asyncDone(GstObject source) {
+            // A child element does not post its own async-done, so check
+            // whatever posted it
+            if (element.getState(0) == target) {
+                complete(target);
+            }
+        }
+    };
+    private final Bus.ERROR error = new Bus.ERROR() {
+        public void errorMessage(GstObject source, int code, String message) {
+            if (isFromElement(source)) {
+                fail(new GstException(message));
+            }
+        }
+    };
+
+    StateChangeFuture(Element element, State target, long timeout, TimeUnit unit) {
+        this.element = element;
+        this.target = target;
+        this.timeoutNanos = timeout < 0 ? -1 : unit.toNanos(timeout);
+    }
+
+    /**
+     * Changes the state of many elements, with no more than
+     * {@code maxConcurrent} state changes in progress at once.  The next
+     * element is started as soon as one of the running state changes
+     * completes, whether it succeeded or not.
+     *
+     * @param elements the elements, usually pipelines.
+     * @param state the state to change them to.
+     * @param maxConcurrent the most state changes in progress at once.
+     * @param timeout how long each state change may take, negative for no limit.
+     * @param unit the unit of {@code timeout}.
+     * @return a future for each element, in the same order as {@code elements}.
+     */
+    public static List<StateChangeFuture> setStateAll(Collection<? extends Element> elements, State state,
+            int maxConcurrent, long timeout, TimeUnit unit) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Invalid concurrency " + maxConcurrent);
+        }
+        List<StateChangeFuture> futures = new ArrayList<StateChangeFuture>(elements.size());
+        for (Element element : elements) {
+            futures.add(new StateChangeFuture(element, state, timeout, unit));
+        }
+        new Batch(futures, maxConcurrent).schedule();
+        return futures;
+    }
+
+    /**
+     * Gets the element whose state is being changed.
+     *
+     * @return the element.
+     */
+    public Element getElement() {
+        return element;
+    }
+
+    /**
+     * Gets the state the element is being changed to.
+     *
+     * @return the target state.
+     */
+    public State getTargetState() {
+        return target;
+    }
+
+    /**
+     * Adds a task to run when this future completes, is cancelled or fails.
+     * If it already has, the task is run straight away.
+     *
+     * @param listener the task to run.
+     * @param executor the executor to run the task on.
+     */
+    public void addListener(final Runnable listener, final Executor executor) {
+        Runnable r = new Runnable() {
+            public void run() {
+                executor.execute(listener);
+            }
+        };
+        synchronized (this) {
+            if (!completed) {
+                listeners.add(r);
+                return;
+            }
+        }
+        r.run();
+    }
+
+    void start() {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            bus = element.getBus();
+            if (bus != null && !bus.isPullMode()) {
+                bus.connect(stateChanged);
+                bus.connect(asyncDone);
+                bus.connect(error);
+            } else {
+                bus = null;
+            }
+            if (timeoutNanos >= 0) {
+                timeout = Gst.getScheduledExecutorService().schedule(new Runnable() {
+                    public void run() {
+                        fail(new TimeoutException("State change of " + element.getName()
+                                + " to " + target + " timed out"));
+                    }
+                }, timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        StateChangeReturn ret;
+        try {
+            ret = element.setState(target);
+        } catch (RuntimeException ex) {
+            fail(ex);
+            return;
+        }
+        switch (ret) {
+        case FAILURE:
+            fail(new GstException("State change of " + element.getName() + " to " + target + " failed"));
+            break;
+        case ASYNC:
+            if (bus == null) {
+                fail(new IllegalStateException("No bus to wait for the state change of "
+                        + element.getName() + " on"));
+            } else if (element.getState(0) == target) {
+                // Finished before the listeners could see it
+                complete(target);
+            }
+            break;
+        default:
+            complete(target);
+            break;
+        }
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(null, null, true);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    public State get() throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    public State get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    private synchronized State report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+
+    private void complete(State state) {
+        finish(state, null, false);
+    }
+
+    private void fail(Throwable t) {
+        finish(null, t, false);
+    }
+
+    private boolean finish(State state, Throwable t, boolean cancel) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            result = state;
+            failure = t;
+            cancelled = cancel;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (bus != null) {
+                bus.disconnect(stateChanged);
+                bus.disconnect(asyncDone);
+                bus.disconnect(error);
+            }
+            toRun = new ArrayList<Runnable>(listeners);
+            listeners.clear();
+        }
+        done.countDown();
+        for (Runnable r : toRun) {
+            r.run();
+        }
+        return true;
+    }
+
+    private boolean isFromElement(GstObject source) {
+        for (GstObject obj = source; obj != null; obj = obj.getParent()) {
+            if (element.equals(obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts the state changes of a batch, a few at a time.  A state change
+     * that completes inside {@link StateChangeFuture#start} releases its slot
+     * while the next one is being started, so the loop below picks it up
+     * instead of recursing.
+     */
+    private static final class Batch implements Runnable {
+        private final List<StateChangeFuture> futures;
+        private final AtomicInteger permits;
+        private final AtomicInteger wip = new AtomicInteger();
+        private int next = 0;
+
+        Batch(List<StateChangeFuture> futures, int maxConcurrent) {
+            this.futures = futures;
+            this.permits = new AtomicInteger(maxConcurrent);
+        }
+
+        // Called when a state change of the batch completes
+        public void run() {
+            permits.incrementAndGet();
+            schedule();
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (next < futures.size() && permits.get() > 0) {
+                    permits.decrementAndGet();
+                    StateChangeFuture f = futures.get(next++);
+                    f.addListener(this, DIRECT);
+                    f.start();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}
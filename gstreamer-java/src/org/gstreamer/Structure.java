@@ -397,8 +397,13 @@ public class Structure extends NativeObject {
     }
     //--------------------------------------------------------------------------
     @Override
-	protected void disposeNativeHandle(Pointer ptr) {
-        gst.gst_structure_free(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            gst.gst_structure_free(ptr);
+        }
+    };
     
 }
@@ -223,9 +223,14 @@ public class TagList extends Structure {
     }
     
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-        gst.gst_tag_list_free(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            gst.gst_tag_list_free(ptr);
+        }
+    };
     
     private static interface TagGetter {
         Object get(TagList tl, String tag, int index);
@@ -22,10 +22,24 @@
 
 package org.gstreamer.elements;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
 import org.gstreamer.Buffer;
 import org.gstreamer.Caps;
+import org.gstreamer.Event;
+import org.gstreamer.FlowReturn;
+import org.gstreamer.Pad;
+import org.gstreamer.State;
+import org.gstreamer.event.FlushStartEvent;
+import org.gstreamer.event.FlushStopEvent;
 import org.gstreamer.lowlevel.AppAPI;
+import org.gstreamer.lowlevel.AppAPI.AppSinkCallbacks;
+import org.gstreamer.lowlevel.AppDirectAPI;
 import org.gstreamer.lowlevel.GstAPI.GstCallback;
+import org.gstreamer.lowlevel.GstDirectAPI;
+
+import com.sun.jna.Pointer;
 
 /**
  * A sink {@link org.gstreamer.Element} that enables an application to pull data
@@ -37,6 +51,19 @@ public class AppSink extends BaseSink {
 
     private static final AppAPI gst() { return AppAPI.APP_API; }
 
+    // How often a wait checks whether the sink has stopped, in ms
+    private static final long STOP_POLL_INTERVAL = 20;
+
+    private final Object queueLock = new Object();
+    // Buffers taken from the sink by the new_buffer callback and not yet
+    // pulled; guarded by queueLock
+    private final ArrayDeque<Pointer> queue = new ArrayDeque<Pointer>();
+    private volatile AppSinkCallbacks callbacks;
+    private volatile Pad sinkPad;
+    // The queue properties, read when they are set through this object
+    private volatile int maxBuffers;
+    private volatile boolean drop, emitSignals;
+
     public AppSink(Initializer init) {
         super(init);
     }
@@ -59,6 +86,14 @@ public class AppSink extends BaseSink {
         gst().gst_app_sink_set_caps(this, caps);
     }
 
+    @Override
+    public void set(String property, Object data) {
+        super.set(property, data);
+        if (callbacks != null) {
+            readQueueProperties();
+        }
+    }
+
     /**
      * Gets the <tt>Caps</tt> configured on this <tt>AppSink</tt>
      *
@@ -77,7 +112,14 @@ public class AppSink extends BaseSink {
      * <tt>AppSink</tt> is EOS.
      */
     public boolean isEOS() {
-        return gst().gst_app_sink_is_eos(this);
+        if (callbacks != null) {
+            synchronized (queueLock) {
+                if (!queue.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return AppDirectAPI.gst_app_sink_is_eos(handle()) != 0;
     }
 
     /**
@@ -103,7 +145,7 @@ public class AppSink extends BaseSink {
      * @return A {@link Buffer} or <tt>null</tt> when the appsink is stopped or EOS.
      */
     public Buffer pullPreroll() {
-        return gst().gst_app_sink_pull_preroll(this);
+        return objectFor(AppDirectAPI.gst_app_sink_pull_preroll(handle()), Buffer.class, -1, true);
     }
 
     /**
@@ -125,7 +167,221 @@ public class AppSink extends BaseSink {
      * @return A {@link org.gstreamer.Buffer} or NULL when the appsink is stopped or EOS. 
      */
     public Buffer pullBuffer() {
-        return gst().gst_app_sink_pull_buffer(this);
+        if (callbacks == null) {
+            return objectFor(AppDirectAPI.gst_app_sink_pull_buffer(handle()), Buffer.class, -1, true);
+        }
+        Pointer buffer;
+        synchronized (queueLock) {
+            while ((buffer = takeQueued()) == null) {
+                if (sinkPad.isFlushing() || AppDirectAPI.gst_app_sink_is_eos(handle()) != 0) {
+                    return null;
+                }
+                try {
+                    queueLock.wait(STOP_POLL_INTERVAL);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return objectFor(buffer, Buffer.class, -1, true);
+    }
+
+    /**
+     * Pulls all the buffers queued in this <tt>AppSink</tt>, up to <tt>max</tt>,
+     * waiting up to <tt>timeout</tt> for the first one.
+     *
+     * @param max the maximum number of buffers to pull.
+     * @param timeout the maximum time to wait for a buffer.
+     * @param unit the unit of <tt>timeout</tt>.
+     * @return a new batch holding the pulled buffers, which is empty if the
+     * wait timed out or this <tt>AppSink</tt> is EOS.
+     * @see #pullBuffers(BufferBatch, long, TimeUnit)
+     */
+    public BufferBatch pullBuffers(int max, long timeout, TimeUnit unit) {
+        BufferBatch batch = new BufferBatch(max);
+        pullBuffers(batch, timeout, unit);
+        return batch;
+    }
+
+    /**
+     * Pulls all the buffers queued in this <tt>AppSink</tt> into a batch, up
+     * to the batch capacity, waiting up to <tt>timeout</tt> for the first one.
+     * <p>
+     * Any buffers left in <tt>batch</tt> are released first, so a single batch
+     * can be reused for every call.  Unlike {@link #pullBuffer}, this never
+     * waits inside the native pull.
+     * <p>
+     * The first call installs native callbacks, and from then on each buffer
+     * is taken out of the sink as soon as it is queued, and held in a queue
+     * on the java side until it is pulled.  That queue follows the
+     * <tt>max-buffers</tt> and <tt>drop</tt> properties as set through this
+     * object, is cleared when the sink flushes or stops, and feeds
+     * {@link #pullBuffer} as well.  The <tt>new-buffer</tt>,
+     * <tt>new-preroll</tt> and <tt>eos</tt> signals are still emitted if
+     * <tt>emit-signals</tt> is set.  Buffers already queued in the sink when
+     * the callbacks are installed are not seen, so the first call should be
+     * made before the sink is started, e.g. with a zero timeout.
+     *
+     * @param batch the batch to fill.
+     * @param timeout the maximum time to wait for a buffer.
+     * @param unit the unit of <tt>timeout</tt>.
+     * @return the number of buffers pulled, which is 0 if the wait timed out or
+     * this <tt>AppSink</tt> is EOS.  Use {@link #isEOS} to tell them apart.
+     */
+    public int pullBuffers(BufferBatch batch, long timeout, TimeUnit unit) {
+        batch.release();
+        installCallbacks();
+        synchronized (queueLock) {
+            long remaining = unit.toNanos(timeout);
+            long deadline = System.nanoTime() + remaining;
+            Pointer buffer;
+            while ((buffer = takeQueued()) == null) {
+                if (remaining <= 0 || sinkPad.isFlushing()
+                        || AppDirectAPI.gst_app_sink_is_eos(handle()) != 0) {
+                    return 0;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(queueLock,
+                            Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(STOP_POLL_INTERVAL)));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            do {
+                batch.add(buffer);
+            } while (batch.size() < batch.capacity() && (buffer = takeQueued()) != null);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Takes the oldest buffer off the java side queue.  Called with queueLock
+     * held.
+     *
+     * @return the buffer, or null if there is none or the sink has stopped.
+     */
+    private Pointer takeQueued() {
+        if (sinkPad.isFlushing()) {
+            // The sink drops its queue when it flushes or stops
+            clearQueue();
+            return null;
+        }
+        Pointer buffer = queue.poll();
+        if (buffer != null && maxBuffers > 0 && queue.size() == maxBuffers - 1) {
+            // Wake the streaming thread if it is waiting for room
+            queueLock.notifyAll();
+        }
+        return buffer;
+    }
+
+    /**
+     * Queues a buffer taken from the sink, applying <tt>max-buffers</tt> and
+     * <tt>drop</tt> as the sink does.  Called on the streaming thread.
+     */
+    private void enqueue(Pointer buffer) {
+        synchronized (queueLock) {
+            while (maxBuffers > 0 && queue.size() >= maxBuffers) {
+                if (drop) {
+                    GstDirectAPI.gst_mini_object_unref(queue.poll());
+                    continue;
+                }
+                if (sinkPad.isFlushing()) {
+                    GstDirectAPI.gst_mini_object_unref(buffer);
+                    return;
+                }
+                try {
+                    queueLock.wait(STOP_POLL_INTERVAL);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    GstDirectAPI.gst_mini_object_unref(buffer);
+                    return;
+                }
+            }
+            queue.add(buffer);
+            if (queue.size() == 1) {
+                queueLock.notifyAll();
+            }
+        }
+    }
+
+    private void clearQueue() {
+        synchronized (queueLock) {
+            for (Pointer buffer; (buffer = queue.poll()) != null; ) {
+                GstDirectAPI.gst_mini_object_unref(buffer);
+            }
+            queueLock.notifyAll();
+        }
+    }
+
+    private void readQueueProperties() {
+        maxBuffers = ((Number) get("max-buffers")).intValue();
+        drop = Boolean.TRUE.equals(get("drop"));
+        emitSignals = Boolean.TRUE.equals(get("emit-signals"));
+    }
+
+    private synchronized void installCallbacks() {
+        if (callbacks != null) {
+            return;
+        }
+        sinkPad = getStaticPad("sink");
+        sinkPad.addEventProbe(new Pad.EVENT_PROBE() {
+            public boolean eventReceived(Pad pad, Event event) {
+                if (event instanceof FlushStopEvent) {
+                    clearQueue();
+                } else if (event instanceof FlushStartEvent) {
+                    // Wake the streaming thread if it is waiting for room
+                    synchronized (queueLock) {
+                        queueLock.notifyAll();
+                    }
+                }
+                return true;
+            }
+        });
+        readQueueProperties();
+        AppSinkCallbacks cb = new AppSinkCallbacks();
+        cb.eos = new AppAPI.AppSinkEosCallback() {
+            public void callback(Pointer appsink, Pointer user_data) {
+                synchronized (queueLock) {
+                    queueLock.notifyAll();
+                }
+                if (emitSignals) {
+                    emit("eos");
+                }
+            }
+        };
+        cb.new_preroll = new AppAPI.AppSinkNewCallback() {
+            public int callback(Pointer appsink, Pointer user_data) {
+                // A preroll while still READY means the sink was restarted,
+                // and the sink dropped its own queue when it stopped
+                if (getState(0) == State.READY) {
+                    clearQueue();
+                }
+                if (emitSignals) {
+                    emit("new-preroll");
+                }
+                return FlowReturn.OK.intValue();
+            }
+        };
+        cb.new_buffer = new AppAPI.AppSinkNewCallback() {
+            public int callback(Pointer appsink, Pointer user_data) {
+                // Nothing else pulls from the sink, so the buffer just queued
+                // is still there and this does not block
+                Pointer buffer = AppDirectAPI.gst_app_sink_pull_buffer(appsink);
+                if (buffer != null) {
+                    enqueue(buffer);
+                }
+                if (emitSignals) {
+                    emit("new-buffer");
+                }
+                return FlowReturn.OK.intValue();
+            }
+        };
+        gst().gst_app_sink_set_callbacks(this, cb, null, null);
+        // Held for as long as the sink can call them
+        callbacks = cb;
     }
 
     /**
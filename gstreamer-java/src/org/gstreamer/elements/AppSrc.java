@@ -25,6 +25,8 @@ import org.gstreamer.Buffer;
 import org.gstreamer.Caps;
 import org.gstreamer.FlowReturn;
 import org.gstreamer.lowlevel.AppAPI;
+import org.gstreamer.lowlevel.AppDirectAPI;
+import org.gstreamer.lowlevel.GstDirectAPI;
 import org.gstreamer.lowlevel.GstAPI.GstCallback;
 
 import com.sun.jna.ptr.LongByReference;
@@ -94,10 +96,10 @@ public class AppSrc extends BaseSrc {
     }
 
     public void pushBuffer(Buffer buffer) {
-        gst().gst_app_src_push_buffer(this, buffer);
+        AppDirectAPI.gst_app_src_push_buffer(handle(), GstDirectAPI.invalidate(buffer));
     }
     public void endOfStream() {
-        gst().gst_app_src_end_of_stream(this);
+        AppDirectAPI.gst_app_src_end_of_stream(handle());
     }
 
     /**
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.lowlevel.AppDirectAPI;
+import org.gstreamer.lowlevel.GstBufferAPI.BufferStruct;
+import org.gstreamer.lowlevel.GstDirectAPI;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Feeds an {@link AppSrc} from a fixed set of pre-allocated buffers, with flow
+ * control.
+ * <p>
+ * A producer {@link #claim claims} a free buffer, writes the data into it in
+ * place, and {@link #commit commits} it.  Committed buffers wait in a bounded
+ * queue until the appsrc asks for data (its <tt>need-data</tt> signal), and
+ * are held back again once it has enough (<tt>enough-data</tt>).
+ * <p>
+ * The producer owns a fixed set of data blocks.  Each claim wraps a free block
+ * in a new GstBuffer, so it carries no timestamp, offset, flags or caps from an
+ * earlier use, and pushing it hands the pipeline the only reference.  The
+ * buffer's <tt>free_func</tt> gives the block back as soon as the pipeline
+ * has dropped the buffer, so once running the producer allocates no data
+ * memory at all.
+ * <p>
+ * When every buffer is either queued or still in use by the pipeline, the
+ * {@link OfferMode} passed to <tt>claim</tt> decides whether the producer
+ * waits for one to be released, gives up, or drops the oldest queued buffer.
+ * <p>
+ * Needs GStreamer 0.10.22 or later, for <tt>GstBuffer.free_func</tt>.
+ * <pre>
+ * AppSrcProducer producer = new AppSrcProducer(appsrc, 8, width * height * 4);
+ * Buffer buffer = producer.claim(AppSrcProducer.OfferMode.DROP_OLDEST);
+ * if (buffer != null) {
+ *     buffer.getByteBuffer().put(pixels);
+ *     buffer.setTimestamp(ClockTime.fromNanos(pts));
+ *     producer.commit(buffer);
+ * }
+ * </pre>
+ */
+public class AppSrcProducer {
+    /**
+     * What {@link #claim} does when no buffer is free.
+     */
+    public static enum OfferMode {
+        /** Wait until the pipeline releases a buffer. */
+        BLOCK,
+        /** Return <tt>null</tt> straight away. */
+        NON_BLOCKING,
+        /**
+         * Drop the oldest buffer that has not been pushed yet and reuse it.
+         * Returns <tt>null</tt> if every buffer is in use by the pipeline.
+         */
+        DROP_OLDEST
+    }
+
+    private static final int FREE = 0, CLAIMED = 1, QUEUED = 2, PUSHED = 3;
+    private static final int SIZE_OFFSET = BufferStruct.offsetOf("size");
+
+    private final AppSrc src;
+    private final int bufferSize;
+    private final Slot[] slots;
+    // The buffer wrapping each claimed or queued slot
+    private final Buffer[] buffers;
+    private final AtomicIntegerArray states;
+    private final Object releaseLock = new Object();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final IndexRing queue;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong pushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean wanted = false;
+    private volatile boolean eosPending = false;
+
+    private final AppSrc.NEED_DATA needData = new AppSrc.NEED_DATA() {
+        public void needData(AppSrc elem, int size) {
+            wanted = true;
+            drain();
+        }
+    };
+    private final AppSrc.ENOUGH_DATA enoughData = new AppSrc.ENOUGH_DATA() {
+        public void enoughData(AppSrc elem) {
+            wanted = false;
+        }
+    };
+
+    /**
+     * Creates a new producer for <tt>src</tt>.
+     *
+     * @param src the appsrc to feed.
+     * @param capacity the number of buffers to allocate.
+     * @param bufferSize the size of each buffer in bytes.
+     */
+    public AppSrcProducer(AppSrc src, int capacity, int bufferSize) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.src = src;
+        this.bufferSize = bufferSize;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; ++i) {
+            slots[i] = new Slot(i, bufferSize);
+        }
+        this.buffers = new Buffer[capacity];
+        this.states = new AtomicIntegerArray(capacity);
+        this.queue = new IndexRing(capacity);
+        src.connect(needData);
+        src.connect(enoughData);
+    }
+
+    /**
+     * Claims a free buffer to write into, waiting as long as needed in
+     * {@link OfferMode#BLOCK} mode.
+     *
+     * @param mode what to do if no buffer is free.
+     * @return a writable buffer, or <tt>null</tt> if none could be claimed.
+     */
+    public Buffer claim(OfferMode mode) {
+        return claim(mode, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Claims a free buffer to write into.
+     * <p>
+     * The buffer is new, with no metadata or caps, but its data is left as an
+     * earlier buffer left it.  The buffer must be passed to {@link #commit} or
+     * {@link #cancel} once the producer is done with it.
+     *
+     * @param mode what to do if no buffer is free.
+     * @param timeout the maximum time to wait in {@link OfferMode#BLOCK} mode.
+     * @param unit the unit of <tt>timeout</tt>.
+     * @return a writable buffer, or <tt>null</tt> if none could be claimed.
+     */
+    public Buffer claim(OfferMode mode, long timeout, TimeUnit unit) {
+        int index = tryClaim();
+        if (index < 0) {
+            switch (mode) {
+            case DROP_OLDEST:
+                index = queue.poll();
+                if (index >= 0) {
+                    // Its block is free again once the buffer is gone
+                    dropped.incrementAndGet();
+                    release(index).dispose();
+                    index = tryClaim();
+                }
+                break;
+            case BLOCK:
+                index = awaitClaim(unit.toNanos(timeout));
+                break;
+            default:
+                break;
+            }
+        }
+        if (index < 0) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        Buffer buffer = BufferPool.wrap(slots[index]);
+        buffers[index] = buffer;
+        return buffer;
+    }
+
+    private int tryClaim() {
+        for (int i = 0; i < slots.length; ++i) {
+            if (states.get(i) == FREE && states.compareAndSet(i, FREE, CLAIMED)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Waits for the pipeline to release a buffer.  Counting as a waiter before
+     * each try means a release either happens before the try, or sees the
+     * waiter and wakes it.
+     */
+    private int awaitClaim(long timeout) {
+        final long deadline = System.nanoTime() + timeout;
+        waiters.incrementAndGet();
+        try {
+            synchronized (releaseLock) {
+                for (;;) {
+                    int index = tryClaim();
+                    if (index >= 0) {
+                        return index;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(releaseLock, remaining);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return -1;
+                    }
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes the buffer out of a slot whose block is about to be given back
+     * by the buffer's free_func.
+     */
+    private Buffer release(int index) {
+        Buffer buffer = buffers[index];
+        buffers[index] = null;
+        states.set(index, PUSHED);
+        return buffer;
+    }
+
+    /**
+     * Called from the free_func of the buffer using a slot.
+     */
+    private void released(int index) {
+        states.set(index, FREE);
+        if (waiters.get() > 0) {
+            synchronized (releaseLock) {
+                releaseLock.notifyAll();
+            }
+        }
+    }
+
+    private int indexOf(Buffer buffer) {
+        for (int i = 0; i < buffers.length; ++i) {
+            if (buffers[i] == buffer) {
+                if (states.get(i) != CLAIMED) {
+                    break;
+                }
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Buffer was not claimed from this producer");
+    }
+
+    /**
+     * Queues a claimed buffer to be pushed into the appsrc.  The buffer must
+     * not be used afterwards.
+     *
+     * @param buffer a buffer returned by {@link #claim}.
+     */
+    public void commit(Buffer buffer) {
+        int index = indexOf(buffer);
+        states.set(index, QUEUED);
+        queue.offer(index);
+        drain();
+    }
+
+    /**
+     * Returns a claimed buffer to the producer without pushing it.
+     *
+     * @param buffer a buffer returned by {@link #claim}.
+     */
+    public void cancel(Buffer buffer) {
+        release(indexOf(buffer)).dispose();
+    }
+
+    /**
+     * Copies <tt>data</tt> into a claimed buffer and commits it.  The buffer
+     * size is set to the number of bytes copied.
+     *
+     * @param data the data to send, which must fit in a buffer.
+     * @param mode what to do if no buffer is free.
+     * @return true if the data was queued.
+     */
+    public boolean offer(ByteBuffer data, OfferMode mode) {
+        int size = data.remaining();
+        if (size > bufferSize) {
+            throw new IllegalArgumentException("Data of " + size + " bytes does not fit in a buffer of " + bufferSize);
+        }
+        Buffer buffer = claim(mode);
+        if (buffer == null) {
+            return false;
+        }
+        if (size > 0) {
+            buffer.getByteBuffer().put(data);
+        }
+        GstDirectAPI.ptr(buffer).setInt(SIZE_OFFSET, size);
+        commit(buffer);
+        return true;
+    }
+
+    /**
+     * Signals end-of-stream to the appsrc once every queued buffer has been
+     * pushed.
+     */
+    public void endOfStream() {
+        eosPending = true;
+        drain();
+    }
+
+    /**
+     * Pushes queued buffers while the appsrc wants data.  Only one thread
+     * pushes at a time, so buffers go out in the order they were committed.
+     */
+    private void drain() {
+        while (draining.compareAndSet(false, true)) {
+            try {
+                Pointer handle = null;
+                int index;
+                while (wanted && (index = queue.poll()) >= 0) {
+                    if (handle == null) {
+                        handle = GstDirectAPI.ptr(src);
+                    }
+                    // push_buffer takes over the only reference
+                    Buffer buffer = release(index);
+                    Pointer ptr = GstDirectAPI.ptr(buffer);
+                    buffer.disown();
+                    AppDirectAPI.gst_app_src_push_buffer(handle, ptr);
+                    pushed.incrementAndGet();
+                }
+                if (eosPending && queue.isEmpty()) {
+                    eosPending = false;
+                    src.endOfStream();
+                }
+            } finally {
+                draining.set(false);
+            }
+            if (!(wanted && !queue.isEmpty()) && !(eosPending && queue.isEmpty())) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Disconnects from the appsrc and drops the buffers queued in the
+     * producer.  Buffers still held by the pipeline keep their memory until
+     * they are released.
+     */
+    public void dispose() {
+        src.disconnect(needData);
+        src.disconnect(enoughData);
+        int index;
+        while ((index = queue.poll()) >= 0) {
+            // Queued buffers will never be pushed
+            release(index).dispose();
+        }
+    }
+
+    /**
+     * Gets the number of buffers allocated by this producer.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Gets the number of committed buffers waiting to be pushed.
+     *
+     * @return the fill level of the queue.
+     */
+    public int getFillLevel() {
+        return queue.size();
+    }
+
+    /**
+     * Checks if the appsrc currently wants data.
+     *
+     * @return true between a need-data and an enough-data signal.
+     */
+    public boolean isDataWanted() {
+        return wanted;
+    }
+
+    public long getPushedCount() {
+        return pushed.get();
+    }
+
+    /**
+     * Gets the number of queued buffers dropped in {@link OfferMode#DROP_OLDEST} mode.
+     *
+     * @return the number of dropped buffers.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of times {@link #claim} returned <tt>null</tt>.
+     *
+     * @return the number of rejected claims.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private final class Slot extends BufferPool.Block {
+        private final int index;
+
+        Slot(int index, int size) {
+            super(size);
+            this.index = index;
+        }
+
+        void release() {
+            released(index);
+        }
+    }
+
+    /**
+     * A bounded lock-free FIFO of buffer indexes.
+     * <p>
+     * Each cell carries a sequence number telling producers and consumers
+     * whether it is their turn to use it, so neither side ever locks.
+     */
+    private static final class IndexRing {
+        private final int mask;
+        private final AtomicLongArray sequences;
+        private final AtomicIntegerArray values;
+        private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+        IndexRing(int capacity) {
+            int size = 1;
+            while (size < capacity) {
+                size <<= 1;
+            }
+            mask = size - 1;
+            sequences = new AtomicLongArray(size);
+            values = new AtomicIntegerArray(size);
+            for (int i = 0; i < size; ++i) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(int value) {
+            for (;;) {
+                long pos = tail.get();
+                int cell = (int) pos & mask;
+                long diff = sequences.get(cell) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        values.set(cell, value);
+                        sequences.set(cell, pos + 1);
+                        return true;
+                    }
+                } else if (diff < 0) {
+                    return false;
+                }
+            }
+        }
+
+        int poll() {
+            for (;;) {
+                long pos = head.get();
+                int cell = (int) pos & mask;
+                long diff = sequences.get(cell) - (pos + 1);
+                if (diff == 0) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        int value = values.get(cell);
+                        sequences.set(cell, pos + mask + 1);
+                        return value;
+                    }
+                } else if (diff < 0) {
+                    return -1;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.lowlevel.GlibAPI;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.NativeObject;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * A reusable batch of buffers pulled from an {@link AppSink} by
+ * {@link AppSink#pullBuffers(BufferBatch, long, java.util.concurrent.TimeUnit)}.
+ * <p>
+ * The batch holds the native buffers directly, and only creates a
+ * {@link Buffer} wrapper for a buffer that is asked for with {@link #get}.
+ * Such a wrapper is borrowed from the batch: it becomes disposed when the batch
+ * is released, so the buffer must be copied or
+ * {@link Buffer#createSubBuffer sub-buffered} if it is needed for longer.
+ * <p>
+ * {@link #release} drops all the buffers, and the batch can then be filled
+ * again.  Buffers still held by a batch that is garbage collected are
+ * dropped by the reaper.
+ */
+public final class BufferBatch implements AutoCloseable {
+    private final Pointer[] buffers;
+    private final Buffer[] wrappers;
+    // The same buffers, kept natively for the reaper
+    private final Slots slots;
+    private int size = 0;
+    private int wrapped = 0;
+
+    /**
+     * Creates a new empty batch.
+     *
+     * @param capacity the maximum number of buffers the batch can hold.
+     */
+    public BufferBatch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid batch capacity " + capacity);
+        }
+        buffers = new Pointer[capacity];
+        wrappers = new Buffer[capacity];
+        slots = new Slots(capacity);
+    }
+
+    /**
+     * Gets the maximum number of buffers this batch can hold.
+     *
+     * @return the capacity.
+     */
+    public int capacity() {
+        return buffers.length;
+    }
+
+    /**
+     * Gets the number of buffers in this batch.
+     *
+     * @return the number of buffers.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets a buffer from this batch.  The buffer is only valid until the batch
+     * is released.
+     *
+     * @param index the index of the buffer, from 0 to {@link #size} - 1.
+     * @return the buffer.
+     */
+    public Buffer get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of batch of " + size);
+        }
+        Buffer buffer = wrappers[index];
+        if (buffer == null) {
+            buffer = NativeObject.objectFor(buffers[index], Buffer.class, false, false);
+            wrappers[index] = buffer;
+            ++wrapped;
+        }
+        return buffer;
+    }
+
+    /**
+     * Adds a buffer to the batch.  The batch takes over the caller's reference.
+     */
+    void add(Pointer buffer) {
+        if (size == buffers.length) {
+            throw new IllegalStateException("Batch is full");
+        }
+        slots.address().setPointer((long) size * Pointer.SIZE, buffer);
+        buffers[size++] = buffer;
+    }
+
+    /**
+     * Drops the reference to every buffer in this batch, and disposes any
+     * wrappers handed out by {@link #get}.
+     */
+    public void release() {
+        if (wrapped > 0) {
+            for (int i = 0; i < size; ++i) {
+                if (wrappers[i] != null) {
+                    wrappers[i].dispose();
+                    wrappers[i] = null;
+                }
+            }
+            wrapped = 0;
+        }
+        if (size > 0) {
+            slots.address().clear((long) size * Pointer.SIZE);
+            for (int i = 0; i < size; ++i) {
+                GstDirectAPI.gst_mini_object_unref(buffers[i]);
+                buffers[i] = null;
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * Releases this batch.
+     *
+     * @see #release
+     */
+    public void close() {
+        release();
+    }
+
+    /**
+     * A null terminated native array of the buffers in a batch, which drops
+     * them and is freed when the batch is collected.
+     */
+    private static final class Slots extends NativeObject {
+        Slots(int capacity) {
+            super(initializer(GlibAPI.GLIB_API.g_malloc0(new NativeLong((long) (capacity + 1) * Pointer.SIZE))));
+        }
+
+        Pointer address() {
+            return handle();
+        }
+
+        @Override
+        protected Disposer createDisposer() {
+            return DISPOSER;
+        }
+        private static final Disposer DISPOSER = new Disposer() {
+            public void dispose(Pointer ptr) {
+                Pointer buffer;
+                for (long offset = 0; (buffer = ptr.getPointer(offset)) != null; offset += Pointer.SIZE) {
+                    GstDirectAPI.gst_mini_object_unref(buffer);
+                }
+                GlibAPI.GLIB_API.g_free(ptr);
+            }
+        };
+    }
+}
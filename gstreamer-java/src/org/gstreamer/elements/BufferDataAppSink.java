@@ -27,7 +27,6 @@ import org.gstreamer.Element;
 import org.gstreamer.ElementFactory;
 import org.gstreamer.GhostPad;
 import org.gstreamer.Pipeline;
-import org.gstreamer.Structure;
 import org.gstreamer.lowlevel.GstBinAPI;
 import org.gstreamer.lowlevel.GstNative;
 
@@ -40,6 +39,7 @@ import org.gstreamer.lowlevel.GstNative;
 public class BufferDataAppSink extends Bin {
     private static final GstBinAPI gst = GstNative.load(GstBinAPI.class);
     private AppSink sink;    
+    private VideoSizeTracker size;
     private Listener listener;
     private boolean autoDisposeBuffer = true;
     
@@ -78,6 +78,7 @@ public class BufferDataAppSink extends Bin {
             sink.set("emit-signals", true);
             sink.set("sync", true);
             sink.connect(new AppSinkNewBufferListener());
+            size = new VideoSizeTracker(sink.getStaticPad("sink"));
         } else {
           sink = null;
           throw new RuntimeException("Element with name " + name + " not found in the pipeline");
@@ -100,6 +101,7 @@ public class BufferDataAppSink extends Bin {
       videofilter.setCaps(new Caps(caps.toString()));
       addMany(conv, videofilter, sink);
       Element.linkMany(conv, videofilter, sink);
+      size = new VideoSizeTracker(sink.getStaticPad("sink"));
 
       //
       // Link the ghost pads on the bin to the sink pad on the convertor
@@ -151,16 +153,11 @@ public class BufferDataAppSink extends Bin {
         {
             Buffer buffer = sink.pullBuffer();
 
-            Caps caps = buffer.getCaps();
-            Structure struct = caps.getStructure(0);
-
-            int width = struct.getInteger("width");
-            int height = struct.getInteger("height");
-            if (width < 1 || height < 1) {
+            if (!size.update(buffer)) {
                 return;
             }
             
-            listener.bufferFrame(width, height, buffer);
+            listener.bufferFrame(size.getWidth(), size.getHeight(), buffer);
             
             //
             // Dispose of the gstreamer buffer immediately to avoid more being
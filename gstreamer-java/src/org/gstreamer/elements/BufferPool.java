@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.lowlevel.GlibAPI.GDestroyNotify;
+import org.gstreamer.lowlevel.GstBufferAPI.BufferStruct;
+import org.gstreamer.lowlevel.GstBufferAPI.FreeFuncStruct;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.NativeObject;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * A pool of native buffer memory, grouped by size, for elements that hand
+ * buffers to GStreamer over and over, such as {@link CustomSrc}.
+ * <p>
+ * Every {@link #acquire} returns a new GstBuffer, so it carries no metadata
+ * or caps from an earlier use and is the only reference GStreamer gets, which
+ * keeps it writable for in-place elements downstream.  Only the data memory is
+ * pooled: the buffer's <tt>free_func</tt> gives it back to the pool when
+ * GStreamer drops the last reference to the buffer.  Up to
+ * <tt>maxBuffersPerSize</tt> blocks are kept for each size; if they are all
+ * in use, {@link #acquire} falls back to allocating a buffer that is not pooled.
+ * <p>
+ * So each {@link #acquire} still allocates a GstBuffer header natively, and a
+ * {@link Buffer} wrapper for it on the java heap.  These are not pooled, as
+ * GStreamer 0.10 has no hook to take a buffer back before it is freed, and a
+ * reused header would carry state from its last use.  What the pool saves is
+ * the data memory, which is by far the larger allocation.
+ * <p>
+ * Needs GStreamer 0.10.22 or later, for <tt>GstBuffer.free_func</tt>.
+ */
+public class BufferPool {
+    /** The default maximum number of buffers kept for each size. */
+    public static final int DEFAULT_BUFFERS_PER_SIZE = 16;
+
+    private static final int MAX_SIZE_CLASSES = 16;
+    private static final int DATA_OFFSET = BufferStruct.offsetOf("data");
+    private static final int SIZE_OFFSET = BufferStruct.offsetOf("size");
+    private static final int MALLOC_DATA_OFFSET = BufferStruct.offsetOf("malloc_data");
+    private static final int FREE_FUNC_OFFSET = BufferStruct.offsetOf("free_func");
+
+    /** Blocks owned by a live GstBuffer, by address, until its free_func runs */
+    private static final ConcurrentMap<Pointer, Block> blocksInUse = new ConcurrentHashMap<Pointer, Block>();
+    private static final GDestroyNotify freeFunc = new GDestroyNotify() {
+        public void callback(Pointer data) {
+            Block block = blocksInUse.remove(data);
+            if (block != null) {
+                block.release();
+            }
+        }
+    };
+    private static final Pointer FREE_FUNC = new FreeFuncStruct(freeFunc).getFunctionPointer();
+
+    private final int maxBuffersPerSize;
+    private final ConcurrentMap<Integer, SizeClass> sizes = new ConcurrentHashMap<Integer, SizeClass>();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong unpooled = new AtomicLong();
+
+    public BufferPool() {
+        this(DEFAULT_BUFFERS_PER_SIZE);
+    }
+
+    /**
+     * Creates a new buffer pool.
+     *
+     * @param maxBuffersPerSize the maximum number of buffers kept for each size.
+     */
+    public BufferPool(int maxBuffersPerSize) {
+        if (maxBuffersPerSize < 1) {
+            throw new IllegalArgumentException("Invalid pool size " + maxBuffersPerSize);
+        }
+        this.maxBuffersPerSize = maxBuffersPerSize;
+    }
+
+    /**
+     * Gets a new writable buffer of the given size.
+     * <p>
+     * The buffer must be given back with either {@link #handOff} or
+     * {@link #recycle}.  Its data is left as the previous user of the memory
+     * left it.
+     *
+     * @param size the buffer size in bytes.
+     * @return a buffer.
+     */
+    public Buffer acquire(int size) {
+        SizeClass sc = size > 0 ? sizeClass(size) : null;
+        if (sc != null) {
+            PooledBlock block = sc.free.poll();
+            if (block != null) {
+                reused.incrementAndGet();
+                return wrap(block);
+            }
+            if (sc.count.incrementAndGet() <= maxBuffersPerSize) {
+                allocated.incrementAndGet();
+                return wrap(new PooledBlock(sc, size));
+            }
+            sc.count.decrementAndGet();
+        }
+        unpooled.incrementAndGet();
+        return new Buffer(size);
+    }
+
+    /**
+     * Gets the native pointer of an acquired buffer to pass to native code
+     * that takes ownership of a reference.  The buffer wrapper must not be used
+     * by the caller afterwards.
+     *
+     * @param buffer a buffer returned by {@link #acquire}.
+     * @return the native buffer, with the only reference to it.
+     */
+    public Pointer handOff(Buffer buffer) {
+        Pointer ptr = buffer.getNativeAddress();
+        buffer.disown();
+        return ptr;
+    }
+
+    /**
+     * Returns an acquired buffer that was not handed off.  Its memory goes
+     * back to the pool once nothing else refers to the buffer.
+     *
+     * @param buffer a buffer returned by {@link #acquire}.
+     */
+    public void recycle(Buffer buffer) {
+        buffer.dispose();
+    }
+
+    /**
+     * Drops the pool's free memory.  Memory still in use by buffers stays
+     * alive until they are released, and is then dropped too.
+     */
+    public void clear() {
+        for (SizeClass sc : sizes.values()) {
+            sc.free.clear();
+        }
+        sizes.clear();
+    }
+
+    /**
+     * Gets the number of pooled buffers allocated.
+     *
+     * @return the number of allocations.
+     */
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * Gets the number of times pooled memory was reused.
+     *
+     * @return the number of reuses.
+     */
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    /**
+     * Gets the number of buffers allocated outside the pool because all the
+     * pooled memory of the size was in use.
+     *
+     * @return the number of unpooled allocations.
+     */
+    public long getUnpooledCount() {
+        return unpooled.get();
+    }
+
+    private SizeClass sizeClass(int size) {
+        SizeClass sc = sizes.get(size);
+        if (sc == null) {
+            if (sizes.size() >= MAX_SIZE_CLASSES) {
+                return null;
+            }
+            SizeClass tmp = sizes.putIfAbsent(size, sc = new SizeClass());
+            if (tmp != null) {
+                sc = tmp;
+            }
+        }
+        return sc;
+    }
+
+    /**
+     * Wraps a block in a new GstBuffer that gives it back when finalized.
+     */
+    static Buffer wrap(Block block) {
+        Pointer ptr = GstDirectAPI.gst_buffer_new();
+        if (ptr == null) {
+            block.release();
+            throw new OutOfMemoryError("Could not allocate Buffer");
+        }
+        blocksInUse.put(block.memory, block);
+        ptr.setPointer(DATA_OFFSET, block.memory);
+        ptr.setInt(SIZE_OFFSET, block.size);
+        ptr.setPointer(MALLOC_DATA_OFFSET, block.memory);
+        ptr.setPointer(FREE_FUNC_OFFSET, FREE_FUNC);
+        return NativeObject.objectFor(ptr, Buffer.class, 0, true);
+    }
+
+    /**
+     * Native memory lent to the GstBuffers created by {@link #wrap}.
+     */
+    static abstract class Block {
+        final Memory memory;
+        final int size;
+
+        Block(int size) {
+            this.memory = new Memory(size);
+            this.size = size;
+        }
+
+        /**
+         * Called once the buffer using this block has been finalized.
+         */
+        abstract void release();
+    }
+
+    private static final class PooledBlock extends Block {
+        final SizeClass sizeClass;
+
+        PooledBlock(SizeClass sizeClass, int size) {
+            super(size);
+            this.sizeClass = sizeClass;
+        }
+
+        void release() {
+            sizeClass.free.offer(this);
+        }
+    }
+
+    private static final class SizeClass {
+        final Queue<PooledBlock> free = new ConcurrentLinkedQueue<PooledBlock>();
+        final AtomicInteger count = new AtomicInteger();
+    }
+}
@@ -33,6 +33,7 @@ import java.util.logging.Logger;
 
 import org.gstreamer.Buffer;
 import org.gstreamer.Caps;
+import org.gstreamer.Event;
 import org.gstreamer.FlowReturn;
 import org.gstreamer.PadDirection;
 import org.gstreamer.PadTemplate;
@@ -69,6 +70,7 @@ abstract public class CustomSink extends BaseSink {
         BaseSinkAPI.BooleanFunc1 stop;
         BaseSinkAPI.GetCaps getCaps;
         BaseSinkAPI.SetCaps setCaps;
+        BaseSinkAPI.EventNotify event;
     }
     private static final Map<Class<? extends CustomSink>, CustomSinkInfo>  customSubclasses = new ConcurrentHashMap<Class<? extends CustomSink>, CustomSinkInfo>();
     protected CustomSink(Class<? extends CustomSink> subClass, String name) {
@@ -123,26 +125,31 @@ abstract public class CustomSink extends BaseSink {
         logger.info(getClass().getSimpleName() + ".sinkSetCaps");
         return false; 
     }
-    private static class BooleanFunc1 implements BaseSinkAPI.BooleanFunc1 {
-        private Method method;
-        public BooleanFunc1(String methodName) {
+    @SinkCallback
+    protected boolean sinkEvent(Event ev) {
+        logger.info(getClass().getSimpleName() + ".sinkEvent");
+        return true;
+    }
+    private static final BaseSinkAPI.BooleanFunc1 startCallback = new BaseSinkAPI.BooleanFunc1() {
+
+        public boolean callback(BaseSink element) {
             try {
-                method = CustomSink.class.getDeclaredMethod(methodName, new Class[0]);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
+                return ((CustomSink) element).sinkStart();
+            } catch (Throwable ex) {
+                return false;
             }
         }
+    };
+    private static final BaseSinkAPI.BooleanFunc1 stopCallback = new BaseSinkAPI.BooleanFunc1() {
+
         public boolean callback(BaseSink element) {
             try {
-                return ((Boolean) method.invoke(element)).booleanValue();
+                return ((CustomSink) element).sinkStop();
             } catch (Throwable ex) {
                 return false;
             }
         }
-        
-    }
-    private static final BooleanFunc1 startCallback = new BooleanFunc1("sinkStart");
-    private static final BooleanFunc1 stopCallback = new BooleanFunc1("sinkStop");
+    };
     private static final BaseSinkAPI.Render renderCallback = new BaseSinkAPI.Render() {
         
         public FlowReturn callback(BaseSink sink, Buffer buffer) {
@@ -184,6 +191,16 @@ abstract public class CustomSink extends BaseSink {
             }
         }
     };
+    private static final BaseSinkAPI.EventNotify eventCallback = new BaseSinkAPI.EventNotify() {
+
+        public boolean callback(BaseSink element, Event ev) {
+            try {
+                return ((CustomSink) element).sinkEvent(ev);
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    };
     private static void init(Class<? extends CustomSink> sinkClass) {
         final CustomSinkInfo info = new CustomSinkInfo();
         customSubclasses.put(sinkClass, info);
@@ -216,6 +233,8 @@ abstract public class CustomSink extends BaseSink {
                     info.getCaps = getCapsCallback;
                 } else if (name.equals("setcaps")) {
                     info.setCaps = setCapsCallback;
+                } else if (name.equals("event")) {
+                    info.event = eventCallback;
                 } 
             } catch (NoSuchMethodException ex) { 
 //            } catch (NoSuchFieldException ex) {
@@ -230,6 +249,7 @@ abstract public class CustomSink extends BaseSink {
                 base.start = info.start;
                 base.stop = info.stop;
                 base.set_caps = info.setCaps;
+                base.event = info.event;
                 base.write();            
             }
         };
@@ -69,10 +69,10 @@ abstract public class CustomSrc extends BaseSrc {
         // Per-instance callback functions - names must match GstBaseSrcClass
         BaseSrcAPI.Create create;
         BaseSrcAPI.Seek seek;
-        BooleanFunc1 is_seekable;
-        BooleanFunc1 start;
-        BooleanFunc1 stop;
-        BooleanFunc1 negotiate;
+        BaseSrcAPI.BooleanFunc1 is_seekable;
+        BaseSrcAPI.BooleanFunc1 start;
+        BaseSrcAPI.BooleanFunc1 stop;
+        BaseSrcAPI.BooleanFunc1 negotiate;
         BaseSrcAPI.GetCaps get_caps;
         BaseSrcAPI.SetCaps set_caps;
         BaseSrcAPI.GetSize get_size;
@@ -80,9 +80,34 @@ abstract public class CustomSrc extends BaseSrc {
         BaseSrcAPI.Fixate fixate;
         BaseSrcAPI.EventNotify event;
     }
+    private volatile BufferPool bufferPool = null;
+
     protected CustomSrc(Class<? extends CustomSrc> subClass, String name) {
         super(initializer(GOBJECT_API.g_object_new(getSubclassType(subClass), "name", name)));
     }
+
+    /**
+     * Gets the pool that buffers passed to {@link #srcFillBuffer} are taken from.
+     *
+     * @return the buffer pool, or null (the default) if a new buffer is
+     * allocated for every call.
+     */
+    protected BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Sets the pool that buffers passed to {@link #srcFillBuffer} are taken from.
+     *
+     * @param pool the buffer pool, or null to allocate a new buffer for every call.
+     */
+    protected void setBufferPool(BufferPool pool) {
+        BufferPool old = bufferPool;
+        bufferPool = pool;
+        if (old != null && old != pool) {
+            old.clear();
+        }
+    }
     private static CustomSrcInfo getSubclassInfo(Class<? extends CustomSrc> subClass) {
        synchronized (subClass) {
             CustomSrcInfo info = customSubclasses.get(subClass);
@@ -118,6 +143,10 @@ abstract public class CustomSrc extends BaseSrc {
     /**
      * Used when you just want to fill a Buffer with data.  The Buffer
      * will be allocated and initialized by gstreamer.
+     * <p>
+     * If the element has a {@link #setBufferPool buffer pool}, the buffer
+     * memory is taken from it, and is reused once gstreamer is done with the
+     * buffer.  The Buffer must not be kept after this method returns.
      * @param offset
      * @param size
      * @param buffer
@@ -188,20 +217,38 @@ abstract public class CustomSrc extends BaseSrc {
         logger.info("CustomSrc.srcFixate");
     }
     
+    private static void recycle(BufferPool pool, Buffer buffer) {
+        if (pool != null) {
+            pool.recycle(buffer);
+        } else {
+            buffer.dispose();
+        }
+    }
+
     private static final BaseSrcAPI.Create fillBufferCallback = new BaseSrcAPI.Create() {
 
         public FlowReturn callback(BaseSrc element, long offset, int size, Pointer bufRef) {                  
-            try {      
-                Buffer buffer = new Buffer(size);
-                //System.out.println("Sending buf=" + buf);
-                FlowReturn retVal = ((CustomSrc) element).srcFillBuffer(offset, size, buffer);
-                bufRef.setPointer(0, buffer.getAddress());
-                buffer.disown();
-
+            CustomSrc src = (CustomSrc) element;
+            BufferPool pool = src.bufferPool;
+            Buffer buffer = null;
+            try {
+                buffer = pool != null ? pool.acquire(size) : new Buffer(size);
+                FlowReturn retVal = src.srcFillBuffer(offset, size, buffer);
+                if (retVal != FlowReturn.OK) {
+                    recycle(pool, buffer);
+                } else if (pool != null) {
+                    bufRef.setPointer(0, pool.handOff(buffer));
+                } else {
+                    bufRef.setPointer(0, buffer.getAddress());
+                    buffer.disown();
+                }
                 return retVal;
             } catch (Exception ex) {
+                if (buffer != null) {
+                    recycle(pool, buffer);
+                }
                 return FlowReturn.UNEXPECTED;
-            }                    
+            }
         }
         
     };
@@ -223,28 +270,46 @@ abstract public class CustomSrc extends BaseSrc {
         }
         
     };
-    private static class BooleanFunc1 implements BaseSrcAPI.BooleanFunc1 {
-        private Method method;
-        public BooleanFunc1(String methodName) {
+    private static final BaseSrcAPI.BooleanFunc1 isSeekableCallback = new BaseSrcAPI.BooleanFunc1() {
+
+        public boolean callback(BaseSrc element) {
+            try {
+                return ((CustomSrc) element).srcIsSeekable();
+            } catch (Exception ex) {
+                return false;
+            }
+        }
+    };
+    private static final BaseSrcAPI.BooleanFunc1 startCallback = new BaseSrcAPI.BooleanFunc1() {
+
+        public boolean callback(BaseSrc element) {
             try {
-                method = CustomSrc.class.getDeclaredMethod(methodName, new Class[0]);
+                return ((CustomSrc) element).srcStart();
             } catch (Exception ex) {
-                throw new RuntimeException(ex);
+                return false;
             }
         }
+    };
+    private static final BaseSrcAPI.BooleanFunc1 stopCallback = new BaseSrcAPI.BooleanFunc1() {
+
         public boolean callback(BaseSrc element) {
             try {
-                return ((Boolean) method.invoke(element)).booleanValue();
+                return ((CustomSrc) element).srcStop();
             } catch (Exception ex) {
                 return false;
             }
         }
-        
-    }
-    private static final BooleanFunc1 isSeekableCallback = new BooleanFunc1("srcIsSeekable");
-    private static final BooleanFunc1 startCallback = new BooleanFunc1("srcStart");
-    private static final BooleanFunc1 stopCallback = new BooleanFunc1("srcStop");
-    private static final BooleanFunc1 negotiateCallback = new BooleanFunc1("srcNegotiate");
+    };
+    private static final BaseSrcAPI.BooleanFunc1 negotiateCallback = new BaseSrcAPI.BooleanFunc1() {
+
+        public boolean callback(BaseSrc element) {
+            try {
+                return ((CustomSrc) element).srcNegotiate();
+            } catch (Exception ex) {
+                return false;
+            }
+        }
+    };
     private static final BaseSrcAPI.Seek seekCallback = new BaseSrcAPI.Seek() {
        
         public boolean callback(BaseSrc element, GstSegmentStruct segment) {
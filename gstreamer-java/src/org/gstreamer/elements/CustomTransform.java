@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import static org.gstreamer.lowlevel.GObjectAPI.GOBJECT_API;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Caps;
+import org.gstreamer.Event;
+import org.gstreamer.FlowReturn;
+import org.gstreamer.PadDirection;
+import org.gstreamer.PadTemplate;
+import org.gstreamer.lowlevel.BaseTransformAPI;
+import org.gstreamer.lowlevel.BaseTransformAPI.GstBaseTransformStruct;
+import org.gstreamer.lowlevel.GObjectAPI.GBaseInitFunc;
+import org.gstreamer.lowlevel.GObjectAPI.GClassInitFunc;
+import org.gstreamer.lowlevel.GObjectAPI.GTypeInfo;
+import org.gstreamer.lowlevel.GType;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.GstPadTemplateAPI;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+/**
+ * Base class for filter elements implemented in java.
+ * <p>
+ * A subclass over-rides the <tt>transform...</tt> methods it needs, and a
+ * GstBaseTransform subclass is registered with only those vfuncs set, the
+ * same way {@link CustomSrc} and {@link CustomSink} do it:
+ * <ul>
+ * <li>Only {@link #transformIp} - the element works in place.  Writable
+ * buffers are modified directly, without a copy.
+ * <li>{@link #transform} - the output buffer is allocated, or taken from the
+ * element's {@link #setBufferPool buffer pool} if it has one, and filled from
+ * the input buffer.
+ * <li>{@link #transformCaps}/{@link #transformSize} - for elements whose
+ * output format or size differs from the input.
+ * </ul>
+ * An element that only looks at the data, e.g. for analysis, should be
+ * annotated with {@link Passthrough}.  Buffers are then pushed on untouched,
+ * and {@link #transformIp} is still called with each of them, read-only.
+ */
+abstract public class CustomTransform extends BaseTransform {
+    private final static Logger logger = Logger.getLogger(CustomTransform.class.getName());
+    
+    private static final Map<Class<? extends CustomTransform>, CustomTransformInfo>  customSubclasses 
+        = new ConcurrentHashMap<Class<? extends CustomTransform>, CustomTransformInfo>();
+
+    /**
+     * Marks a CustomTransform subclass that never modifies the buffer data.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface Passthrough {
+    }
+    
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    protected @interface TransformCallback {
+        public String value();
+    }
+
+    private static class CustomTransformInfo {
+        GType type;
+        boolean passthrough;
+        PadTemplate sinkTemplate;
+        PadTemplate srcTemplate;
+        
+        // Per-class callbacks used by gstreamer to initialize the subclass
+        GClassInitFunc classInit;
+        GBaseInitFunc baseInit;
+        
+        // Per-instance callback functions
+        BaseTransformAPI.TransformCaps transformCaps;
+        BaseTransformAPI.TransformSize transformSize;
+        BaseTransformAPI.SetCaps setCaps;
+        BaseTransformAPI.BooleanFunc1 start;
+        BaseTransformAPI.BooleanFunc1 stop;
+        BaseTransformAPI.EventNotify event;
+        BaseTransformAPI.Transform transform;
+        BaseTransformAPI.TransformIp transformIp;
+        BaseTransformAPI.PrepareOutput prepareOutput;
+    }
+    // GST_BUFFER_COPY_FLAGS | GST_BUFFER_COPY_TIMESTAMPS
+    private static final int COPY_METADATA = (1 << 0) | (1 << 1);
+    private static final int PASSTHROUGH_OFFSET = GstBaseTransformStruct.offsetOf("passthrough");
+
+    private volatile BufferPool bufferPool = null;
+
+    protected CustomTransform(Class<? extends CustomTransform> subClass, String name) {
+        super(initializer(GOBJECT_API.g_object_new(getSubclassType(subClass), "name", name)));
+        if (getSubclassInfo(subClass).passthrough) {
+            setPassthrough(true);
+        }
+    }
+
+    /**
+     * Gets the pool that output buffers passed to {@link #transform} are taken from.
+     *
+     * @return the buffer pool, or null if a new buffer is allocated for every call.
+     */
+    protected BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Sets the pool that output buffers passed to {@link #transform} are taken from.
+     *
+     * @param pool the buffer pool, or null to allocate a new buffer for every call.
+     */
+    protected void setBufferPool(BufferPool pool) {
+        BufferPool old = bufferPool;
+        bufferPool = pool;
+        if (old != null && old != pool) {
+            old.clear();
+        }
+    }
+    private static CustomTransformInfo getSubclassInfo(Class<? extends CustomTransform> subClass) {
+       synchronized (subClass) {
+            CustomTransformInfo info = customSubclasses.get(subClass);
+            if (info == null) {
+                init(subClass);
+                info = customSubclasses.get(subClass);
+            }
+            return info;
+        } 
+    }
+    private static GType getSubclassType(Class<? extends CustomTransform> subClass) {
+        return getSubclassInfo(subClass).type;
+    }
+    
+    /**
+     * Transforms the data of <tt>inbuf</tt> into <tt>outbuf</tt>.
+     * <p>
+     * <tt>outbuf</tt> has the caps of the output, and the flags and timestamps
+     * of <tt>inbuf</tt>, already set.  Neither buffer may be kept after this
+     * method returns.
+     *
+     * @param inbuf the input buffer.
+     * @param outbuf the output buffer to fill.
+     * @return {@link FlowReturn#OK} on success.
+     */
+    @TransformCallback("transform")
+    protected FlowReturn transform(Buffer inbuf, Buffer outbuf) {
+        logger.info("CustomTransform.transform");
+        return FlowReturn.NOT_SUPPORTED;
+    }
+    
+    /**
+     * Transforms a buffer in place.
+     * <p>
+     * The buffer is writable, unless the element is in passthrough mode, in
+     * which case it must only be read.  It may not be kept after this method
+     * returns.
+     *
+     * @param buffer the buffer to transform.
+     * @return {@link FlowReturn#OK} on success.
+     */
+    @TransformCallback("transform_ip")
+    protected FlowReturn transformIp(Buffer buffer) {
+        logger.info("CustomTransform.transformIp");
+        return FlowReturn.NOT_SUPPORTED;
+    }
+    
+    /**
+     * Gets the caps that the other pad can use, given the caps of one pad.
+     *
+     * @param direction the direction of the pad <tt>caps</tt> belongs to.
+     * @param caps the caps on that pad.
+     * @return the caps possible on the other pad.
+     */
+    @TransformCallback("transform_caps")
+    protected Caps transformCaps(PadDirection direction, Caps caps) {
+        logger.info("CustomTransform.transformCaps");
+        return caps.copy();
+    }
+    
+    /**
+     * Gets the size of the buffer on the other pad, given the size of a
+     * buffer on one pad.
+     *
+     * @param direction the direction of the pad <tt>caps</tt> belongs to.
+     * @param caps the caps on that pad.
+     * @param size the size of a buffer with <tt>caps</tt>.
+     * @param othercaps the caps on the other pad.
+     * @return the size of the buffer on the other pad, or -1 if unknown.
+     */
+    @TransformCallback("transform_size")
+    protected int transformSize(PadDirection direction, Caps caps, int size, Caps othercaps) {
+        logger.info("CustomTransform.transformSize");
+        return size;
+    }
+    
+    @TransformCallback("set_caps")
+    protected boolean transformSetCaps(Caps incaps, Caps outcaps) {
+        logger.info("CustomTransform.transformSetCaps");
+        return true;
+    }
+    
+    @TransformCallback("start")
+    protected boolean transformStart() {
+        logger.info("CustomTransform.transformStart");
+        return true;
+    }
+    
+    @TransformCallback("stop")
+    protected boolean transformStop() {
+        logger.info("CustomTransform.transformStop");
+        return true;
+    }
+    
+    @TransformCallback("event")
+    protected boolean transformEvent(Event ev) {
+        logger.info("CustomTransform.transformEvent");
+        return true;
+    }
+    
+    private static final BaseTransformAPI.Transform transformCallback = new BaseTransformAPI.Transform() {
+
+        public FlowReturn callback(BaseTransform trans, Buffer inbuf, Buffer outbuf) {
+            try {
+                return ((CustomTransform) trans).transform(inbuf, outbuf);
+            } catch (Throwable ex) {
+                return FlowReturn.ERROR;
+            }
+        }
+    };
+    private static final BaseTransformAPI.TransformIp transformIpCallback = new BaseTransformAPI.TransformIp() {
+
+        public FlowReturn callback(BaseTransform trans, Buffer buffer) {
+            try {
+                return ((CustomTransform) trans).transformIp(buffer);
+            } catch (Throwable ex) {
+                return FlowReturn.ERROR;
+            }
+        }
+    };
+    private static final BaseTransformAPI.PrepareOutput prepareOutputCallback = new BaseTransformAPI.PrepareOutput() {
+
+        public FlowReturn callback(BaseTransform trans, Buffer input, int size, Caps caps, Pointer bufRef) {
+            if (GstDirectAPI.ptr(trans).getInt(PASSTHROUGH_OFFSET) != 0) {
+                // The input goes straight on, as the default implementation does it
+                bufRef.setPointer(0, GstDirectAPI.gst_mini_object_ref(GstDirectAPI.ptr(input)));
+                return FlowReturn.OK;
+            }
+            BufferPool pool = ((CustomTransform) trans).bufferPool;
+            Buffer buffer = null;
+            try {
+                buffer = pool != null ? pool.acquire(size) : new Buffer(size);
+                Pointer ptr = GstDirectAPI.ptr(buffer);
+                GstDirectAPI.gst_buffer_copy_metadata(ptr, GstDirectAPI.ptr(input), COPY_METADATA);
+                GstDirectAPI.gst_buffer_set_caps(ptr, GstDirectAPI.ptr(caps));
+            } catch (Throwable ex) {
+                if (buffer != null) {
+                    if (pool != null) {
+                        pool.recycle(buffer);
+                    } else {
+                        buffer.dispose();
+                    }
+                }
+                return FlowReturn.ERROR;
+            }
+            if (pool != null) {
+                bufRef.setPointer(0, pool.handOff(buffer));
+            } else {
+                bufRef.setPointer(0, buffer.getAddress());
+                buffer.disown();
+            }
+            return FlowReturn.OK;
+        }
+    };
+    private static final BaseTransformAPI.TransformCaps transformCapsCallback = new BaseTransformAPI.TransformCaps() {
+
+        public Caps callback(BaseTransform trans, PadDirection direction, Caps caps) {
+            try {
+                Caps result = ((CustomTransform) trans).transformCaps(direction, caps);
+                if (result != null) {
+                    // The caller takes a reference, the java object keeps its own
+                    GstDirectAPI.incRef(result);
+                }
+                return result;
+            } catch (Throwable ex) {
+                return null;
+            }
+        }
+    };
+    private static final BaseTransformAPI.TransformSize transformSizeCallback = new BaseTransformAPI.TransformSize() {
+
+        public boolean callback(BaseTransform trans, PadDirection direction, Caps caps, 
+                int size, Caps othercaps, IntByReference othersize) {
+            try {
+                int result = ((CustomTransform) trans).transformSize(direction, caps, size, othercaps);
+                if (result < 0) {
+                    return false;
+                }
+                othersize.setValue(result);
+                return true;
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    };
+    private static final BaseTransformAPI.SetCaps setCapsCallback = new BaseTransformAPI.SetCaps() {
+
+        public boolean callback(BaseTransform trans, Caps incaps, Caps outcaps) {
+            try {
+                return ((CustomTransform) trans).transformSetCaps(incaps, outcaps);
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    };
+    private static final BaseTransformAPI.BooleanFunc1 startCallback = new BaseTransformAPI.BooleanFunc1() {
+
+        public boolean callback(BaseTransform trans) {
+            try {
+                return ((CustomTransform) trans).transformStart();
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    };
+    private static final BaseTransformAPI.BooleanFunc1 stopCallback = new BaseTransformAPI.BooleanFunc1() {
+
+        public boolean callback(BaseTransform trans) {
+            try {
+                return ((CustomTransform) trans).transformStop();
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    };
+    private static final BaseTransformAPI.EventNotify eventCallback = new BaseTransformAPI.EventNotify() {
+
+        public boolean callback(BaseTransform trans, Event ev) {
+            try {
+                return ((CustomTransform) trans).transformEvent(ev);
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    };
+    
+    /**
+     * Checks if <tt>cls</tt> or one of its parents below CustomTransform
+     * over-rides a CustomTransform method.
+     */
+    private static boolean isOverridden(Class<?> cls, Method method) {
+        for (Class<?> next = cls; next != null && next != CustomTransform.class; next = next.getSuperclass()) {
+            try {
+                next.getDeclaredMethod(method.getName(), method.getParameterTypes());
+                return true;
+            } catch (NoSuchMethodException ex) {
+            }
+        }
+        return false;
+    }
+    private static void init(Class<? extends CustomTransform> transformClass) {
+        final CustomTransformInfo info = new CustomTransformInfo();
+        info.passthrough = transformClass.isAnnotationPresent(Passthrough.class);
+        customSubclasses.put(transformClass, info);
+        
+        //
+        // Trawl through all the methods in the subclass, looking for ones that 
+        // over-ride the ones in CustomTransform
+        //
+        for (Method m : CustomTransform.class.getDeclaredMethods()) {
+            TransformCallback cb = m.getAnnotation(TransformCallback.class);
+            if (cb == null || !isOverridden(transformClass, m)) {
+                continue;
+            }
+            String name = cb.value();
+            if (name.equals("transform")) {
+                info.transform = transformCallback;
+                info.prepareOutput = prepareOutputCallback;
+            } else if (name.equals("transform_ip")) {
+                info.transformIp = transformIpCallback;
+            } else if (name.equals("transform_caps")) {
+                info.transformCaps = transformCapsCallback;
+            } else if (name.equals("transform_size")) {
+                info.transformSize = transformSizeCallback;
+            } else if (name.equals("set_caps")) {
+                info.setCaps = setCapsCallback;
+            } else if (name.equals("start")) {
+                info.start = startCallback;
+            } else if (name.equals("stop")) {
+                info.stop = stopCallback;
+            } else if (name.equals("event")) {
+                info.event = eventCallback;
+            }
+        }
+        info.classInit = new GClassInitFunc() {
+            public void callback(Pointer g_class, Pointer class_data) {
+                BaseTransformAPI.GstBaseTransformClass base = new BaseTransformAPI.GstBaseTransformClass(g_class);
+                base.transform_caps = info.transformCaps;
+                base.transform_size = info.transformSize;
+                base.set_caps = info.setCaps;
+                base.start = info.start;
+                base.stop = info.stop;
+                base.event = info.event;
+                base.transform = info.transform;
+                base.transform_ip = info.transformIp;
+                base.prepare_output_buffer = info.prepareOutput;
+                // Skip the transform entirely when the caps don't change
+                base.passthrough_on_same_caps = info.transform == null && info.transformIp == null;
+                base.write();
+            }
+        };
+        info.baseInit = new GBaseInitFunc() {
+
+            public void callback(Pointer g_class) {
+                info.sinkTemplate = new PadTemplate("sink", PadDirection.SINK, Caps.anyCaps());
+                info.srcTemplate = new PadTemplate("src", PadDirection.SRC, Caps.anyCaps());
+                GstPadTemplateAPI.GSTPADTEMPLATE_API.gst_element_class_add_pad_template(g_class, info.sinkTemplate);
+                GstPadTemplateAPI.GSTPADTEMPLATE_API.gst_element_class_add_pad_template(g_class, info.srcTemplate);
+            }
+        };
+        
+        //
+        // gstreamer boilerplate to hook the plugin in
+        //
+        GTypeInfo ginfo = new GTypeInfo();
+        ginfo.class_init = info.classInit;
+        ginfo.base_init = info.baseInit;
+        ginfo.instance_init = null;
+        ginfo.class_size = (short)new BaseTransformAPI.GstBaseTransformClass().size();
+        ginfo.instance_size = (short)new BaseTransformAPI.GstBaseTransformStruct().size();
+        
+        info.type = GOBJECT_API.g_type_register_static(BaseTransformAPI.BASETRANSFORM_API.gst_base_transform_get_type(), 
+                transformClass.getSimpleName(), ginfo, 0);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import org.gstreamer.Buffer;
+
+/**
+ * The frame listener and pool of {@link RGBDataSink} and
+ * {@link RGBDataAppSink} in frame pool mode, published together so the
+ * streaming thread never sees one without the other.
+ */
+final class PooledFrames {
+    final RGBFramePool.FrameListener listener;
+    final RGBFramePool pool;
+
+    PooledFrames(RGBFramePool.FrameListener listener, RGBFramePool pool) {
+        this.listener = listener;
+        this.pool = pool;
+    }
+
+    /**
+     * Copies a video frame into a frame leased from the pool and passes it to
+     * the listener.  The video frame is dropped if no pooled frame is free.
+     */
+    void deliver(Buffer buffer, int width, int height, boolean isPrerollFrame) {
+        RGBFramePool.Frame frame = pool.acquire(width, height);
+        if (frame != null) {
+            RGBFramePool.copy(buffer, frame);
+            listener.rgbFrame(isPrerollFrame, frame);
+        }
+    }
+}
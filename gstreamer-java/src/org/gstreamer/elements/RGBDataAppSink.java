@@ -28,7 +28,6 @@ import org.gstreamer.Element;
 import org.gstreamer.ElementFactory;
 import org.gstreamer.GhostPad;
 import org.gstreamer.Pipeline;
-import org.gstreamer.Structure;
 import org.gstreamer.lowlevel.GstBinAPI;
 import org.gstreamer.lowlevel.GstNative;
 
@@ -41,13 +40,15 @@ import org.gstreamer.lowlevel.GstNative;
 public class RGBDataAppSink extends Bin {
     private static final GstBinAPI gst = GstNative.load(GstBinAPI.class);
     private final AppSink sink;
+    private final VideoSizeTracker size;
     private boolean passDirectBuffer = false;
     private Listener listener;
+    private volatile PooledFrames pooledFrames;
     
     public static interface Listener {
         void rgbFrame(int width, int height, IntBuffer rgb);
     }
-
+    
     public RGBDataAppSink(String name, Listener listener) {
         super(initializer(gst.ptr_gst_bin_new(name)));
         this.listener = listener;
@@ -71,6 +72,7 @@ public class RGBDataAppSink extends Bin {
         videofilter.setCaps(new Caps(caps.toString()));
         addMany(conv, videofilter, sink);
         Element.linkMany(conv, videofilter, sink);
+        size = new VideoSizeTracker(sink.getStaticPad("sink"));
 
         //
         // Link the ghost pads on the bin to the sink pad on the convertor
@@ -90,6 +92,7 @@ public class RGBDataAppSink extends Bin {
             sink.set("emit-signals", true);
             sink.set("sync", true);
             sink.connect(new AppSinkNewBufferListener());
+            size = new VideoSizeTracker(sink.getStaticPad("sink"));
         } else {
           sink = null;
           throw new RuntimeException("Element with name " + name + " not found in the pipeline");
@@ -103,6 +106,24 @@ public class RGBDataAppSink extends Bin {
      */    
     public void removeListener() {
       this.listener = null;
+      this.pooledFrames = null;
+    }
+    
+    /**
+     * Switches this sink to frame pool mode.  Each video frame is copied into
+     * a frame leased from <tt>pool</tt> and passed to <tt>listener</tt> 
+     * instead of the {@link Listener} given at construction, so no memory is
+     * allocated per frame.
+     * 
+     * @param listener the listener to receive the pooled frames, or null to
+     * switch back to the {@link Listener}.
+     * @param pool the pool to lease frames from.
+     */
+    public void setFrameListener(RGBFramePool.FrameListener listener, RGBFramePool pool) {
+        if (listener != null && pool == null) {
+            throw new IllegalArgumentException("A frame pool is required");
+        }
+        this.pooledFrames = listener != null ? new PooledFrames(listener, pool) : null;
     }
     
     /**
@@ -143,12 +164,15 @@ public class RGBDataAppSink extends Bin {
         {
             Buffer buffer = sink.pullBuffer();
 
-            Caps caps = buffer.getCaps();
-            Structure struct = caps.getStructure(0);
-
-            int width = struct.getInteger("width");
-            int height = struct.getInteger("height");
-            if (width < 1 || height < 1) {
+            if (!size.update(buffer)) {
+                return;
+            }
+            int width = size.getWidth();
+            int height = size.getHeight();
+            PooledFrames pooled = pooledFrames;
+            if (pooled != null) {
+                pooled.deliver(buffer, width, height, false);
+                buffer.dispose();
                 return;
             }
             IntBuffer rgb;
@@ -29,7 +29,6 @@ import org.gstreamer.ElementFactory;
 import org.gstreamer.GhostPad;
 import org.gstreamer.Pad;
 import org.gstreamer.Pipeline;
-import org.gstreamer.Structure;
 import org.gstreamer.lowlevel.GstBinAPI;
 import org.gstreamer.lowlevel.GstNative;
 
@@ -42,6 +41,8 @@ public class RGBDataSink extends Bin {
     private final BaseSink videosink;    
     private boolean passDirectBuffer = false;
     private Listener listener;
+    private volatile PooledFrames pooledFrames;
+    private final VideoSizeTracker size;
     
     public static interface Listener {
         void rgbFrame(boolean isPrerollFrame, int width, int height, IntBuffer rgb);
@@ -76,6 +77,7 @@ public class RGBDataSink extends Bin {
         videofilter.setCaps(new Caps(caps.toString()));
         addMany(conv, videofilter, videosink);
         Element.linkMany(conv, videofilter, videosink);
+        size = new VideoSizeTracker(videosink.getStaticPad("sink"));
         
         //
         // Link the ghost pads on the bin to the sink pad on the convertor
@@ -99,6 +101,7 @@ public class RGBDataSink extends Bin {
             videosink.set("preroll-queue-len", 1);
             videosink.connect((BaseSink.HANDOFF) new VideoHandoffListener());
             videosink.connect((BaseSink.PREROLL_HANDOFF) new VideoHandoffListener());
+            size = new VideoSizeTracker(videosink.getStaticPad("sink"));
         } else {
           videosink = null;
           throw new RuntimeException("Element with name " + name + " not found in the pipeline");
@@ -112,8 +115,26 @@ public class RGBDataSink extends Bin {
      */    
     public void removeListener() {
       this.listener = null;
+      this.pooledFrames = null;
     }    
     
+    /**
+     * Switches this sink to frame pool mode.  Each video frame is copied into
+     * a frame leased from <tt>pool</tt> and passed to <tt>listener</tt> 
+     * instead of the {@link Listener} given at construction, so no memory is
+     * allocated per frame.
+     * 
+     * @param listener the listener to receive the pooled frames, or null to
+     * switch back to the {@link Listener}.
+     * @param pool the pool to lease frames from.
+     */
+    public void setFrameListener(RGBFramePool.FrameListener listener, RGBFramePool pool) {
+        if (listener != null && pool == null) {
+            throw new IllegalArgumentException("A frame pool is required");
+        }
+        this.pooledFrames = listener != null ? new PooledFrames(listener, pool) : null;
+    }
+    
     /**
      * Indicate whether the {@link RGBDataSink} should pass the native {@link java.nio.IntBuffer}
      * to the listener, or should copy it to a heap buffer.  The default is to pass
@@ -145,12 +166,15 @@ public class RGBDataSink extends Bin {
         
         private void doHandoff(Buffer buffer, Pad pad, boolean isPrerollFrame) {
         	
-            Caps caps = buffer.getCaps();
-            Structure struct = caps.getStructure(0);
-            
-            int width = struct.getInteger("width");
-            int height = struct.getInteger("height");
-            if (width < 1 || height < 1) {
+            if (!size.update(buffer)) {
+                return;
+            }
+            int width = size.getWidth();
+            int height = size.getHeight();
+            PooledFrames pooled = pooledFrames;
+            if (pooled != null) {
+                pooled.deliver(buffer, width, height, isPrerollFrame);
+                buffer.dispose();
                 return;
             }
             IntBuffer rgb;
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.lowlevel.GstBufferAPI.BufferStruct;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+
+/**
+ * A bounded pool of reusable RGB frames for {@link RGBDataSink} and
+ * {@link RGBDataAppSink}.
+ * <p>
+ * Frames are sized for the currently negotiated width and height.  When the
+ * size changes, frames of the old size are discarded as they are released,
+ * and new ones are allocated on demand, so once the stream is running no
+ * more frame memory is allocated.
+ * <p>
+ * A frame handed to a listener is leased to it until {@link Frame#release}
+ * is called, so it can be held on to (e.g. until it is painted) without
+ * copying.  If all the frames are leased when a new one is needed, the
+ * incoming video frame is dropped.
+ */
+public class RGBFramePool {
+    private static final int DATA_OFFSET = BufferStruct.offsetOf("data");
+    private static final int SIZE_OFFSET = BufferStruct.offsetOf("size");
+    private final int capacity;
+    private final boolean direct;
+    private final BlockingQueue<Frame> free;
+    private final AtomicLong dropped = new AtomicLong();
+    private int allocated = 0;
+    private int width = 0, height = 0;
+    private volatile int generation = 0;
+
+    /**
+     * Creates a new frame pool.
+     *
+     * @param capacity the maximum number of frames that can exist at once.
+     * @param direct if true, allocate frames in native memory, otherwise use the java heap.
+     */
+    public RGBFramePool(int capacity, boolean direct) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid pool capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.direct = direct;
+        this.free = new ArrayBlockingQueue<Frame>(capacity);
+    }
+
+    /**
+     * Leases a frame of the given size from the pool.
+     *
+     * @param width the frame width in pixels.
+     * @param height the frame height in pixels.
+     * @return a frame, or null if all the frames are leased.
+     */
+    public synchronized Frame acquire(int width, int height) {
+        if (width != this.width || height != this.height) {
+            resize(width, height);
+        }
+        Frame frame = free.poll();
+        if (frame == null) {
+            if (allocated >= capacity) {
+                dropped.incrementAndGet();
+                return null;
+            }
+            frame = allocate(width, height);
+            ++allocated;
+        }
+        frame.leased.set(true);
+        frame.rgb.clear();
+        return frame;
+    }
+
+    private void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        ++generation;
+        allocated -= free.size();
+        free.clear();
+    }
+
+    /**
+     * Receives frames leased from a {@link RGBFramePool}.  The listener
+     * must call {@link Frame#release} when it is done with the frame.
+     */
+    public static interface FrameListener {
+        /**
+         * Called with each video frame.
+         *
+         * @param isPrerollFrame true if this is the preroll frame, which only
+         * {@link RGBDataSink} delivers.
+         * @param frame the frame, leased to the listener.
+         */
+        void rgbFrame(boolean isPrerollFrame, Frame frame);
+    }
+
+    /**
+     * Copies the pixel data from a buffer into a frame, straight from the
+     * buffer memory so no NIO view of the buffer, and no JNA pointer or
+     * argument array, is created per frame.
+     */
+    static void copy(Buffer buffer, Frame frame) {
+        Pointer ptr = buffer.getAddress();
+        long data = Pointer.SIZE == 8 ? ptr.getLong(DATA_OFFSET) : ptr.getInt(DATA_OFFSET) & 0xffffffffL;
+        int count = data != 0 ? Math.min(ptr.getInt(SIZE_OFFSET) / 4, frame.rgb.capacity()) : 0;
+        if (count > 0) {
+            if (Pointer.SIZE == 8) {
+                if (frame.address != 0) {
+                    LibC.memcpy(frame.address, data, count * 4L);
+                } else {
+                    LibC.memcpy(frame.rgb.array(), data, count * 4L);
+                }
+            } else {
+                if (frame.address != 0) {
+                    LibC32.memcpy((int) frame.address, (int) data, count * 4);
+                } else {
+                    LibC32.memcpy(frame.rgb.array(), (int) data, count * 4);
+                }
+            }
+        }
+        frame.rgb.limit(count);
+    }
+
+    /** Directly mapped C library functions, where size_t and pointers are 64 bit */
+    private static final class LibC {
+        static {
+            Native.register(LibC.class, NativeLibrary.getInstance(Platform.C_LIBRARY_NAME));
+        }
+        static native long memcpy(long dest, long src, long n);
+        static native long memcpy(int[] dest, long src, long n);
+    }
+
+    /** Directly mapped C library functions, where size_t and pointers are 32 bit */
+    private static final class LibC32 {
+        static {
+            Native.register(LibC32.class, NativeLibrary.getInstance(Platform.C_LIBRARY_NAME));
+        }
+        static native int memcpy(int dest, int src, int n);
+        static native int memcpy(int[] dest, int src, int n);
+    }
+
+    private Frame allocate(int width, int height) {
+        int size = width * height;
+        if (direct) {
+            ByteBuffer bytes = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder());
+            return new Frame(this, generation, width, height, bytes.asIntBuffer(),
+                    Pointer.nativeValue(Native.getDirectBufferPointer(bytes)));
+        }
+        return new Frame(this, generation, width, height, IntBuffer.allocate(size), 0);
+    }
+
+    private void release(Frame frame) {
+        if (!frame.leased.getAndSet(false)) {
+            throw new IllegalStateException("Frame has already been released");
+        }
+        synchronized (this) {
+            if (frame.generation != generation || !free.offer(frame)) {
+                // Stale size, just let the GC have it
+                --allocated;
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of frames this pool will allocate.
+     *
+     * @return the pool capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of video frames dropped because no pooled frame was free.
+     *
+     * @return the number of dropped frames.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * An RGB frame leased from a {@link RGBFramePool}.
+     */
+    public static final class Frame {
+        private final RGBFramePool pool;
+        private final int generation;
+        private final int width, height;
+        private final IntBuffer rgb;
+        // The address of the direct buffer, or 0 for a heap frame
+        private final long address;
+        private final AtomicBoolean leased = new AtomicBoolean(false);
+
+        private Frame(RGBFramePool pool, int generation, int width, int height, IntBuffer rgb, long address) {
+            this.pool = pool;
+            this.generation = generation;
+            this.width = width;
+            this.height = height;
+            this.rgb = rgb;
+            this.address = address;
+        }
+
+        /**
+         * Gets the width of this frame.
+         *
+         * @return the width in pixels.
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * Gets the height of this frame.
+         *
+         * @return the height in pixels.
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Gets the pixel data of this frame.  It must not be used after the
+         * frame has been released.
+         *
+         * @return the RGB pixels.
+         */
+        public IntBuffer getBuffer() {
+            return rgb;
+        }
+
+        /**
+         * Returns this frame to its pool.
+         */
+        public void release() {
+            pool.release(this);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Caps;
+import org.gstreamer.GObject;
+import org.gstreamer.Pad;
+import org.gstreamer.Structure;
+import org.gstreamer.lowlevel.GObjectAPI.GParamSpec;
+
+/**
+ * Keeps track of the video size negotiated on a sink pad, so the caps only
+ * need to be parsed when they change instead of for every buffer.
+ */
+class VideoSizeTracker implements GObject.NOTIFY {
+    private volatile boolean changed = true;
+    private int width, height;
+
+    VideoSizeTracker(Pad pad) {
+        if (pad != null) {
+            pad.connect(this);
+        }
+    }
+
+    public void notify(GObject gobject, GParamSpec spec) {
+        changed = true;
+    }
+
+    /**
+     * Updates the size from the caps of <tt>buffer</tt> if the caps have
+     * changed since the last call.
+     *
+     * @param buffer the buffer about to be handled.
+     * @return true if the size is valid.
+     */
+    boolean update(Buffer buffer) {
+        if (changed) {
+            changed = false;
+            Caps caps = buffer.getCaps();
+            Structure struct = caps.getStructure(0);
+            width = struct.getInteger("width");
+            height = struct.getInteger("height");
+        }
+        return width > 0 && height > 0;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+}
@@ -47,9 +47,14 @@ public class GDate extends NativeObject {
     }
     
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-        GlibAPI.GLIB_API.g_date_free(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            GlibAPI.GLIB_API.g_date_free(ptr);
+        }
+    };
 
     public int getYear() {
         return GlibAPI.GLIB_API.g_date_get_year(handle());
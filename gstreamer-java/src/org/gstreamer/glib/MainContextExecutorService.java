@@ -21,72 +21,247 @@ package org.gstreamer.glib;
 import static org.gstreamer.lowlevel.GlibAPI.GLIB_API;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.gstreamer.lowlevel.GMainContext;
 import org.gstreamer.lowlevel.GSource;
+import org.gstreamer.lowlevel.GlibAPI.GSourceStruct;
+
+import com.sun.jna.Pointer;
 
 /**
  * Wraps the glib main loop/main context in a ScheduledExecutor interface.
+ * <p>
+ * All the tasks of an executor are run from a single custom GSource, which
+ * stays attached to the context until the executor terminates.  Tasks are
+ * handed to the main loop thread through a lock-free queue, and the context
+ * is only woken up when the queue goes from empty to not empty.  Delayed and
+ * periodic tasks are kept in a heap on the main loop thread, and the source
+ * tells the context how long it may sleep until the earliest of them is due,
+ * so no timeout sources are created.
  */
 public class MainContextExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final Logger logger = Logger.getLogger(MainContextExecutorService.class.getName());
+
+    // The most tasks run in one dispatch, so other sources are not starved
+    private static final int MAX_TASKS_PER_DISPATCH = 1024;
+
+    // Executors by their source, for the source functions to find
+    private static final ConcurrentMap<Pointer, MainContextExecutorService> executors
+            = new ConcurrentHashMap<Pointer, MainContextExecutorService>();
+    private static final GSource.Funcs sourceFuncs = new GSource.Funcs();
+    static {
+        sourceFuncs.prepare = new GSource.PrepareFunc() {
+            public boolean callback(Pointer source, Pointer timeout) {
+                MainContextExecutorService exec = executors.get(source);
+                return exec != null ? exec.prepare(timeout) : false;
+            }
+        };
+        sourceFuncs.check = new GSource.CheckFunc() {
+            public boolean callback(Pointer source) {
+                MainContextExecutorService exec = executors.get(source);
+                return exec != null ? exec.isReady() : false;
+            }
+        };
+        sourceFuncs.dispatch = new GSource.DispatchFunc() {
+            public boolean callback(Pointer source, Pointer callback, Pointer user_data) {
+                MainContextExecutorService exec = executors.get(source);
+                return exec != null ? exec.dispatch() : false;
+            }
+        };
+        sourceFuncs.write();
+    }
+    private static final int SOURCE_SIZE = new GSourceStruct().size();
+
     private final GMainContext context;
-    private GSource idleSource = null;
-    private final List<Runnable> bgTasks = new LinkedList<Runnable>();
+    private final GSource source;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Queue<ScheduledTask<?>> newTimers = new ConcurrentLinkedQueue<ScheduledTask<?>>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private final AtomicLong sequence = new AtomicLong();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    // Only used from the main loop thread
+    private final PriorityQueue<ScheduledTask<?>> timers = new PriorityQueue<ScheduledTask<?>>();
     private volatile boolean running = true;
+    private volatile boolean discardTimers = false;
     
     public MainContextExecutorService(GMainContext context) {
         this.context = context;
+        this.source = GLIB_API.g_source_new(sourceFuncs, SOURCE_SIZE);
+        executors.put(source.getNativeAddress(), this);
+        source.attach(context);
+    }
+
+    private void enqueue(Runnable r) {
+        tasks.offer(r);
+        wakeup();
+    }
+
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            GLIB_API.g_main_context_wakeup(context);
+        }
+    }
+
+    /**
+     * Checks whether the source is ready to dispatch, or else how long the
+     * context may sleep for.
+     */
+    private boolean prepare(Pointer timeout) {
+        if (!tasks.isEmpty() || !newTimers.isEmpty()) {
+            return true;
+        }
+        ScheduledTask<?> next = nextTimer();
+        if (next == null) {
+            // Once shut down, dispatch terminates the executor
+            if (!running) {
+                return true;
+            }
+            timeout.setInt(0, -1);
+            return false;
+        }
+        long delay = next.time - System.nanoTime();
+        if (delay <= 0) {
+            return true;
+        }
+        // Round up, so the timer is not woken up for just before it is due
+        long millis = TimeUnit.NANOSECONDS.toMillis(delay + 999999);
+        timeout.setInt(0, (int) Math.min(millis, Integer.MAX_VALUE));
+        return false;
+    }
+
+    private boolean isReady() {
+        if (!tasks.isEmpty() || !newTimers.isEmpty()) {
+            return true;
+        }
+        ScheduledTask<?> next = nextTimer();
+        return next == null ? !running : next.time - System.nanoTime() <= 0;
     }
-    private final Callable<Boolean> idleCallback = new Callable<Boolean>() {
 
-        public Boolean call() throws Exception {
-            //            System.out.println("Running g_idle callbacks");
-            List<Runnable> tasks = new ArrayList<Runnable>();
-            synchronized (bgTasks) {
-                tasks.addAll(bgTasks);
-                bgTasks.clear();
+    /**
+     * Runs the tasks and timers that are due.
+     *
+     * @return false once the executor has terminated, to remove the source.
+     */
+    private boolean dispatch() {
+        // Any task queued from here on needs another wakeup
+        wakeupPending.set(false);
+        for (ScheduledTask<?> t; (t = newTimers.poll()) != null; ) {
+            timers.add(t);
+        }
+        if (discardTimers) {
+            for (ScheduledTask<?> t; (t = timers.poll()) != null; ) {
+                t.cancel(false);
             }
-            for (Runnable r : tasks) {
-                r.run();
+        }
+        Runnable r;
+        for (int i = 0; i < MAX_TASKS_PER_DISPATCH && (r = tasks.poll()) != null; ++i) {
+            runTask(r);
+        }
+        final long now = System.nanoTime();
+        ScheduledTask<?> t;
+        while ((t = nextTimer()) != null && t.time - now <= 0) {
+            timers.poll();
+            if (t.isPeriodic() && !running) {
+                t.cancel(false);
+            } else if (t.isPeriodic()) {
+                if (t.runAndReset()) {
+                    t.time = t.period > 0 ? t.time + t.period : System.nanoTime() - t.period;
+                    timers.add(t);
+                }
+            } else {
+                t.run();
             }
+        }
+        if (!running && tasks.isEmpty() && newTimers.isEmpty() && nextTimer() == null) {
+            executors.remove(source.getNativeAddress());
+            terminated.countDown();
             return false;
         }
-    };
-    private void invokeLater(final Runnable r) {
-        //        System.out.println("Scheduling idle callbacks");
-        synchronized (bgTasks) {
-            boolean empty = bgTasks.isEmpty();
-            bgTasks.add(r);
-            // Only trigger the callback if there were no existing elements in the list
-            // otherwise it is already triggered
-            if (empty) {
-                idleSource = GLIB_API.g_idle_source_new();
-                idleSource.setCallback(idleCallback);
-                idleSource.attach(context);
+        return true;
+    }
+
+    /**
+     * Cancels the periodic timers once the executor has been shut down, so
+     * only the delayed one-shot tasks keep it from terminating.
+     */
+    private final Runnable cancelPeriodicTimers = new Runnable() {
+        public void run() {
+            for (Iterator<ScheduledTask<?>> it = timers.iterator(); it.hasNext(); ) {
+                ScheduledTask<?> t = it.next();
+                if (t.isPeriodic() || t.isCancelled()) {
+                    it.remove();
+                    t.cancel(false);
+                }
             }
         }
+    };
+
+    /**
+     * Gets the earliest timer, dropping any cancelled timers ahead of it.
+     */
+    private ScheduledTask<?> nextTimer() {
+        ScheduledTask<?> t;
+        while ((t = timers.peek()) != null && t.isCancelled()) {
+            timers.poll();
+        }
+        return t;
     }
+
+    private static void runTask(Runnable r) {
+        try {
+            r.run();
+        } catch (Throwable t) {
+            logger.log(Level.WARNING, "Task threw an exception", t);
+        }
+    }
+
+    /**
+     * Stops accepting new tasks.  Tasks already queued, and delayed tasks that
+     * are not periodic, still run; periodic tasks are cancelled.
+     */
     public void shutdown() {
-        shutdownNow();
+        running = false;
+        enqueue(cancelPeriodicTimers);
     }
 
+    /**
+     * Stops accepting new tasks, and cancels the delayed and periodic tasks.
+     *
+     * @return the tasks that were queued but not yet run.
+     */
     public List<Runnable> shutdownNow() {
-        List<Runnable> tasks = new ArrayList<Runnable>();
-        synchronized (bgTasks) {
-            tasks.addAll(bgTasks);
-            bgTasks.clear();
+        running = false;
+        discardTimers = true;
+        List<Runnable> pending = new ArrayList<Runnable>();
+        for (Runnable r; (r = tasks.poll()) != null; ) {
+            pending.add(r);
         }
-        return tasks;
+        for (ScheduledTask<?> t; (t = newTimers.poll()) != null; ) {
+            t.cancel(false);
+        }
+        GLIB_API.g_main_context_wakeup(context);
+        return pending;
     }
 
     public boolean isShutdown() {
@@ -94,99 +269,95 @@ public class MainContextExecutorService extends AbstractExecutorService implemen
     }
 
     public boolean isTerminated() {
-        synchronized (bgTasks) {
-            return !isShutdown() && bgTasks.isEmpty();
-        }
+        return terminated.getCount() == 0;
     }
 
     public boolean awaitTermination(long timeout, TimeUnit units) throws InterruptedException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return terminated.await(timeout, units);
     }
 
     public void execute(Runnable runnable) {
-        invokeLater(runnable);
-    }
-    private class ScheduledTimeout<V> extends FutureTask<V> implements ScheduledFuture<V> {
-        private volatile GSource source;
-        private Callable<Boolean> delayCallback = new Callable<Boolean>() {
-            public Boolean call() {
-                // Now start the periodic timer
-                if (period != 0 && !isCancelled()) {
-                    start(period, periodCallback);
-                }
-                // If periodic, don't bother returning a result
-                if (period != 0) {
-                    runAndReset();
-                } else {
-                    run();
-                }
-                return false;
-            }
-        };
-        private Callable<Boolean> periodCallback = new Callable<Boolean>() {
-            public Boolean call() {
-                runAndReset();
-                return !isCancelled();
-            }
-        };
-        private final long period;
-        private final TimeUnit units;
-        
-        public ScheduledTimeout(Callable<V> call, long delay, TimeUnit units) {
-            this(call, delay, 0, units);
+        if (runnable == null) {
+            throw new NullPointerException();
         }
-        public ScheduledTimeout(Callable<V> call, long delay, long period, TimeUnit units) {
-            super(call);
+        if (!running) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        enqueue(runnable);
+    }
 
+    private <V> ScheduledTask<V> schedule(ScheduledTask<V> task) {
+        if (!running) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        newTimers.offer(task);
+        wakeup();
+        return task;
+    }
+
+    private class ScheduledTask<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        private final long seq = sequence.getAndIncrement();
+        // Positive for a fixed rate, negative for a fixed delay, 0 for one shot
+        private final long period;
+        private volatile long time;
+
+        ScheduledTask(Callable<V> call, long delay, long period, TimeUnit units) {
+            super(call);
+            this.time = System.nanoTime() + units.toNanos(Math.max(delay, 0));
             this.period = period;
-            this.units = units;
-            start(delay, delayCallback);
-        }
-        
-        private final int getMilliseconds(long time) {
-            return (int) units.toMillis(time);
-        }
-        
-        private void start(long timeout, Callable<Boolean> callback) {
-            int milliseconds = getMilliseconds(timeout);
-            /*
-             * If the timeout is a multiple of seconds, use the more efficient
-             * g_timeout_add_seconds, if it is available.
-             */
-            if ((milliseconds % 1000) == 0) {
-                try {
-                    source = GLIB_API.g_timeout_source_new_seconds(milliseconds / 1000);
-                } catch (UnsatisfiedLinkError e) {
-                    source = GLIB_API.g_timeout_source_new(milliseconds);
-                }
-            } else {
-                source = GLIB_API.g_timeout_source_new(milliseconds);
-            }
-            source.setCallback(callback);
-            source.attach(context);
         }
-        public long getDelay(TimeUnit u) {
-            throw new UnsupportedOperationException("Not supported yet.");
+
+        boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        protected boolean runAndReset() {
+            return super.runAndReset();
         }
 
-        public int compareTo(Delayed delayed) {
-            //return delayed.getDelay(TimeUnit.MILLISECONDS)
-            throw new UnsupportedOperationException("Not supported yet.");
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            if (other instanceof ScheduledTask) {
+                ScheduledTask<?> t = (ScheduledTask<?>) other;
+                long diff = time - t.time;
+                if (diff != 0) {
+                    return diff < 0 ? -1 : 1;
+                }
+                return seq < t.seq ? -1 : 1;
+            }
+            long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : diff > 0 ? 1 : 0;
         }
     }
+
     public ScheduledFuture<?> schedule(Runnable runnable, long delay, TimeUnit units) {
-        return new ScheduledTimeout<Object>(Executors.callable(runnable), delay, units);
+        return schedule(new ScheduledTask<Object>(Executors.callable(runnable), delay, 0, units));
     }
 
     public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit units) {
-        return new ScheduledTimeout<V>(callable, delay, units);
+        return schedule(new ScheduledTask<V>(callable, delay, 0, units));
     }
 
-    public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long initialiDelay, long period, TimeUnit units) {
-        return new ScheduledTimeout<Object>(Executors.callable(runnable), initialiDelay, period, units);
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long initialDelay, long period, TimeUnit units) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid period " + period);
+        }
+        return schedule(new ScheduledTask<Object>(Executors.callable(runnable), initialDelay,
+                units.toNanos(period), units));
     }
 
-    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable runnable, long initialiDelay, long delay, TimeUnit units) {
-        return new ScheduledTimeout<Object>(Executors.callable(runnable), initialiDelay, delay, units);
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable runnable, long initialDelay, long delay, TimeUnit units) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Invalid delay " + delay);
+        }
+        return schedule(new ScheduledTask<Object>(Executors.callable(runnable), initialDelay,
+                -units.toNanos(delay), units));
     }
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * An LRU cache of fixed-size, aligned blocks of a seekable channel.
+ * <p>
+ * The blocks live in one direct buffer allocated up front, and are found
+ * through an open addressing table keyed on the block number and kept in
+ * LRU order by links in the blocks themselves, so the cache adds nothing to
+ * the java heap and does not allocate while reading.  Reads that miss load
+ * whole blocks; when the misses run in sequence, the following blocks are
+ * loaded along with them, with one scattering read per run when the channel
+ * supports it.  Reads move the channel position.
+ */
+final class BlockCache {
+    private final SeekableByteChannel channel;
+    private final ScatteringByteChannel scatteringChannel;
+    private final int blockSize;
+    private final int blockShift;
+    private final int readAheadBlocks;
+    private final ArrayDeque<Block> free = new ArrayDeque<Block>();
+    // Cached blocks by block number, with linear probing
+    private final Block[] table;
+    private final int tableShift;
+    // Sentinel of the LRU list: lru.next is the least recently used block
+    private final Block lru = new Block(null);
+    // The blocks being loaded by one read, and their buffers
+    private final Block[] run;
+    private final ByteBuffer[] runBuffers;
+    private long lastMiss = -2;
+    private int sequentialMisses = 0;
+    private long hits = 0, misses = 0, readAhead = 0;
+
+    /**
+     * One cached block.  <tt>length</tt> is less than the block size for the
+     * last block of the channel.
+     */
+    private static final class Block {
+        final ByteBuffer data;
+        long index = -1;
+        int length;
+        Block prev, next;
+
+        Block(ByteBuffer data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Creates a new block cache.
+     *
+     * @param channel the channel to read.
+     * @param blockSize the block size in bytes, a power of 2.
+     * @param capacity the number of blocks to keep.
+     * @param readAheadBlocks the most blocks to load ahead of a sequential read.
+     */
+    BlockCache(SeekableByteChannel channel, int blockSize, int capacity, int readAheadBlocks) {
+        if (Integer.bitCount(blockSize) != 1) {
+            throw new IllegalArgumentException("Block size must be a power of 2: " + blockSize);
+        }
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Invalid block cache capacity " + capacity);
+        }
+        if ((long) blockSize * capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Block cache too large: " + capacity + " blocks of " + blockSize);
+        }
+        this.channel = channel;
+        this.scatteringChannel = channel instanceof ScatteringByteChannel ? (ScatteringByteChannel) channel : null;
+        this.blockSize = blockSize;
+        this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+        // Never read so far ahead that the blocks being read evict each other
+        this.readAheadBlocks = Math.max(0, Math.min(readAheadBlocks, capacity / 2));
+        ByteBuffer slab = ByteBuffer.allocateDirect(blockSize * capacity);
+        for (int i = 0; i < capacity; ++i) {
+            slab.limit((i + 1) * blockSize).position(i * blockSize);
+            free.add(new Block(slab.slice()));
+        }
+        // At most half full
+        int tableSize = Integer.highestOneBit(capacity) << 2;
+        table = new Block[tableSize];
+        tableShift = 64 - Integer.numberOfTrailingZeros(tableSize);
+        lru.prev = lru.next = lru;
+        run = new Block[this.readAheadBlocks + 1];
+        runBuffers = new ByteBuffer[this.readAheadBlocks + 1];
+    }
+
+    /**
+     * Copies data at <tt>position</tt> into <tt>dst</tt>.
+     *
+     * @param position the channel position to read from.
+     * @param dst the buffer to fill.
+     * @return the number of bytes copied, or -1 if <tt>position</tt> is at
+     * the end of the channel.
+     */
+    synchronized int read(long position, ByteBuffer dst) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            long index = position >>> blockShift;
+            Block block = find(index);
+            if (block != null) {
+                ++hits;
+                unlink(block);
+                append(block);
+            } else {
+                ++misses;
+                block = load(index);
+            }
+            int offset = (int) (position & (blockSize - 1));
+            if (offset >= block.length) {
+                break;
+            }
+            int n = Math.min(block.length - offset, dst.remaining());
+            ByteBuffer src = block.data;
+            src.limit(offset + n).position(offset);
+            dst.put(src);
+            position += n;
+            total += n;
+            if (block.length < blockSize) {
+                // Short block - end of the channel
+                break;
+            }
+        }
+        return total > 0 || !dst.hasRemaining() ? total : -1;
+    }
+
+    /**
+     * Drops every cached block, e.g. because the channel contents changed.
+     */
+    synchronized void clear() {
+        for (Block block = lru.next; block != lru; block = block.next) {
+            block.index = -1;
+            free.add(block);
+        }
+        lru.prev = lru.next = lru;
+        Arrays.fill(table, null);
+        lastMiss = -2;
+        sequentialMisses = 0;
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    synchronized long getReadAheadCount() {
+        return readAhead;
+    }
+
+    /**
+     * Loads a missed block, and the blocks following it that are not cached
+     * if the misses are sequential.
+     */
+    private Block load(long index) throws IOException {
+        sequentialMisses = index == lastMiss + 1 ? sequentialMisses + 1 : 0;
+        int ahead = sequentialMisses > 0 ? Math.min(readAheadBlocks, sequentialMisses) : 0;
+        int count = 1;
+        while (count <= ahead && find(index + count) == null) {
+            ++count;
+        }
+        for (int i = 0; i < count; ++i) {
+            run[i] = acquire();
+            runBuffers[i] = run[i].data;
+            runBuffers[i].clear();
+        }
+        try {
+            fill(index << blockShift, count);
+        } catch (IOException ex) {
+            for (int i = 0; i < count; ++i) {
+                free.add(run[i]);
+            }
+            throw ex;
+        } finally {
+            Arrays.fill(runBuffers, 0, count, null);
+        }
+        Block first = run[0];
+        boolean full = true;
+        for (int i = 0; i < count; ++i) {
+            Block block = run[i];
+            run[i] = null;
+            if (!full) {
+                // Past the end of the channel
+                free.add(block);
+                continue;
+            }
+            block.index = index + i;
+            block.length = block.data.position();
+            insert(block);
+            append(block);
+            lastMiss = index + i;
+            if (i > 0) {
+                ++readAhead;
+            }
+            full = block.length == blockSize;
+        }
+        return first;
+    }
+
+    private Block acquire() {
+        Block block = free.poll();
+        if (block == null) {
+            block = lru.next;
+            unlink(block);
+            remove(block);
+            block.index = -1;
+        }
+        return block;
+    }
+
+    /**
+     * Reads into the first <tt>count</tt> run buffers from <tt>position</tt>,
+     * until they are full or the channel ends.
+     */
+    private void fill(long position, int count) throws IOException {
+        channel.position(position);
+        int first = 0;
+        while (first < count) {
+            long n = scatteringChannel != null
+                    ? scatteringChannel.read(runBuffers, first, count - first)
+                    : channel.read(runBuffers[first]);
+            if (n < 0) {
+                break;
+            }
+            while (first < count && !runBuffers[first].hasRemaining()) {
+                ++first;
+            }
+        }
+    }
+
+    private int slot(long index) {
+        return (int) ((index * 0x9E3779B97F4A7C15L) >>> tableShift);
+    }
+
+    private Block find(long index) {
+        int mask = table.length - 1;
+        for (int i = slot(index); ; i = (i + 1) & mask) {
+            Block block = table[i];
+            if (block == null || block.index == index) {
+                return block;
+            }
+        }
+    }
+
+    private void insert(Block block) {
+        int mask = table.length - 1;
+        int i = slot(block.index);
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = block;
+    }
+
+    /**
+     * Removes a block from the table, moving back any blocks after it in the
+     * same probe sequence so that lookups never stop short of them.
+     */
+    private void remove(Block block) {
+        int mask = table.length - 1;
+        int i = slot(block.index);
+        while (table[i] != block) {
+            i = (i + 1) & mask;
+        }
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            int home = slot(table[j].index);
+            // Move it back unless its home slot lies cyclically in (i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = null;
+    }
+
+    private void append(Block block) {
+        block.prev = lru.prev;
+        block.next = lru;
+        lru.prev.next = block;
+        lru.prev = block;
+    }
+
+    private void unlink(Block block) {
+        block.prev.next = block.next;
+        block.next.prev = block.prev;
+        block.prev = block.next = null;
+    }
+}
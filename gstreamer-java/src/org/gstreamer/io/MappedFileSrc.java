@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.FlowReturn;
+import org.gstreamer.Format;
+import org.gstreamer.MiniObjectFlags;
+import org.gstreamer.elements.CustomSrc;
+import org.gstreamer.lowlevel.GlibAPI.GDestroyNotify;
+import org.gstreamer.lowlevel.GstAPI.GstSegmentStruct;
+import org.gstreamer.lowlevel.GstBufferAPI.BufferStruct;
+import org.gstreamer.lowlevel.GstBufferAPI.FreeFuncStruct;
+import org.gstreamer.lowlevel.GstMiniObjectAPI.MiniObjectStruct;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * A source that reads a file by memory-mapping it, instead of copying the data
+ * into each buffer as {@link ReadableByteChannelSrc} does.
+ * <p>
+ * Each buffer points straight into the mapping, and keeps the part of the
+ * mapping it points into alive until gstreamer frees it.  A file that fits in
+ * one {@link #setWindowSize window} is mapped whole; larger files are mapped
+ * in windows, with a new window mapped when a read falls outside the current
+ * one.  Seeking only moves the read offset.
+ * <p>
+ * A window is unmapped as soon as the source has moved past it and the last
+ * buffer pointing into it has been freed, rather than when the garbage
+ * collector gets round to it.
+ * <p>
+ * The buffers are read-only.  This needs gstreamer 0.10.22 or later, for
+ * buffer free functions.
+ */
+public class MappedFileSrc extends CustomSrc {
+    private static final Logger logger = Logger.getLogger(MappedFileSrc.class.getName());
+
+    /** The largest window that can be mapped, and the default window size. */
+    public static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE & ~(MappedFileSrc.WINDOW_ALIGNMENT - 1);
+
+    // Windows start on a multiple of this, which is a multiple of the page size
+    private static final int WINDOW_ALIGNMENT = 1 << 16;
+
+    // Windows referenced by buffers, by id, so the free function can find them
+    private static final ConcurrentMap<Long, Window> windows = new ConcurrentHashMap<Long, Window>();
+    private static final AtomicLong windowIDs = new AtomicLong();
+
+    private static final GDestroyNotify releaseWindow = new GDestroyNotify() {
+        public void callback(Pointer data) {
+            Window window = windows.get(Pointer.nativeValue(data));
+            if (window != null) {
+                window.unref();
+            }
+        }
+    };
+    private static final Pointer RELEASE_WINDOW = new FreeFuncStruct(releaseWindow).getFunctionPointer();
+
+    private static final int FLAGS_OFFSET = BufferStruct.offsetOf("mini_object")
+            + MiniObjectStruct.offsetOf("flags");
+    private static final int DATA_OFFSET = BufferStruct.offsetOf("data");
+    private static final int SIZE_OFFSET = BufferStruct.offsetOf("size");
+    private static final int OFFSET_OFFSET = BufferStruct.offsetOf("offset");
+    private static final int OFFSET_END_OFFSET = BufferStruct.offsetOf("offset_end");
+    private static final int MALLOC_DATA_OFFSET = BufferStruct.offsetOf("malloc_data");
+    private static final int FREE_FUNC_OFFSET = BufferStruct.offsetOf("free_func");
+
+    private final FileChannel channel;
+    private final Object windowLock = new Object();
+    private volatile long windowSize = MAX_WINDOW_SIZE;
+    private Window window = null;
+    private StreamLock lock = null;
+
+    public MappedFileSrc(FileChannel channel, String name) {
+        super(MappedFileSrc.class, name);
+        this.channel = channel;
+        setFormat(Format.BYTES);
+    }
+
+    /**
+     * Gets the largest part of the file that is mapped at once.
+     *
+     * @return the window size in bytes.
+     */
+    public long getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Sets the largest part of the file that is mapped at once.  Smaller
+     * windows use less address space, but have to be re-mapped more often.
+     * The new size applies from the next window mapped.
+     *
+     * @param size the window size in bytes, at least 64k and at most
+     * {@link #MAX_WINDOW_SIZE}.
+     */
+    public void setWindowSize(long size) {
+        if (size < WINDOW_ALIGNMENT || size > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Invalid window size " + size);
+        }
+        windowSize = size;
+    }
+
+    @Override
+    protected FlowReturn srcCreateBuffer(long offset, int size, Buffer[] bufRef) throws IOException {
+        try {
+            long fileSize = channel.size();
+            if (offset >= fileSize) {
+                return FlowReturn.UNEXPECTED;
+            }
+            int length = (int) Math.min(size, fileSize - offset);
+            Buffer buffer = new Buffer();
+            synchronized (windowLock) {
+                Window w = windowFor(offset, length, fileSize);
+                w.ref();
+                Pointer ptr = buffer.getAddress();
+                ptr.setPointer(DATA_OFFSET, w.address.share(offset - w.position));
+                ptr.setInt(SIZE_OFFSET, length);
+                ptr.setLong(OFFSET_OFFSET, offset);
+                ptr.setLong(OFFSET_END_OFFSET, offset + length);
+                ptr.setPointer(MALLOC_DATA_OFFSET, new Pointer(w.id));
+                ptr.setPointer(FREE_FUNC_OFFSET, RELEASE_WINDOW);
+                ptr.setInt(FLAGS_OFFSET, ptr.getInt(FLAGS_OFFSET) | MiniObjectFlags.READONLY.intValue());
+            }
+            bufRef[0] = buffer;
+            return FlowReturn.OK;
+        } catch (IOException ex) {
+            signalError();
+            logger.log(Level.SEVERE, null, ex);
+            return FlowReturn.ERROR;
+        }
+    }
+
+    /**
+     * Gets a window containing the given range, mapping a new one if the
+     * current window does not.
+     */
+    private Window windowFor(long offset, int length, long fileSize) throws IOException {
+        Window w = window;
+        if (w != null && offset >= w.position && offset + length <= w.position + w.length) {
+            return w;
+        }
+        long start, end;
+        if (fileSize <= windowSize) {
+            start = 0;
+            end = fileSize;
+        } else {
+            start = offset - (offset % WINDOW_ALIGNMENT);
+            end = Math.min(fileSize, Math.max(start + windowSize, offset + length));
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        window = new Window(start, map);
+        windows.put(window.id, window);
+        if (w != null) {
+            w.unref();
+        }
+        return window;
+    }
+
+    @Override
+    protected boolean srcStop() {
+        synchronized (windowLock) {
+            if (window != null) {
+                window.unref();
+                window = null;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean srcIsSeekable() {
+        return true;
+    }
+
+    @Override
+    protected boolean srcSeek(GstSegmentStruct segment) {
+        // Buffers are created at whatever offset is asked for, so there is
+        // nothing to move
+        segment.last_stop = segment.start;
+        segment.time = segment.start;
+        segment.write();
+        return true;
+    }
+
+    @Override
+    protected long srcGetSize() {
+        try {
+            return channel.size();
+        } catch (IOException ex) {
+            signalError();
+            logger.log(Level.SEVERE, null, ex);
+            return -1;
+        }
+    }
+
+    private void signalError() {
+        if (null != lock) {
+            lock.setDone();
+        }
+    }
+
+    public void setNotifyOnError(StreamLock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Gets the number of windows that are still mapped.
+     */
+    static int getMappedWindowCount() {
+        return windows.size();
+    }
+
+    /**
+     * Unmaps a window now.  Java has no API for this, so it goes through the
+     * JDK internals, and if those are not available the mapping is left for
+     * the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer map) {
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), map);
+            } catch (NoSuchMethodException ex) {
+                Method cleanerMethod = map.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(map);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception ex) {
+            logger.log(Level.FINE, "Cannot unmap window, leaving it to the GC", ex);
+        }
+    }
+
+    /**
+     * A mapped part of the file.  The source holds a reference to its current
+     * window, and every buffer pointing into a window holds another.
+     */
+    private static final class Window {
+        final long id = windowIDs.incrementAndGet();
+        final long position;
+        final int length;
+        final Pointer address;
+        // Keeps the mapping alive while buffers point into it
+        final MappedByteBuffer map;
+        final AtomicInteger refs = new AtomicInteger(1);
+
+        Window(long position, MappedByteBuffer map) {
+            this.position = position;
+            this.length = map.capacity();
+            this.map = map;
+            this.address = Native.getDirectBufferPointer(map);
+        }
+
+        void ref() {
+            refs.incrementAndGet();
+        }
+
+        void unref() {
+            if (refs.decrementAndGet() == 0) {
+                windows.remove(id);
+                unmap(map);
+            }
+        }
+    }
+}
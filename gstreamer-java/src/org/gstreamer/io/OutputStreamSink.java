@@ -18,16 +18,110 @@
 
 package org.gstreamer.io;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * A sink that writes buffers to an {@link OutputStream}.
+ * <p>
+ * The stream is wrapped in a {@link GatheringByteChannel} that writes each
+ * buffer of a batch in turn, so the batching and async writer options of
+ * {@link WriteableByteChannelSink} apply to streams too.  With batching, the
+ * stream is flushed once per batch; without it, buffers are left to the
+ * stream's own buffering.  Either way the stream is flushed at end-of-stream
+ * and when the sink stops.
  *
  * @author wayne
  */
 public class OutputStreamSink extends WriteableByteChannelSink {
     
+    private final OutputStreamChannel channel;
+
     public OutputStreamSink(final OutputStream os, String name) {
-        super(Channels.newChannel(os), name);
+        this(new OutputStreamChannel(os), name);
+    }
+
+    private OutputStreamSink(OutputStreamChannel channel, String name) {
+        super(channel, name);
+        this.channel = channel;
+    }
+
+    @Override
+    public synchronized void setBatching(int maxBytes, long maxDelay, TimeUnit unit) {
+        super.setBatching(maxBytes, maxDelay, unit);
+        channel.flushPerBatch = maxBytes > 0;
+    }
+
+    private static final class OutputStreamChannel implements GatheringByteChannel, Flushable {
+        private static final int TRANSFER_SIZE = 64 * 1024;
+        private final OutputStream os;
+        private byte[] transfer;
+        private volatile boolean open = true;
+        volatile boolean flushPerBatch = false;
+
+        OutputStreamChannel(OutputStream os) {
+            this.os = os;
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            return put(src);
+        }
+
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long written = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                written += put(srcs[i]);
+            }
+            if (flushPerBatch) {
+                os.flush();
+            }
+            return written;
+        }
+
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        private int put(ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int len = src.remaining();
+            if (src.hasArray()) {
+                os.write(src.array(), src.arrayOffset() + src.position(), len);
+                src.position(src.limit());
+                return len;
+            }
+            // Native buffer data - copy through one reused array
+            if (transfer == null) {
+                transfer = new byte[TRANSFER_SIZE];
+            }
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), transfer.length);
+                src.get(transfer, 0, n);
+                os.write(transfer, 0, n);
+            }
+            return len;
+        }
+
+        public void flush() throws IOException {
+            if (open) {
+                os.flush();
+            }
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        public void close() throws IOException {
+            open = false;
+            os.close();
+        }
     }
 }
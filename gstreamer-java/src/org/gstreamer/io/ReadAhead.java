@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a channel ahead of its consumer on a background thread.
+ * <p>
+ * A fixed window of direct buffers cycles between the reader thread, which
+ * fills them, and the consumer, which drains them with {@link #read}.  The
+ * amount the reader asks for in one go follows the observed throughput, so a
+ * fast stream is read in big chunks and a slow one is handed over as soon as
+ * a little data has arrived.
+ */
+final class ReadAhead {
+    /** Roughly how long a chunk should take to read at the observed rate, in ns. */
+    private static final long TARGET_CHUNK_TIME = 20000000L;
+
+    private final ReadableByteChannel channel;
+    private final int minChunk;
+    private final int maxChunk;
+    private final BlockingQueue<Chunk> filled;
+    private final BlockingQueue<Chunk> free;
+    private final AtomicLong underruns = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final Thread thread;
+    private volatile int chunkSize;
+    private volatile boolean stopped = false;
+    private volatile IOException error;
+    private Chunk current = null;
+    private boolean eof = false;
+
+    /**
+     * One buffer of the window.  A chunk with no data marks the end of the stream.
+     */
+    private static final class Chunk {
+        final ByteBuffer data;
+
+        Chunk(int capacity) {
+            data = ByteBuffer.allocateDirect(capacity);
+        }
+    }
+    private static final Chunk END = new Chunk(0);
+
+    /**
+     * Creates and starts a read-ahead reader.
+     *
+     * @param channel the channel to read.
+     * @param window the number of chunks, at least 2.
+     * @param minChunk the smallest read size.
+     * @param maxChunk the largest read size, and the capacity of each chunk.
+     * @param name the name of the reader thread.
+     */
+    ReadAhead(ReadableByteChannel channel, int window, int minChunk, int maxChunk, String name) {
+        this.channel = channel;
+        this.minChunk = minChunk;
+        this.maxChunk = maxChunk;
+        this.chunkSize = minChunk;
+        filled = new ArrayBlockingQueue<Chunk>(window + 1);
+        free = new ArrayBlockingQueue<Chunk>(window);
+        for (int i = 0; i < window; ++i) {
+            free.add(new Chunk(maxChunk));
+        }
+        thread = new Thread(new Runnable() {
+            public void run() {
+                readLoop();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Fills <tt>dst</tt> with read-ahead data, waiting for the reader if the
+     * window is empty.
+     *
+     * @param dst the buffer to fill.
+     * @return the number of bytes copied, or -1 at the end of the stream.
+     * @throws IOException if the reader failed before the data ran out.
+     * @throws InterruptedIOException if the calling thread was interrupted
+     * while waiting for data.  The interrupt status is left set.
+     */
+    int read(ByteBuffer dst) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining() && !eof) {
+            if (current == null) {
+                current = filled.poll();
+                if (current == null) {
+                    underruns.incrementAndGet();
+                    try {
+                        current = filled.take();
+                    } catch (InterruptedException ex) {
+                        // Hand over what has been copied; the next call throws
+                        Thread.currentThread().interrupt();
+                        if (total > 0) {
+                            break;
+                        }
+                        throw new InterruptedIOException("Interrupted waiting for read-ahead data");
+                    }
+                }
+                if (current == END) {
+                    current = null;
+                    eof = true;
+                    break;
+                }
+            }
+            ByteBuffer src = current.data;
+            int n = Math.min(src.remaining(), dst.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + n);
+            dst.put(src);
+            src.limit(limit);
+            total += n;
+            if (!src.hasRemaining()) {
+                src.clear();
+                free.offer(current);
+                current = null;
+            }
+        }
+        if (total == 0 && eof) {
+            if (error != null) {
+                throw error;
+            }
+            return -1;
+        }
+        return total;
+    }
+
+    /**
+     * Stops the reader thread.  The thread is not interrupted, since that
+     * would close an interruptible channel, so a read that is blocked in the
+     * channel is left to finish on its own.  Data still in the window is lost.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Waits for the reader thread to finish after {@link #stop}.
+     */
+    void join() throws InterruptedException {
+        thread.join();
+    }
+
+    long getUnderrunCount() {
+        return underruns.get();
+    }
+
+    long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    private void readLoop() {
+        try {
+            while (!stopped) {
+                Chunk chunk = free.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    continue;
+                }
+                ByteBuffer buf = chunk.data;
+                buf.limit(chunkSize);
+                long start = System.nanoTime();
+                int n = 0;
+                IOException failure = null;
+                try {
+                    while (buf.hasRemaining() && !stopped) {
+                        n = channel.read(buf);
+                        if (n < 0) {
+                            break;
+                        }
+                    }
+                } catch (IOException ex) {
+                    // Still hand over what was read before the failure
+                    failure = ex;
+                }
+                int got = buf.position();
+                if (got > 0) {
+                    buf.flip();
+                    bytesRead.addAndGet(got);
+                    filled.put(chunk);
+                    adapt(got, System.nanoTime() - start);
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                if (n < 0) {
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            if (!stopped) {
+                error = ex;
+            }
+        } finally {
+            filled.offer(END);
+        }
+    }
+
+    /**
+     * Sizes the next read to take about {@link #TARGET_CHUNK_TIME} at the
+     * rate the last one was read at.
+     */
+    private void adapt(int bytes, long elapsed) {
+        long target = elapsed > 0 ? bytes * TARGET_CHUNK_TIME / elapsed : maxChunk;
+        int size = chunkSize;
+        if (target > size && size < maxChunk) {
+            size = Math.min(maxChunk, size * 2);
+        } else if (target < size / 2 && size > minChunk) {
+            size = Math.max(minChunk, size / 2);
+        }
+        chunkSize = size;
+    }
+}
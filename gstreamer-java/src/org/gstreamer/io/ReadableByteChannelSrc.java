@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,11 +35,42 @@ import org.gstreamer.elements.CustomSrc;
 import org.gstreamer.lowlevel.GstAPI.GstSegmentStruct;
 
 
+/**
+ * A source that reads from a {@link ReadableByteChannel}.
+ * <p>
+ * A {@link SeekableByteChannel}, such as a {@link FileChannel}, is read at
+ * the offsets asked for, and is seekable.  With {@link #setBlockCache} the
+ * reads go through an LRU cache of fixed-size blocks, so a demuxer jumping
+ * between its index and the data does not read the same blocks again.
+ * <p>
+ * Any other channel is read in sequence, by default on the streaming thread.
+ * With {@link #setPrefetch} a background thread reads such a channel ahead
+ * of the pipeline instead, so stalls in the stream are absorbed by the
+ * read-ahead window rather than showing up as pipeline jitter.
+ */
 public class ReadableByteChannelSrc extends CustomSrc {
+    /** The default smallest read of the prefetch thread. */
+    public static final int DEFAULT_MIN_READ = 16 * 1024;
+    /** The default largest read of the prefetch thread. */
+    public static final int DEFAULT_MAX_READ = 256 * 1024;
+    /** The default block size of the block cache. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    /** The most blocks the block cache loads ahead of a sequential read. */
+    public static final int CACHE_READ_AHEAD_BLOCKS = 8;
+
     private final ReadableByteChannel channel;
     private FileChannel fileChannel;
+    private SeekableByteChannel seekableChannel;
     private long channelPosition = 0;
     private StreamLock lock = null;
+    private int prefetchWindow = 0;
+    private int prefetchMinRead = DEFAULT_MIN_READ;
+    private int prefetchMaxRead = DEFAULT_MAX_READ;
+    private volatile ReadAhead readAhead = null;
+    private ReadAhead lastReadAhead = null;
+    private int cacheBlockSize = DEFAULT_BLOCK_SIZE;
+    private int cacheBlocks = 0;
+    private volatile BlockCache blockCache = null;
 
     public ReadableByteChannelSrc(ReadableByteChannel src, String name) {
         super(ReadableByteChannelSrc.class, name);  
@@ -46,18 +78,190 @@ public class ReadableByteChannelSrc extends CustomSrc {
         if (channel instanceof FileChannel) {
             this.fileChannel = (FileChannel) channel;
         }
+        if (channel instanceof SeekableByteChannel) {
+            this.seekableChannel = (SeekableByteChannel) channel;
+        }
         setFormat(Format.BYTES);
     }
     
+    /**
+     * Reads a non-file channel ahead of the pipeline on a background thread.
+     * <p>
+     * <tt>window</tt> buffers of up to <tt>maxRead</tt> bytes are kept
+     * filled ahead of the pipeline; 2 is double buffering, 3 triple
+     * buffering.  The size of each read adapts to the throughput of the
+     * channel, between <tt>minRead</tt> and <tt>maxRead</tt>.
+     * <p>
+     * Has no effect on a {@link SeekableByteChannel}, and must be called
+     * before the source is started.
+     *
+     * @param window the number of buffers to read ahead, or 0 to read on the
+     * streaming thread.
+     * @param minRead the smallest read size in bytes.
+     * @param maxRead the largest read size in bytes.
+     */
+    public synchronized void setPrefetch(int window, int minRead, int maxRead) {
+        if (window != 0 && (window < 2 || minRead < 1 || maxRead < minRead)) {
+            throw new IllegalArgumentException("Invalid prefetch window " + window
+                    + " or read sizes " + minRead + ".." + maxRead);
+        }
+        prefetchWindow = window;
+        prefetchMinRead = minRead;
+        prefetchMaxRead = maxRead;
+    }
+
+    /**
+     * Reads a non-file channel ahead of the pipeline with the default read
+     * sizes.
+     *
+     * @param window the number of buffers to read ahead, or 0 to read on the
+     * streaming thread.
+     * @see #setPrefetch(int, int, int)
+     */
+    public void setPrefetch(int window) {
+        setPrefetch(window, DEFAULT_MIN_READ, DEFAULT_MAX_READ);
+    }
+
+    /**
+     * Gets the number of times the pipeline had to wait for the prefetch
+     * thread since the source was started.
+     *
+     * @return the number of underruns.
+     */
+    public synchronized long getUnderrunCount() {
+        ReadAhead ra = readAhead != null ? readAhead : lastReadAhead;
+        return ra != null ? ra.getUnderrunCount() : 0;
+    }
+
+    /**
+     * Gets the current read size of the prefetch thread.
+     *
+     * @return the read size in bytes, or 0 when not prefetching.
+     */
+    public synchronized int getPrefetchReadSize() {
+        return readAhead != null ? readAhead.getChunkSize() : 0;
+    }
+
+    /**
+     * Reads a seekable channel through an LRU cache of aligned blocks.
+     * <p>
+     * The cache is allocated off-heap when the source starts, and is emptied
+     * every time it starts again.  Has no effect on a channel that is not a
+     * {@link SeekableByteChannel}, and must be called before the source is
+     * started.
+     *
+     * @param blockSize the block size in bytes, a power of 2.
+     * @param capacity the number of blocks to cache, or 0 for no cache.
+     */
+    public synchronized void setBlockCache(int blockSize, int capacity) {
+        if (capacity != 0 && (capacity < 2 || Integer.bitCount(blockSize) != 1)) {
+            throw new IllegalArgumentException("Invalid block cache of " + capacity
+                    + " blocks of " + blockSize + " bytes");
+        }
+        if (blockSize != cacheBlockSize || capacity != cacheBlocks) {
+            blockCache = null;
+        }
+        cacheBlockSize = blockSize;
+        cacheBlocks = capacity;
+    }
+
+    /**
+     * Reads a seekable channel through a block cache of {@link #DEFAULT_BLOCK_SIZE}
+     * blocks.
+     *
+     * @param capacity the number of blocks to cache, or 0 for no cache.
+     * @see #setBlockCache(int, int)
+     */
+    public void setBlockCache(int capacity) {
+        setBlockCache(DEFAULT_BLOCK_SIZE, capacity);
+    }
+
+    /**
+     * Gets the number of block cache lookups that found their block.
+     *
+     * @return the number of hits.
+     */
+    public long getCacheHitCount() {
+        BlockCache cache = blockCache;
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    /**
+     * Gets the number of block cache lookups that had to read the channel.
+     *
+     * @return the number of misses.
+     */
+    public long getCacheMissCount() {
+        BlockCache cache = blockCache;
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    /**
+     * Gets the number of blocks the block cache read ahead of a sequential read.
+     *
+     * @return the number of blocks read ahead.
+     */
+    public long getCacheReadAheadCount() {
+        BlockCache cache = blockCache;
+        return cache != null ? cache.getReadAheadCount() : 0;
+    }
+
+    @Override
+    protected synchronized boolean srcStart() {
+        if (seekableChannel != null && cacheBlocks > 0) {
+            if (blockCache == null) {
+                blockCache = new BlockCache(seekableChannel, cacheBlockSize, cacheBlocks,
+                        CACHE_READ_AHEAD_BLOCKS);
+            } else {
+                blockCache.clear();
+            }
+        }
+        if (seekableChannel == null && prefetchWindow > 0) {
+            if (lastReadAhead != null) {
+                // Let a read left over from the last run finish first
+                try {
+                    lastReadAhead.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            readAhead = new ReadAhead(channel, prefetchWindow, prefetchMinRead, prefetchMaxRead,
+                    getName() + " prefetch");
+        }
+        return true;
+    }
+
+    @Override
+    protected synchronized boolean srcStop() {
+        if (readAhead != null) {
+            readAhead.stop();
+            lastReadAhead = readAhead;
+            readAhead = null;
+        }
+        return true;
+    }
+
     private void readFully(long offset, long size, Buffer buffer) throws IOException {
         ByteBuffer dstBuffer = buffer.getByteBuffer();
         int total = 0;
-        long position = fileChannel != null ? offset : channelPosition;
+        long position = seekableChannel != null ? offset : channelPosition;
         buffer.setOffset(position);
+        final ReadAhead ra = readAhead;
+        final BlockCache cache = blockCache;
         while (dstBuffer.hasRemaining()) {
             int n = 0;
-            if (fileChannel != null) {
+            if (ra != null) {
+                n = ra.read(dstBuffer);
+            } else if (cache != null) {
+                n = cache.read(position, dstBuffer);
+            } else if (fileChannel != null) {
                 n = fileChannel.read(dstBuffer, position);
+            } else if (seekableChannel != null) {
+                if (seekableChannel.position() != position) {
+                    seekableChannel.position(position);
+                }
+                n = seekableChannel.read(dstBuffer);
             } else {
                 n = channel.read(dstBuffer);
             }
@@ -89,14 +293,17 @@ public class ReadableByteChannelSrc extends CustomSrc {
     }
     @Override
     public boolean srcIsSeekable() {
-        return fileChannel != null;
+        return seekableChannel != null;
     }
     
     @Override
     protected boolean srcSeek(GstSegmentStruct segment) {            
-        if (fileChannel != null) {
+        if (seekableChannel != null) {
             try {
-                fileChannel.position(segment.start);
+                // Cached reads are positional, only the channel needs moving
+                if (blockCache == null) {
+                    seekableChannel.position(segment.start);
+                }
                 segment.last_stop = segment.start;
                 segment.time = segment.start;
                 segment.write();
@@ -114,16 +321,16 @@ public class ReadableByteChannelSrc extends CustomSrc {
 
     @Override
     protected long srcGetSize() {
-        if (fileChannel != null) {
+        if (seekableChannel != null) {
             try {
-                return fileChannel.size();
+                return seekableChannel.size();
             } catch (IOException ex) {
                 signalError();
                 Logger.getLogger(ReadableByteChannelSrc.class.getName()).log(Level.SEVERE, null, ex);
                 return -1;
             }
         }
-        // We can't figure out the size of non-filechannel files
+        // We can't figure out the size of non-seekable channels
         return -1;
     }
     
@@ -18,22 +18,80 @@
 
 package org.gstreamer.io;
 
+import java.io.Flushable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.gstreamer.Buffer;
+import org.gstreamer.Event;
 import org.gstreamer.FlowReturn;
 import org.gstreamer.elements.CustomSink;
+import org.gstreamer.event.EOSEvent;
 
 /**
+ * A sink that writes buffers to a {@link WritableByteChannel}.
+ * <p>
+ * By default every buffer is written as soon as it is rendered.  With
+ * {@link #setBatching} the buffers are held until a byte or time threshold is
+ * reached, and are then written together with one gathering write when the
+ * channel is a {@link GatheringByteChannel}.  The buffers are not copied; each
+ * pending buffer keeps its reference until it has been written.
+ * <p>
+ * With {@link #setAsyncWriter} the batches are handed to a writer thread
+ * through a bounded queue, so a slow disk or socket does not stall the
+ * streaming thread.  The {@link OverflowPolicy} decides what happens when the
+ * queue is full.
+ * <p>
+ * Pending and queued data is written out when the sink gets end-of-stream,
+ * before the EOS message is posted, and when it stops.  A channel that is
+ * {@link Flushable} is flushed at the same points.  Write errors end the
+ * stream with {@link FlowReturn#ERROR} on the next render.
  *
  * @author wayne
  */
 public class WriteableByteChannelSink extends CustomSink {
-    
+    /** The most buffers written by one gathering write. */
+    public static final int MAX_BATCH_BUFFERS = 64;
+
+    /**
+     * What to do with a batch when the writer thread queue is full.
+     */
+    public static enum OverflowPolicy {
+        /** Wait for the writer thread to catch up. */
+        BLOCK,
+        /** Discard the batch, counting it in {@link #getDroppedBytes}. */
+        DROP,
+        /** Fail the stream with {@link FlowReturn#ERROR}. */
+        ERROR
+    }
+
     private WritableByteChannel channel;
     private boolean autoFlushBuffer = false;
     private StreamLock lock = null;
+
+    private int batchBytes = 0;
+    private long batchDelay = 0;
+    private int queueCapacity = 0;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    private Batch pending = new Batch();
+    private BlockingQueue<Batch> writeQueue;
+    private BlockingQueue<Batch> freeBatches;
+    private Thread writerThread;
+    private volatile IOException writeError;
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+
+    /** Queued after the last batch to stop the writer thread */
+    private static final Batch STOP = new Batch();
     
     public WriteableByteChannelSink(final WritableByteChannel channel, String name) {
         super(WriteableByteChannelSink.class, name);
@@ -48,23 +106,340 @@ public class WriteableByteChannelSink extends CustomSink {
         lock = sl;
     }
 
+    /**
+     * Holds rendered buffers until <tt>maxBytes</tt> are pending, or the
+     * oldest of them is older than <tt>maxDelay</tt> when the next one is
+     * rendered, and then writes them with one gathering write.
+     * <p>
+     * Must be called before the sink is started.
+     *
+     * @param maxBytes the amount of data to collect, or 0 to write every buffer
+     * as it is rendered.
+     * @param maxDelay the longest time a buffer is held, or 0 for no limit.
+     * @param unit the unit of <tt>maxDelay</tt>.
+     */
+    public synchronized void setBatching(int maxBytes, long maxDelay, TimeUnit unit) {
+        batchBytes = Math.max(0, maxBytes);
+        batchDelay = Math.max(0, unit.toNanos(maxDelay));
+    }
+
+    /**
+     * Writes the data on a dedicated writer thread.
+     * <p>
+     * Must be called before the sink is started.
+     *
+     * @param capacity the number of batches that may wait for the writer
+     * thread, or 0 to write on the streaming thread.
+     * @param policy what to do when <tt>capacity</tt> batches are waiting.
+     */
+    public synchronized void setAsyncWriter(int capacity, OverflowPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        queueCapacity = Math.max(0, capacity);
+        overflowPolicy = policy;
+    }
+
+    /**
+     * Gets the number of bytes written to the channel so far.
+     *
+     * @return the number of bytes written.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Gets the number of bytes discarded by the {@link OverflowPolicy#DROP}
+     * policy.
+     *
+     * @return the number of bytes dropped.
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /**
+     * Gets the number of batches waiting for the writer thread.
+     *
+     * @return the queue depth, always 0 without an async writer.
+     */
+    public int getQueueDepth() {
+        BlockingQueue<Batch> queue = writeQueue;
+        return queue != null ? queue.size() : 0;
+    }
+
     private void signalError() {
         if (null != lock)
             lock.setDone();
     }
+
+    @Override
+    protected boolean sinkStart() {
+        synchronized (this) {
+            writeError = null;
+            if (queueCapacity > 0) {
+                writeQueue = new ArrayBlockingQueue<Batch>(queueCapacity + 1);
+                freeBatches = new ArrayBlockingQueue<Batch>(queueCapacity + 2);
+                writerThread = new Thread(new Runnable() {
+                    public void run() {
+                        writeLoop();
+                    }
+                }, getName() + " writer");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean sinkEvent(Event event) {
+        if (event instanceof EOSEvent) {
+            drain();
+        }
+        return true;
+    }
+
+    /**
+     * Writes out the pending batch and everything queued for the writer
+     * thread, then flushes the channel.
+     */
+    private void drain() {
+        Batch marker = null;
+        synchronized (this) {
+            if (pending.count > 0) {
+                submit(pending, true);
+            }
+            if (writerThread != null) {
+                marker = new Batch();
+                marker.drained = new CountDownLatch(1);
+                enqueue(marker);
+            } else {
+                flushChannel();
+            }
+        }
+        if (marker != null) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    marker.drained.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void flushChannel() {
+        if (writeError == null && channel instanceof Flushable) {
+            try {
+                ((Flushable) channel).flush();
+            } catch (IOException ex) {
+                writeError = ex;
+                signalError();
+            }
+        }
+    }
+
+    @Override
+    protected boolean sinkStop() {
+        Thread thread;
+        synchronized (this) {
+            if (pending.count > 0) {
+                submit(pending, true);
+            }
+            thread = writerThread;
+            if (thread != null) {
+                enqueue(STOP);
+            }
+            writerThread = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            writeQueue = null;
+            freeBatches = null;
+            flushChannel();
+        }
+        return true;
+    }
     
     @Override
-    protected FlowReturn sinkRender(Buffer buffer) throws IOException {
-        try {
-            channel.write(buffer.getByteBuffer());
-            return FlowReturn.OK;
-        } catch(IOException ex) {
+    protected synchronized FlowReturn sinkRender(Buffer buffer) throws IOException {
+        if (writeError != null) {
+            release(buffer);
             signalError();
             return FlowReturn.ERROR;
-        } finally {
-            //Dispose immediate to avoid GC Delay
-            if (autoFlushBuffer && (buffer != null) && (buffer.getAddress() != null))
-       	        buffer.dispose();
         }
-    }   
+        ByteBuffer data = buffer.getByteBuffer();
+        if (data == null) {
+            release(buffer);
+            return FlowReturn.OK;
+        }
+        if (pending.count == 0) {
+            pending.started = System.nanoTime();
+        }
+        pending.add(buffer, data.duplicate());
+        if (pending.bytes >= batchBytes || pending.count == MAX_BATCH_BUFFERS
+                || (batchDelay > 0 && System.nanoTime() - pending.started >= batchDelay)) {
+            if (!submit(pending, false)) {
+                signalError();
+                return FlowReturn.ERROR;
+            }
+        }
+        return FlowReturn.OK;
+    }
+
+    /**
+     * Writes a batch, or hands it to the writer thread.  Either way
+     * <tt>pending</tt> is replaced by an empty batch.
+     *
+     * @return false if the stream should fail.
+     */
+    private boolean submit(Batch batch, boolean block) {
+        if (writerThread == null) {
+            try {
+                write(batch);
+                return true;
+            } catch (IOException ex) {
+                writeError = ex;
+                return false;
+            } finally {
+                batch.clear(autoFlushBuffer);
+            }
+        }
+        Batch next = freeBatches.poll();
+        if (block || overflowPolicy == OverflowPolicy.BLOCK) {
+            enqueue(batch);
+        } else if (!writeQueue.offer(batch)) {
+            if (overflowPolicy == OverflowPolicy.ERROR) {
+                batch.clear(autoFlushBuffer);
+                pending = next != null ? next : batch;
+                return false;
+            }
+            droppedBytes.addAndGet(batch.bytes);
+            batch.clear(autoFlushBuffer);
+            next = next != null ? next : batch;
+        }
+        pending = next != null ? next : new Batch();
+        return true;
+    }
+
+    private void enqueue(Batch batch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writeQueue.put(batch);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        final BlockingQueue<Batch> queue = writeQueue;
+        final BlockingQueue<Batch> free = freeBatches;
+        while (true) {
+            Batch batch;
+            try {
+                batch = queue.take();
+            } catch (InterruptedException ex) {
+                continue;
+            }
+            if (batch == STOP) {
+                return;
+            }
+            if (batch.drained != null) {
+                // Everything queued before it has been written
+                flushChannel();
+                batch.drained.countDown();
+                continue;
+            }
+            try {
+                // After an error, keep draining so the streaming thread never blocks
+                if (writeError == null) {
+                    write(batch);
+                }
+            } catch (IOException ex) {
+                writeError = ex;
+                signalError();
+            } finally {
+                batch.clear(autoFlushBuffer);
+                free.offer(batch);
+            }
+        }
+    }
+
+    private void write(Batch batch) throws IOException {
+        final ByteBuffer[] data = batch.data;
+        final int count = batch.count;
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gc = (GatheringByteChannel) channel;
+            int first = 0;
+            while (first < count) {
+                bytesWritten.addAndGet(gc.write(data, first, count - first));
+                while (first < count && !data[first].hasRemaining()) {
+                    ++first;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; ++i) {
+                while (data[i].hasRemaining()) {
+                    bytesWritten.addAndGet(channel.write(data[i]));
+                }
+            }
+        }
+    }
+
+    private void release(Buffer buffer) {
+        //Dispose immediate to avoid GC Delay
+        if (autoFlushBuffer && (buffer != null) && (buffer.getAddress() != null))
+            buffer.dispose();
+    }
+
+    /**
+     * Buffers collected for one write, with their data.
+     */
+    private static final class Batch {
+        final Buffer[] buffers = new Buffer[MAX_BATCH_BUFFERS];
+        final ByteBuffer[] data = new ByteBuffer[MAX_BATCH_BUFFERS];
+        int count;
+        long bytes;
+        long started;
+        /** Set on a marker queued by drain(), which holds no data */
+        CountDownLatch drained;
+
+        void add(Buffer buffer, ByteBuffer bb) {
+            buffers[count] = buffer;
+            data[count] = bb;
+            ++count;
+            bytes += bb.remaining();
+        }
+
+        void clear(boolean dispose) {
+            for (int i = 0; i < count; ++i) {
+                if (dispose && buffers[i].getAddress() != null) {
+                    buffers[i].dispose();
+                }
+                buffers[i] = null;
+                data[i] = null;
+            }
+            count = 0;
+            bytes = 0;
+        }
+    }
 }
@@ -28,6 +28,12 @@ import org.gstreamer.elements.AppSrc;
 import org.gstreamer.lowlevel.annotations.CallerOwnsReturn;
 import org.gstreamer.lowlevel.annotations.Invalidate;
 
+import java.util.Arrays;
+import java.util.List;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
 import com.sun.jna.ptr.LongByReference;
 
 /**
@@ -70,4 +76,35 @@ public interface AppAPI extends com.sun.jna.Library {
 
     @CallerOwnsReturn Buffer gst_app_sink_pull_preroll(AppSink appsink);
     @CallerOwnsReturn Buffer gst_app_sink_pull_buffer(AppSink appsink);
+
+    void gst_app_sink_set_callbacks(AppSink appsink, AppSinkCallbacks callbacks,
+            Pointer user_data, GlibAPI.GDestroyNotify notify);
+
+    public static interface AppSinkEosCallback extends Callback {
+        public void callback(Pointer appsink, Pointer user_data);
+    }
+
+    public static interface AppSinkNewCallback extends Callback {
+        /** @return a GstFlowReturn */
+        public int callback(Pointer appsink, Pointer user_data);
+    }
+
+    /**
+     * GstAppSinkCallbacks.  The sink copies the structure, but the callbacks
+     * must be kept reachable for as long as they are installed.
+     */
+    public static final class AppSinkCallbacks extends Structure {
+        public AppSinkEosCallback eos;
+        public AppSinkNewCallback new_preroll;
+        public AppSinkNewCallback new_buffer;
+        public AppSinkNewCallback new_buffer_list;
+        public Pointer[] _gst_reserved = new Pointer[3];
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList(new String[]{
+                "eos", "new_preroll", "new_buffer", "new_buffer_list", "_gst_reserved"
+            });
+        }
+    }
 }
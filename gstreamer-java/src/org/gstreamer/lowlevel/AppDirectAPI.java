@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Directly mapped appsrc/appsink functions used on the per-buffer path.
+ *
+ * @see GstDirectAPI
+ * @see AppAPI
+ */
+public final class AppDirectAPI {
+    static {
+        GstNative.register("gstapp", AppDirectAPI.class);
+    }
+
+    private AppDirectAPI() {}
+
+    // AppSrc functions
+    public static native int gst_app_src_push_buffer(Pointer appsrc, Pointer buffer);
+    public static native int gst_app_src_end_of_stream(Pointer appsrc);
+
+    // AppSink functions
+    public static native int gst_app_sink_is_eos(Pointer appsink);
+    public static native Pointer gst_app_sink_pull_preroll(Pointer appsink);
+    public static native Pointer gst_app_sink_pull_buffer(Pointer appsink);
+}
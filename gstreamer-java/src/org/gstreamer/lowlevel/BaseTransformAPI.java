@@ -77,6 +77,16 @@ public interface BaseTransformAPI extends Library {
 
         public volatile Pointer[] _gst_reserved = new Pointer[GST_PADDING_LARGE - 1];
 
+        /**
+         * Gets the offset of a field in the native struct.
+         *
+         * @param name the field name.
+         * @return the offset in bytes.
+         */
+        public static int offsetOf(String name) {
+            return new GstBaseTransformStruct().fieldOffset(name);
+        }
+
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList(new String[]{
@@ -19,7 +19,6 @@
 package org.gstreamer.lowlevel;
 
 import java.lang.reflect.Field;
-import java.util.EnumSet;
 
 import org.gstreamer.lowlevel.annotations.DefaultEnumValue;
 
@@ -37,42 +36,118 @@ public class EnumMapper {
         return value instanceof IntegerEnum ? ((IntegerEnum) value).intValue() : value.ordinal();
     }
     public <E extends Enum<E>> E valueOf(int value, Class<E> enumClass) {
-        //
-        // Just loop around all the enum values and find one that matches.
-        // Storing the values in a Map might be faster, but by the time you deal
-        // with locking overhead, its hardly worth it for small enums.
-        // 
-        if (IntegerEnum.class.isAssignableFrom(enumClass)) {
-            for (E e : EnumSet.allOf(enumClass)) {
-                if (((IntegerEnum) e).intValue() == value) {
-                    return e;
-                }
+        Table table = tables.get(enumClass);
+        Object e = table.get(value);
+        if (e == null) {
+            //
+            // No value found - use the default value for unknown values.
+            // This is useful for enums that aren't fixed in stone and/or where you
+            // don't want to throw an Exception for an unknown value.
+            //
+            e = table.defaultValue;
+        }
+        if (e == null) {
+            //
+            // No default, so just give up and throw an exception
+            //
+            throw new IllegalArgumentException("No known Enum mapping for "
+                    + enumClass.getName() + " value=" + value);
+        }
+        return enumClass.cast(e);
+    }
+    
+    private static final ClassValue<Table> tables = new ClassValue<Table>() {
+        @Override
+        protected Table computeValue(Class<?> enumClass) {
+            return new Table(enumClass);
+        }
+    };
+    
+    /**
+     * The native value to constant mapping of one enum class, built once.  Enums
+     * whose values fall in a small range are looked up in an array, others in
+     * an open-addressed hash table, so neither boxes the value.  Where several constants have the same value, the first one
+     * declared wins.
+     */
+    private static final class Table {
+        private static final int MIN_DENSE_RANGE = 64;
+        private final Object[] dense;
+        private final int min;
+        private final int[] sparseKeys;
+        private final Object[] sparseValues;
+        final Object defaultValue;
+        
+        Table(Class<?> enumClass) {
+            Object[] constants = enumClass.getEnumConstants();
+            boolean integerEnum = IntegerEnum.class.isAssignableFrom(enumClass);
+            int[] values = new int[constants.length];
+            int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+            for (int i = 0; i < constants.length; ++i) {
+                values[i] = integerEnum
+                        ? ((IntegerEnum) constants[i]).intValue()
+                        : ((Enum<?>) constants[i]).ordinal();
+                lo = Math.min(lo, values[i]);
+                hi = Math.max(hi, values[i]);
             }
-        } else {
-            for (E e : EnumSet.allOf(enumClass)) {
-                if (e.ordinal() == value) {
-                    return e;
+            long range = (long) hi - lo + 1;
+            if (constants.length > 0 && range <= Math.max(MIN_DENSE_RANGE, 4L * constants.length)) {
+                dense = new Object[(int) range];
+                min = lo;
+                sparseKeys = null;
+                sparseValues = null;
+                for (int i = 0; i < constants.length; ++i) {
+                    if (dense[values[i] - lo] == null) {
+                        dense[values[i] - lo] = constants[i];
+                    }
+                }
+            } else {
+                dense = null;
+                min = 0;
+                int size = Integer.highestOneBit(constants.length * 2 + 1) << 1;
+                sparseKeys = new int[size];
+                sparseValues = new Object[size];
+                for (int i = 0; i < constants.length; ++i) {
+                    int slot = slot(values[i]);
+                    if (sparseValues[slot] == null) {
+                        sparseKeys[slot] = values[i];
+                        sparseValues[slot] = constants[i];
+                    }
                 }
             }
+            defaultValue = findDefault(enumClass, constants);
+        }
+        
+        Object get(int value) {
+            if (dense != null) {
+                long index = (long) value - min;
+                return index >= 0 && index < dense.length ? dense[(int) index] : null;
+            }
+            return sparseValues[slot(value)];
+        }
+        
+        /**
+         * Finds the slot holding a value, or the empty slot it would go in.
+         */
+        private int slot(int value) {
+            int mask = sparseKeys.length - 1;
+            int slot = (value * 0x9E3779B9) >>> 16 & mask;
+            while (sparseValues[slot] != null && sparseKeys[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
         }
-        //
-        // No value found - try to find the default value for unknown values.
-        // This is useful for enums that aren't fixed in stone and/or where you
-        // don't want to throw an Exception for an unknown value.
-        //
-        try {
+        
+        private static Object findDefault(Class<?> enumClass, Object[] constants) {
             for (Field f : enumClass.getDeclaredFields()) {
-                if (f.getAnnotation(DefaultEnumValue.class) != null) {
-                    return Enum.valueOf(enumClass, f.getName());
+                if (f.isEnumConstant() && f.getAnnotation(DefaultEnumValue.class) != null) {
+                    for (Object e : constants) {
+                        if (((Enum<?>) e).name().equals(f.getName())) {
+                            return e;
+                        }
+                    }
                 }
             }
-            throw new IllegalArgumentException();
-        } catch (IllegalArgumentException ex) {      
-            //
-            // No default, so just give up and throw an exception
-            //
-            throw new IllegalArgumentException("No known Enum mapping for "
-                    + enumClass.getName() + " value=" + value);
+            return null;
         }
     }
 }
@@ -50,7 +50,12 @@ public class GMainContext extends RefCountedObject {
     }
 
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-        GLIB_API.g_main_context_unref(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            GLIB_API.g_main_context_unref(ptr);
+        }
+    };
 }
@@ -21,6 +21,7 @@ package org.gstreamer.lowlevel;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -86,6 +87,38 @@ public final class GNative {
         throw new UnsatisfiedLinkError("Could not load library: " + name);
     }
 
+    /**
+     * Binds the <tt>native</tt> methods declared in <tt>cls</tt> directly to
+     * the named library using JNA direct mapping.
+     * <p>
+     * Directly mapped methods do not go through a {@link Library} proxy, so
+     * they must only use primitive and {@link com.sun.jna.Pointer} arguments.
+     * 
+     * @param name the library to bind to.
+     * @param cls the class containing the native methods.
+     */
+    public static synchronized void register(String name, Class<?> cls) {
+        if (!Platform.isWindows()) {
+            Native.register(cls, getDirectLibrary(name));
+            return;
+        }
+        for (String format : windowsNameFormats)
+            try {
+                Native.register(cls, getDirectLibrary(String.format(format, name)));
+                return;
+            } catch (UnsatisfiedLinkError ex) {
+                continue;
+            }
+        throw new UnsatisfiedLinkError("Could not load library: " + name);
+    }
+
+    private static NativeLibrary getDirectLibrary(String name) {
+        if (globalLibName == null)
+            return NativeLibrary.getInstance(name);
+        String globalName = globalLibName.get();
+        return globalName != null ? NativeLibrary.getInstance(globalName) : NativeLibrary.getProcess();
+    }
+
     private static interface Converter {
         Class<?> nativeType();
         Object toNative(Object value);
@@ -156,13 +189,12 @@ public final class GNative {
             this.proxy = Proxy.getInvocationHandler(library);
         }
         
-        @SuppressWarnings("null")
-		public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Object invoke(Object self, Method method, Object[] args) throws Throwable {
             int lastArg = args != null ? args.length : 0;
             if (method.isVarArgs())
                 --lastArg;
-            Runnable[] postInvoke = null;
-            int postCount = 0;
+            Scratch scratch = null;
             for (int i = 0; i < lastArg; ++i) {
                 if (args[i] == null)
                     continue;
@@ -171,29 +203,115 @@ public final class GNative {
                     continue;
                 final Converter converter = getConverter(cls.getComponentType());
                 if (converter != null) {
+                    if (scratch == null) {
+                        scratch = Scratch.acquire(lastArg);
+                    }
                     final Object[] src = (Object[]) args[i];
-                    final Object dst = java.lang.reflect.Array.newInstance(converter.nativeType(), src.length);
-                    final ArrayIO io = getArrayIO(converter.nativeType());
-                    for (int a = 0; a < src.length; ++a)
-                        io.set(dst, a, converter.toNative(src[a]));
-                    if (postInvoke == null)
-                        postInvoke = new Runnable[lastArg];
-                    postInvoke[postCount++] = new Runnable() {
-                        public void run() {
-                            for (int a = 0; a < src.length; ++a)
-                                src[a] = converter.fromNative(io.get(dst, a), cls.getComponentType());
-                        }
-                    };
-                    args[i] = dst;
+                    if (converter == enumConverter) {
+                        // Enums are by far the most common, so skip the boxing
+                        int[] dst = scratch.ints(i, src.length);
+                        for (int a = 0; a < src.length; ++a)
+                            dst[a] = src[a] != null ? EnumMapper.getInstance().intValue((Enum<?>) src[a]) : 0;
+                        args[i] = dst;
+                    } else {
+                        Object dst = converter.nativeType() == long.class
+                                ? scratch.longs(i, src.length) : scratch.ints(i, src.length);
+                        ArrayIO io = getArrayIO(converter.nativeType());
+                        for (int a = 0; a < src.length; ++a)
+                            io.set(dst, a, converter.toNative(src[a]));
+                        args[i] = dst;
+                    }
+                    scratch.sources[i] = src;
+                    scratch.converters[i] = converter;
+                }
+            }
+            if (scratch == null) {
+                return proxy.invoke(self, method, args);
+            }
+            try {
+                Object retval = proxy.invoke(self, method, args);
+                //
+                // Reload any native arrays into java arrays
+                //
+                for (int i = 0; i < lastArg; ++i) {
+                    Object[] src = scratch.sources[i];
+                    if (src == null)
+                        continue;
+                    Converter converter = scratch.converters[i];
+                    Class type = src.getClass().getComponentType();
+                    if (converter == enumConverter) {
+                        int[] dst = scratch.ints[i];
+                        for (int a = 0; a < src.length; ++a)
+                            src[a] = EnumMapper.getInstance().valueOf(dst[a], type);
+                    } else {
+                        ArrayIO io = getArrayIO(converter.nativeType());
+                        Object dst = args[i];
+                        for (int a = 0; a < src.length; ++a)
+                            src[a] = converter.fromNative(io.get(dst, a), type);
+                    }
+                }
+                return retval;
+            } finally {
+                scratch.release(lastArg);
+            }
+        }
+        
+        /**
+         * Per-thread native arrays for the out-parameters of a call, so a
+         * call such as parsing a state change does not allocate.  A nested
+         * call on the same thread (e.g. from a callback) gets its own.
+         */
+        private static final class Scratch {
+            private static final ThreadLocal<Scratch> local = new ThreadLocal<Scratch>() {
+                @Override
+                protected Scratch initialValue() {
+                    return new Scratch();
+                }
+            };
+            int[][] ints = new int[0][];
+            long[][] longs = new long[0][];
+            Object[][] sources = new Object[0][];
+            Converter[] converters = new Converter[0];
+            private boolean busy = false;
+            
+            static Scratch acquire(int argCount) {
+                Scratch scratch = local.get();
+                if (scratch.busy) {
+                    scratch = new Scratch();
+                }
+                scratch.busy = true;
+                if (scratch.sources.length < argCount) {
+                    scratch.ints = Arrays.copyOf(scratch.ints, argCount);
+                    scratch.longs = Arrays.copyOf(scratch.longs, argCount);
+                    scratch.sources = Arrays.copyOf(scratch.sources, argCount);
+                    scratch.converters = Arrays.copyOf(scratch.converters, argCount);
+                }
+                return scratch;
+            }
+            
+            // The native side only uses the first length elements, so a
+            // longer array left from an earlier call will do
+            int[] ints(int arg, int length) {
+                if (ints[arg] == null || ints[arg].length < length) {
+                    ints[arg] = new int[length];
+                }
+                return ints[arg];
+            }
+            
+            long[] longs(int arg, int length) {
+                if (longs[arg] == null || longs[arg].length < length) {
+                    longs[arg] = new long[length];
+                }
+                return longs[arg];
+            }
+            
+            void release(int argCount) {
+                for (int i = 0; i < argCount; ++i) {
+                    sources[i] = null;
+                    converters[i] = null;
                 }
+                busy = false;
             }
-            Object retval = proxy.invoke(self, method, args);
-            //
-            // Reload any native arrays into java arrays
-            //
-            for (int i = 0; i < postCount; ++i)
-                postInvoke[i].run();
-            return retval;
         }
         
         @SuppressWarnings("unused")
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * Directly mapped GObject property and GValue functions, used by
+ * {@link GPropertyCache} to get and set properties without a proxy call.
+ *
+ * @see GstDirectAPI
+ */
+public final class GObjectDirectAPI {
+    static {
+        GNative.register("gobject-2.0", GObjectDirectAPI.class);
+    }
+
+    private GObjectDirectAPI() {}
+
+    public static native void g_object_set_property(Pointer object, Pointer property_name, Pointer value);
+    public static native void g_object_get_property(Pointer object, Pointer property_name, Pointer value);
+    public static native int g_param_value_validate(Pointer pspec, Pointer value);
+
+    public static native Pointer g_value_init(Pointer value, GType g_type);
+    public static native void g_value_set_char(Pointer value, byte v_char);
+    public static native byte g_value_get_char(Pointer value);
+    public static native void g_value_set_uchar(Pointer value, byte v_uchar);
+    public static native byte g_value_get_uchar(Pointer value);
+    public static native void g_value_set_boolean(Pointer value, int v_boolean);
+    public static native int g_value_get_boolean(Pointer value);
+    public static native void g_value_set_int(Pointer value, int v_int);
+    public static native int g_value_get_int(Pointer value);
+    public static native void g_value_set_uint(Pointer value, int v_uint);
+    public static native int g_value_get_uint(Pointer value);
+    public static native void g_value_set_long(Pointer value, NativeLong v_long);
+    public static native NativeLong g_value_get_long(Pointer value);
+    public static native void g_value_set_ulong(Pointer value, NativeLong v_ulong);
+    public static native NativeLong g_value_get_ulong(Pointer value);
+    public static native void g_value_set_int64(Pointer value, long v_int64);
+    public static native long g_value_get_int64(Pointer value);
+    public static native void g_value_set_uint64(Pointer value, long v_uint64);
+    public static native long g_value_get_uint64(Pointer value);
+    public static native void g_value_set_float(Pointer value, float v_float);
+    public static native float g_value_get_float(Pointer value);
+    public static native void g_value_set_double(Pointer value, double v_double);
+    public static native double g_value_get_double(Pointer value);
+}
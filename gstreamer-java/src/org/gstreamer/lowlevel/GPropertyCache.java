@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import static org.gstreamer.lowlevel.GObjectAPI.GOBJECT_API;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.gstreamer.lowlevel.GObjectAPI.GParamSpec;
+import org.gstreamer.lowlevel.GValueAPI.GValue;
+
+import com.sun.jna.Memory;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * The properties of a GObject class, each resolved once to a {@link Property}
+ * accessor.
+ * <p>
+ * Looking a property up by name goes to native code, reads a GParamSpec and
+ * then works out how to convert the value by comparing GTypes.  Since the
+ * property set of a class never changes, that is done the first time a
+ * property is used, and the result is kept for every instance of the class.
+ */
+public final class GPropertyCache {
+    private static final ConcurrentMap<Pointer, GPropertyCache> classes
+            = new ConcurrentHashMap<Pointer, GPropertyCache>();
+    private static final int GVALUE_SIZE = new GValue().size();
+
+    private final Pointer gclass;
+    private final ConcurrentMap<String, Property> properties = new ConcurrentHashMap<String, Property>();
+
+    private GPropertyCache(Pointer gclass) {
+        this.gclass = gclass;
+    }
+
+    /**
+     * Gets the property cache for a GObject class.
+     *
+     * @param gclass the GObjectClass pointer of an instance.
+     * @return the property cache.
+     */
+    public static GPropertyCache forClass(Pointer gclass) {
+        GPropertyCache cache = classes.get(gclass);
+        if (cache == null) {
+            GPropertyCache tmp = classes.putIfAbsent(gclass, cache = new GPropertyCache(gclass));
+            if (tmp != null) {
+                cache = tmp;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Finds a property of this class.
+     *
+     * @param name the name of the property.
+     * @return the property, or null if the class has no such property.
+     */
+    public Property find(String name) {
+        Property prop = properties.get(name);
+        if (prop == null) {
+            Pointer ptr = GOBJECT_API.g_object_class_find_property(gclass, name);
+            if (ptr == null) {
+                return null;
+            }
+            Property tmp = properties.putIfAbsent(name, prop = new Property(name, new GParamSpec(ptr)));
+            if (tmp != null) {
+                prop = tmp;
+            }
+        }
+        return prop;
+    }
+
+    private static enum Kind {
+        CHAR, UCHAR, BOOLEAN, INT, UINT, LONG, ULONG, INT64, UINT64, FLOAT, DOUBLE, OTHER;
+
+        static Kind of(GType type) {
+            if (type.equals(GType.INT)) {
+                return INT;
+            } else if (type.equals(GType.UINT)) {
+                return UINT;
+            } else if (type.equals(GType.CHAR)) {
+                return CHAR;
+            } else if (type.equals(GType.UCHAR)) {
+                return UCHAR;
+            } else if (type.equals(GType.LONG)) {
+                return LONG;
+            } else if (type.equals(GType.ULONG)) {
+                return ULONG;
+            } else if (type.equals(GType.INT64)) {
+                return INT64;
+            } else if (type.equals(GType.UINT64)) {
+                return UINT64;
+            } else if (type.equals(GType.BOOLEAN)) {
+                return BOOLEAN;
+            } else if (type.equals(GType.FLOAT)) {
+                return FLOAT;
+            } else if (type.equals(GType.DOUBLE)) {
+                return DOUBLE;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * A resolved GObject property.
+     * <p>
+     * Properties of a fundamental numeric or boolean type can be read and
+     * written with the primitive accessors, which use a GValue kept for the
+     * property instead of allocating one per call, and never box the value.
+     */
+    public static final class Property {
+        private final String name;
+        private final GParamSpec spec;
+        private final GType type;
+        private final Kind kind;
+        private Memory nativeName;
+        private Memory value;
+
+        Property(String name, GParamSpec spec) {
+            this.name = name;
+            this.spec = spec;
+            this.type = spec.value_type;
+            this.kind = Kind.of(type);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public GParamSpec getSpec() {
+            return spec;
+        }
+
+        public GType getType() {
+            return type;
+        }
+
+        /**
+         * Checks if this property holds a number or boolean, and so can be
+         * used with the primitive accessors.
+         *
+         * @return true if the primitive accessors can be used.
+         */
+        public boolean isPrimitive() {
+            return kind != Kind.OTHER;
+        }
+
+        /**
+         * Checks if this property holds a floating point number.
+         *
+         * @return true if this is a float or double property.
+         */
+        public boolean isFloatingPoint() {
+            return kind == Kind.FLOAT || kind == Kind.DOUBLE;
+        }
+
+        /**
+         * Checks if this property holds a boolean.
+         *
+         * @return true if this is a boolean property.
+         */
+        public boolean isBoolean() {
+            return kind == Kind.BOOLEAN;
+        }
+
+        private Memory value() {
+            if (value == null) {
+                checkPrimitive();
+                byte[] bytes = name.getBytes();
+                nativeName = new Memory(bytes.length + 1);
+                nativeName.write(0, bytes, 0, bytes.length);
+                nativeName.setByte(bytes.length, (byte) 0);
+                value = new Memory(GVALUE_SIZE);
+                value.clear();
+                GObjectDirectAPI.g_value_init(value, type);
+            }
+            return value;
+        }
+
+        private void checkPrimitive() {
+            if (kind == Kind.OTHER) {
+                throw new IllegalArgumentException("Property " + name + " is of non-primitive type " + type);
+            }
+        }
+
+        private void store(Pointer object, Memory value) {
+            GObjectDirectAPI.g_param_value_validate(spec.getPointer(), value);
+            GObjectDirectAPI.g_object_set_property(object, nativeName, value);
+        }
+
+        private Memory load(Pointer object) {
+            Memory value = value();
+            GObjectDirectAPI.g_object_get_property(object, nativeName, value);
+            return value;
+        }
+
+        public synchronized void setLong(Pointer object, long v) {
+            Memory value = value();
+            switch (kind) {
+            case CHAR:
+                GObjectDirectAPI.g_value_set_char(value, (byte) v);
+                break;
+            case UCHAR:
+                GObjectDirectAPI.g_value_set_uchar(value, (byte) v);
+                break;
+            case BOOLEAN:
+                GObjectDirectAPI.g_value_set_boolean(value, v != 0 ? 1 : 0);
+                break;
+            case INT:
+                GObjectDirectAPI.g_value_set_int(value, (int) v);
+                break;
+            case UINT:
+                GObjectDirectAPI.g_value_set_uint(value, (int) v);
+                break;
+            case LONG:
+                GObjectDirectAPI.g_value_set_long(value, new NativeLong(v));
+                break;
+            case ULONG:
+                GObjectDirectAPI.g_value_set_ulong(value, new NativeLong(v));
+                break;
+            case INT64:
+                GObjectDirectAPI.g_value_set_int64(value, v);
+                break;
+            case UINT64:
+                GObjectDirectAPI.g_value_set_uint64(value, v);
+                break;
+            case FLOAT:
+                GObjectDirectAPI.g_value_set_float(value, v);
+                break;
+            case DOUBLE:
+                GObjectDirectAPI.g_value_set_double(value, v);
+                break;
+            default:
+                checkPrimitive();
+            }
+            store(object, value);
+        }
+
+        public synchronized void setDouble(Pointer object, double v) {
+            switch (kind) {
+            case FLOAT:
+                GObjectDirectAPI.g_value_set_float(value(), (float) v);
+                break;
+            case DOUBLE:
+                GObjectDirectAPI.g_value_set_double(value(), v);
+                break;
+            default:
+                setLong(object, (long) v);
+                return;
+            }
+            store(object, value);
+        }
+
+        public synchronized void setBoolean(Pointer object, boolean v) {
+            setLong(object, v ? 1 : 0);
+        }
+
+        public synchronized long getLong(Pointer object) {
+            Memory value = load(object);
+            switch (kind) {
+            case CHAR:
+                return GObjectDirectAPI.g_value_get_char(value);
+            case UCHAR:
+                return GObjectDirectAPI.g_value_get_uchar(value);
+            case BOOLEAN:
+                return GObjectDirectAPI.g_value_get_boolean(value);
+            case INT:
+                return GObjectDirectAPI.g_value_get_int(value);
+            case UINT:
+                return GObjectDirectAPI.g_value_get_uint(value);
+            case LONG:
+                return GObjectDirectAPI.g_value_get_long(value).longValue();
+            case ULONG:
+                return GObjectDirectAPI.g_value_get_ulong(value).longValue();
+            case INT64:
+                return GObjectDirectAPI.g_value_get_int64(value);
+            case UINT64:
+                return GObjectDirectAPI.g_value_get_uint64(value);
+            case FLOAT:
+                return (long) GObjectDirectAPI.g_value_get_float(value);
+            case DOUBLE:
+                return (long) GObjectDirectAPI.g_value_get_double(value);
+            default:
+                throw new IllegalStateException();
+            }
+        }
+
+        public synchronized double getDouble(Pointer object) {
+            switch (kind) {
+            case FLOAT:
+                return GObjectDirectAPI.g_value_get_float(load(object));
+            case DOUBLE:
+                return GObjectDirectAPI.g_value_get_double(load(object));
+            default:
+                return getLong(object);
+            }
+        }
+
+        public synchronized boolean getBoolean(Pointer object) {
+            return getLong(object) != 0;
+        }
+
+        /**
+         * Gets the value of a primitive property, boxed the same way as
+         * {@link org.gstreamer.GObject#get}.
+         *
+         * @param object the GObject instance.
+         * @return the boxed value.
+         */
+        public synchronized Object get(Pointer object) {
+            switch (kind) {
+            case CHAR:
+            case UCHAR:
+            case INT:
+            case UINT:
+                return Integer.valueOf((int) getLong(object));
+            case BOOLEAN:
+                return Boolean.valueOf(getBoolean(object));
+            case FLOAT:
+                return Float.valueOf((float) getDouble(object));
+            case DOUBLE:
+                return Double.valueOf(getDouble(object));
+            default:
+                return Long.valueOf(getLong(object));
+            }
+        }
+    }
+}
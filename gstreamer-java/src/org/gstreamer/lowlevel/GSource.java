@@ -20,9 +20,13 @@ package org.gstreamer.lowlevel;
 
 import static org.gstreamer.lowlevel.GlibAPI.GLIB_API;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 
+import com.sun.jna.Callback;
 import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
 /**
  *
  */
@@ -60,9 +64,45 @@ public class GSource extends RefCountedObject {
         GLIB_API.g_source_unref(handle());
     }
 
+    public static interface PrepareFunc extends Callback {
+        boolean callback(Pointer source, Pointer timeout);
+    }
+    public static interface CheckFunc extends Callback {
+        boolean callback(Pointer source);
+    }
+    public static interface DispatchFunc extends Callback {
+        boolean callback(Pointer source, Pointer callback, Pointer user_data);
+    }
+
+    /**
+     * The functions of a custom GSource (GSourceFuncs).  GLib keeps a pointer
+     * to the struct, so it must stay reachable for as long as any source uses it.
+     */
+    public static final class Funcs extends Structure {
+        public PrepareFunc prepare;
+        public CheckFunc check;
+        public DispatchFunc dispatch;
+        public Pointer finalize;
+        public Pointer closure_callback;
+        public Pointer closure_marshal;
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList(new String[]{
+                "prepare", "check", "dispatch", "finalize",
+                "closure_callback", "closure_marshal"
+            });
+        }
+    }
+
     @Override
-    protected void disposeNativeHandle(Pointer ptr) {
-        GLIB_API.g_source_destroy(ptr);
-        GLIB_API.g_source_unref(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            GLIB_API.g_source_destroy(ptr);
+            GLIB_API.g_source_unref(ptr);
+        }
+    };
 }
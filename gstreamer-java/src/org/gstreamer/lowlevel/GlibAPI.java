@@ -61,8 +61,10 @@ public interface GlibAPI extends Library {
     void g_main_context_release(GMainContext ctx);
     boolean g_main_context_is_owner(GMainContext ctx);
     boolean g_main_context_wait(GMainContext ctx);
+    void g_main_context_wakeup(GMainContext ctx);
     
     @CallerOwnsReturn GSource g_idle_source_new();
+    @CallerOwnsReturn GSource g_source_new(GSource.Funcs funcs, int struct_size);
     @CallerOwnsReturn GSource g_timeout_source_new(int interval);
     @CallerOwnsReturn GSource g_timeout_source_new_seconds(int interval);
     int g_source_attach(GSource source, GMainContext context);
@@ -104,6 +106,7 @@ public interface GlibAPI extends Library {
     void g_error_free(GstAPI.GErrorStruct error);
     
     void g_source_remove(int id);
+    Pointer g_malloc0(NativeLong n_bytes);
     void g_free(Pointer ptr);
     
     Pointer g_date_new();
@@ -145,6 +148,33 @@ public interface GlibAPI extends Library {
             });
         }
     }
+    /**
+     * The public part of a GSource, only used for its size.
+     */
+    public static final class GSourceStruct extends com.sun.jna.Structure {
+        public Pointer callback_data;
+        public Pointer callback_funcs;
+        public Pointer source_funcs;
+        public int ref_count;
+        public Pointer context;
+        public int priority;
+        public int flags;
+        public int source_id;
+        public Pointer poll_fds;
+        public Pointer prev;
+        public Pointer next;
+        public Pointer name;
+        public Pointer priv;
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList(new String[]{
+                "callback_data", "callback_funcs", "source_funcs", "ref_count",
+                "context", "priority", "flags", "source_id", "poll_fds",
+                "prev", "next", "name", "priv"
+            });
+        }
+    }
     public static final class GSList extends com.sun.jna.Structure {
         public volatile Pointer data;
         public volatile Pointer _next;
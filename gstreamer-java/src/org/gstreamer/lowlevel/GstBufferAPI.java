@@ -68,18 +68,61 @@ public interface GstBufferAPI extends com.sun.jna.Library {
         public long offset;
         public long offset_end;
         public Pointer malloc_data;
+        public Pointer free_func; /* since 0.10.22 */
+        public Pointer parent;
+        public BufferStruct() {
+        }
         public BufferStruct(Pointer ptr) {
             useMemory(ptr);
             read();
         }
 
+        /**
+         * Gets the offset of a field from the start of a GstBuffer, for code
+         * that reads the field directly instead of through a BufferStruct.
+         *
+         * @param name the field name.
+         * @return the offset in bytes.
+         */
+        public static int offsetOf(String name) {
+            return new BufferStruct().fieldOffset(name);
+        }
+
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList(new String[]{
                 "mini_object", "data", "size",
                 "timestamp", "duration", "caps",
-                "offset", "offset_end", "malloc_data"
+                "offset", "offset_end", "malloc_data",
+                "free_func", "parent"
             });
         }
     }
+
+    /**
+     * Holds a free function, so that its native address can be stored in the
+     * <tt>free_func</tt> field of a GstBuffer.
+     */
+    public static final class FreeFuncStruct extends com.sun.jna.Structure {
+        public GlibAPI.GDestroyNotify free_func;
+
+        public FreeFuncStruct(GlibAPI.GDestroyNotify func) {
+            free_func = func;
+            write();
+        }
+
+        /**
+         * Gets the native address of the free function.
+         *
+         * @return the function pointer.
+         */
+        public Pointer getFunctionPointer() {
+            return getPointer().getPointer(0);
+        }
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList(new String[]{ "free_func" });
+        }
+    }
 }
@@ -46,6 +46,8 @@ public interface GstBusAPI extends com.sun.jna.Library {
     @CallerOwnsReturn Message gst_bus_pop_filtered(Bus bus, MessageType types);
     @CallerOwnsReturn Message gst_bus_timed_pop(Bus bus, ClockTime timeout);
     @CallerOwnsReturn Message gst_bus_timed_pop_filtered(Bus bus, ClockTime timeout, MessageType types);
+    @CallerOwnsReturn Message gst_bus_pop_filtered(Bus bus, int types);
+    @CallerOwnsReturn Message gst_bus_timed_pop_filtered(Bus bus, long timeout, int types);
     /* polling the bus */
     @CallerOwnsReturn Message gst_bus_poll(Bus bus, MessageType events, /* GstClockTimeDiff */ long timeout);
     @CallerOwnsReturn Message gst_bus_poll(Bus bus, MessageType events, ClockTime timeout);
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Directly mapped GstMiniObject, GstBuffer, GstPad, GstMessage and GstStructure
+ * functions.
+ * <p>
+ * These are the calls made for every buffer or message passing through the binding, so
+ * they are bound with {@link com.sun.jna.Native#register} instead of going
+ * through a {@link GstNative#load} proxy.  Only primitive and {@link Pointer}
+ * types may be used, so reference counting and wrapping of the results is
+ * left to the caller (see {@link #ptr}, {@link #invalidate} and {@link #incRef}).
+ * <p>
+ * Everything else should keep using the proxy based APIs, e.g. {@link GstBufferAPI}.
+ */
+public final class GstDirectAPI {
+    static {
+        GstNative.register(GstDirectAPI.class);
+    }
+
+    private GstDirectAPI() {}
+
+    // GstMiniObject functions
+    public static native Pointer gst_mini_object_ref(Pointer mini_object);
+    public static native void gst_mini_object_unref(Pointer mini_object);
+    public static native int gst_mini_object_is_writable(Pointer mini_object);
+    public static native Pointer gst_mini_object_make_writable(Pointer mini_object);
+
+    // GstBuffer functions
+    public static native Pointer gst_buffer_new();
+    public static native Pointer gst_buffer_new_and_alloc(int size);
+    public static native Pointer gst_buffer_create_sub(Pointer parent, int offset, int size);
+    public static native Pointer gst_buffer_get_caps(Pointer buffer);
+    public static native void gst_buffer_set_caps(Pointer buffer, Pointer caps);
+    public static native void gst_buffer_copy_metadata(Pointer dest, Pointer src, int flags);
+
+    // GstPad functions
+    public static native int gst_pad_push(Pointer pad, Pointer buffer);
+    public static native int gst_pad_chain(Pointer pad, Pointer buffer);
+
+    // GstMessage functions
+    public static native void gst_message_parse_state_changed(Pointer msg, Pointer oldstate, Pointer newstate, Pointer pending);
+    public static native void gst_message_parse_buffering(Pointer msg, Pointer percent);
+    public static native void gst_message_parse_duration(Pointer msg, Pointer format, Pointer duration);
+    public static native void gst_message_parse_segment_start(Pointer msg, Pointer format, Pointer position);
+    public static native void gst_message_parse_segment_done(Pointer msg, Pointer format, Pointer position);
+    public static native void gst_message_parse_qos(Pointer msg, Pointer live, Pointer running_time,
+            Pointer stream_time, Pointer timestamp, Pointer duration); /* since 0.10.29 */
+    public static native void gst_message_parse_qos_values(Pointer msg, Pointer jitter,
+            Pointer proportion, Pointer quality); /* since 0.10.29 */
+
+    // GstStructure functions
+    public static native int gst_structure_has_name(Pointer structure, Pointer name);
+    public static native int gst_structure_get_int(Pointer structure, Pointer fieldname, Pointer value);
+    public static native int gst_structure_get_double(Pointer structure, Pointer fieldname, Pointer value);
+    public static native int gst_structure_get_clock_time(Pointer structure, Pointer fieldname, Pointer value);
+
+    /**
+     * Gets the native pointer of an object, the same way the proxy APIs do
+     * for an un-annotated parameter.
+     *
+     * @param obj the object, may be null.
+     * @return the native pointer, or null if <tt>obj</tt> is null.
+     */
+    public static Pointer ptr(NativeObject obj) {
+        return obj != null ? obj.handle() : null;
+    }
+
+    /**
+     * Gets the native pointer of an object whose reference is being handed
+     * over to native code, the same as an {@link org.gstreamer.lowlevel.annotations.Invalidate}
+     * parameter.
+     *
+     * @param obj the object that will no longer be usable from java.
+     * @return the native pointer.
+     */
+    public static Pointer invalidate(NativeObject obj) {
+        Pointer ptr = obj.handle();
+        obj.invalidate();
+        return ptr;
+    }
+
+    /**
+     * Gets the native pointer of an object after adding a reference for the
+     * callee to take, the same as an {@link org.gstreamer.lowlevel.annotations.IncRef}
+     * parameter.
+     *
+     * @param obj the object.
+     * @return the native pointer.
+     */
+    public static Pointer incRef(RefCountedObject obj) {
+        obj.ref();
+        return obj.handle();
+    }
+}
@@ -63,6 +63,17 @@ public interface GstMessageAPI extends com.sun.jna.Library {
             useMemory(ptr);
         }
 
+        /**
+         * Gets the offset of a field from the start of a GstMessage, for code
+         * that reads the field directly instead of through a MessageStruct.
+         *
+         * @param name the field name.
+         * @return the offset in bytes.
+         */
+        public static int offsetOf(String name) {
+            return new MessageStruct().fieldOffset(name);
+        }
+
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList(new String[]{
@@ -58,6 +58,17 @@ public interface GstMiniObjectAPI extends com.sun.jna.Library {
             read();
         }
 
+        /**
+         * Gets the offset of a field from the start of a GstMiniObject, for
+         * code that reads the field directly instead of through a MiniObjectStruct.
+         *
+         * @param name the field name.
+         * @return the offset in bytes.
+         */
+        public static int offsetOf(String name) {
+            return new MiniObjectStruct().fieldOffset(name);
+        }
+
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList(new String[]{
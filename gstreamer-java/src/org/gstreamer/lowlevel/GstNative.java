@@ -52,4 +52,20 @@ public final class GstNative {
             }
         throw new UnsatisfiedLinkError("Could not load library: " + libraryName);
     }
+
+    public static void register(Class<?> cls) {
+        register("gstreamer", cls);
+    }
+
+    public static void register(String libraryName, Class<?> cls) {
+        for (String format : nameFormats)
+            try {
+                GNative.register(String.format(format, libraryName), cls);
+                return;
+            } catch (UnsatisfiedLinkError ex) {
+                continue;
+            }
+        throw new UnsatisfiedLinkError("Could not load library: " + libraryName);
+    }
+
 }
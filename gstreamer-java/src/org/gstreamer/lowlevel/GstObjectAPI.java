@@ -64,6 +64,17 @@ public interface GstObjectAPI extends com.sun.jna.Library {
         public volatile int flags;
         public volatile Pointer _gst_reserved;
 
+        /**
+         * Gets the offset of a field from the start of a GstObject, for code
+         * that reads the field directly instead of through a GstObjectStruct.
+         *
+         * @param name the field name.
+         * @return the offset in bytes.
+         */
+        public static int offsetOf(String name) {
+            return new GstObjectStruct().fieldOffset(name);
+        }
+
         @Override
         protected List<String> getFieldOrder() {
             return Arrays.asList(new String[]{
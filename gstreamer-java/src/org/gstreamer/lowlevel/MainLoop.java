@@ -188,9 +188,14 @@ public class MainLoop extends RefCountedObject {
      * Frees the native {@code GMainLoop}
      */
     @Override
-	protected void disposeNativeHandle(Pointer ptr) {
-        GLIB_API.g_main_loop_unref(ptr);
+    protected Disposer createDisposer() {
+        return DISPOSER;
     }
+    private static final Disposer DISPOSER = new Disposer() {
+        public void dispose(Pointer ptr) {
+            GLIB_API.g_main_loop_unref(ptr);
+        }
+    };
     
     //--------------------------------------------------------------------------
     // Instance variables
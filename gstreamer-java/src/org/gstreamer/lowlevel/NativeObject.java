@@ -18,12 +18,16 @@
 
 package org.gstreamer.lowlevel;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,9 +39,16 @@ import org.gstreamer.lowlevel.annotations.HasSubtype;
 import com.sun.jna.Pointer;
 
 /**
- *
+ * Base class for java objects wrapping a native handle.
+ * <p>
+ * The native handle is released when {@link #dispose} (or {@link #close}) is
+ * called, or else shortly after the java object becomes unreachable.  The
+ * latter is done by a reaper thread from a reference queue rather than by
+ * finalization, so native memory is returned as soon as the garbage collector
+ * notices the object is gone, and disposal never delays the collection of
+ * other objects.
  */
-public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
+public abstract class NativeObject extends org.gstreamer.lowlevel.Handle implements AutoCloseable {
     private static final Logger logger = Logger.getLogger(NativeObject.class.getName());
     private static final Level LIFECYCLE = Level.FINE;
     
@@ -57,6 +68,17 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
         }
     }
     protected static final Initializer defaultInit = new Initializer();
+
+    /**
+     * Releases the native handle of an object that was never disposed.
+     * <p>
+     * A disposer is run after its object has been garbage collected, so it
+     * must not hold a reference to the object, either directly or by being
+     * a non-static inner class of it.
+     */
+    protected static interface Disposer {
+        void dispose(Pointer ptr);
+    }
     
     /*
      * The default for new objects is to not need a refcount increase, and that
@@ -78,9 +100,9 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
             throw new IllegalArgumentException("Initializer cannot be null");
         }
         logger.log(LIFECYCLE, "Creating " + getClass().getSimpleName() + " (" + init.ptr + ")");
-        nativeRef = new NativeRef(this);
         this.handle = init.ptr;
         this.ownsHandle.set(init.ownsHandle);
+        nativeRef = new NativeRef(this, createDisposer());
         
         //
         // Only store this object in the map if we can tell when it has been disposed 
@@ -94,39 +116,83 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
         
     }
     
-    abstract protected void disposeNativeHandle(Pointer ptr);
+    /**
+     * Creates the disposer used to release the native handle of this object.
+     * <p>
+     * This is called from the <tt>NativeObject</tt> constructor, before any
+     * subclass fields have been initialized.
+     *
+     * @return the disposer, or null if the native handle cannot be released
+     * once this object has been collected.
+     */
+    protected Disposer createDisposer() {
+        return null;
+    }
+
+    /**
+     * Releases the native handle.  The default implementation runs the
+     * {@link Disposer} returned by {@link #createDisposer}.
+     *
+     * @param ptr the native handle.
+     */
+    protected void disposeNativeHandle(Pointer ptr) {
+        if (nativeRef.disposer != null) {
+            nativeRef.disposer.dispose(ptr);
+        }
+    }
     
     public void dispose() {
         logger.log(LIFECYCLE, "Disposing object " + getClass().getName() + " = " + handle);
 //        System.out.println("Disposing " + handle);
         if (!disposed.getAndSet(true)) {
-            getInstanceMap().remove(handle, nativeRef);
+            nativeRef.release();
             if (ownsHandle.get()) {
                 disposeNativeHandle(handle);
             }
             valid.set(false);
         }
     }
+
+    /**
+     * Disposes this object, so it can be used in a try-with-resources block.
+     *
+     * @see #dispose
+     */
+    public void close() {
+        dispose();
+    }
+
+    /**
+     * Gets the number of native bytes this object holds on to, as accounted
+     * by {@link NativeObjectTracker}.
+     *
+     * @return the native size, or 0 if it is not known.
+     */
+    protected long getNativeSize() {
+        return 0;
+    }
+
+    /**
+     * Reports the {@link #getNativeSize native size} of this object to the
+     * {@link NativeObjectTracker}, if tracking is enabled.  Subclasses that
+     * override <tt>getNativeSize</tt> call this once they are initialized.
+     */
+    protected final void trackNativeSize() {
+        if (NativeObjectTracker.enabled) {
+            NativeObjectTracker.setSize(nativeRef, getNativeSize());
+        }
+    }
     
     @Override
     protected void invalidate() {
         logger.log(LIFECYCLE, "Invalidating object " + this + " = " + handle());
-        getInstanceMap().remove(handle(), nativeRef);
-        disposed.set(true);
+        if (!disposed.getAndSet(true)) {
+            nativeRef.release();
+        }
         ownsHandle.set(false);
         valid.set(false);
     }
     
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            logger.log(LIFECYCLE, "Finalizing " + getClass().getSimpleName() + " (" + handle + ")");
-//            System.out.println("Finalizing " + getClass().getSimpleName() + " (" + handle + ")");
-            dispose();
-        } finally {
-            super.finalize();
-        }
-    }
     @Override
     protected Object nativeValue() {
         return handle();
@@ -165,13 +231,16 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
     }
         
     public static <T extends NativeObject> T objectFor(Pointer ptr, Class<T> cls, int refAdjust, boolean ownsHandle) {
-        logger.entering("NativeObject", "instanceFor", new Object[] { ptr, refAdjust, ownsHandle });
+        if (logger.isLoggable(Level.FINER)) {
+            logger.entering("NativeObject", "instanceFor", new Object[] { ptr, refAdjust, ownsHandle });
+        }
         
         // Ignore null pointers
         if (ptr == null) {
             return null;
         }
-        NativeObject obj = GObject.class.isAssignableFrom(cls) ? NativeObject.instanceFor(ptr) : null;
+        Factory factory = factories.get(cls);
+        NativeObject obj = factory.isGObject ? NativeObject.instanceFor(ptr) : null;
         if (obj != null && cls.isInstance(obj)) {
             if (refAdjust < 0) {
                 ((RefCountedObject) obj).unref(); // Lose the extra ref added by gstreamer
@@ -183,22 +252,19 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
         // If it is a GObject or MiniObject, read the g_class field to find
         // the most exact class match
         //
-        if (GObject.class.isAssignableFrom(cls) || MiniObject.class.isAssignableFrom(cls)) {
-            cls = classFor(ptr, cls);
+        if (factory.isTyped) {
+            factory = factories.get(classFor(ptr, cls));
+        }
+        if (factory.constructor == null) {
+            throw new RuntimeException(new NoSuchMethodException(
+                    factory.name + ".<init>(" + Initializer.class.getName() + ")"));
         }
         try {
-            Constructor<T> constructor = cls.getDeclaredConstructor(Initializer.class);
-            T retVal = constructor.newInstance(initializer(ptr, refAdjust > 0, ownsHandle));
-            //retVal.initNativeHandle(ptr, refAdjust > 0, ownsHandle);
-            return retVal;
-        } catch (SecurityException ex) {
-            throw new RuntimeException(ex);
+            return cls.cast(factory.constructor.newInstance(initializer(ptr, refAdjust > 0, ownsHandle)));
         } catch (IllegalAccessException ex) {
             throw new RuntimeException(ex);
         } catch (InstantiationException ex) {
             throw new RuntimeException(ex);
-        } catch (NoSuchMethodException ex) {
-            throw new RuntimeException(ex);
         } catch (InvocationTargetException ex) {
             throw new RuntimeException(ex);
         }
@@ -208,12 +274,43 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
     @SuppressWarnings("unchecked")
     protected static <T extends NativeObject> Class<T> classFor(Pointer ptr, Class<T> defaultClass) {
         Class<? extends NativeObject> cls = GstTypes.classFor(ptr);
-        if (cls != null && cls.isAnnotationPresent(HasSubtype.class)) {
+        if (cls != null && factories.get(cls).hasSubtype) {
             cls = (Class<T>)SubtypeMapper.subtypeFor(cls, ptr);
         }
         return (cls != null && defaultClass.isAssignableFrom(cls)) ? (Class<T>) cls : defaultClass; 
     }
     
+    /**
+     * What objectFor needs to know about a wrapper class, looked up once per class.
+     */
+    private static final class Factory {
+        final String name;
+        final Constructor<?> constructor;
+        final boolean isGObject, isTyped, hasSubtype;
+        
+        Factory(Class<?> cls) {
+            name = cls.getName();
+            Constructor<?> ctor = null;
+            try {
+                ctor = cls.getDeclaredConstructor(Initializer.class);
+                ctor.setAccessible(true);
+            } catch (NoSuchMethodException ex) {
+                // Only an error if objectFor has to create one of these
+            } catch (SecurityException ex) {
+            }
+            constructor = ctor;
+            isGObject = GObject.class.isAssignableFrom(cls);
+            isTyped = isGObject || MiniObject.class.isAssignableFrom(cls);
+            hasSubtype = cls.isAnnotationPresent(HasSubtype.class);
+        }
+    }
+    private static final ClassValue<Factory> factories = new ClassValue<Factory>() {
+        @Override
+        protected Factory computeValue(Class<?> cls) {
+            return new Factory(cls);
+        }
+    };
+    
     @Override
     public boolean equals(Object o) {
         return (o == this) || (o instanceof NativeObject) && ((NativeObject) o).handle.equals(handle);
@@ -276,9 +373,133 @@ public abstract class NativeObject extends org.gstreamer.lowlevel.Handle {
     private static final ConcurrentMap<Pointer, NativeRef> getInstanceMap() {
         return StaticData.instanceMap;
     }
-    static class NativeRef extends WeakReference<NativeObject> {
-        public NativeRef(NativeObject obj) {
-            super(obj);
+
+    /**
+     * Gets the number of live native objects of each class, i.e. those that
+     * have been created, but not yet disposed or collected.
+     *
+     * @return a snapshot of the live object counts.
+     */
+    public static Map<Class<? extends NativeObject>, Integer> getLiveObjectCounts() {
+        Map<Class<? extends NativeObject>, Integer> counts = new HashMap<Class<? extends NativeObject>, Integer>();
+        for (Map.Entry<Class<? extends NativeObject>, StripedCounter> e : Reaper.live.entrySet()) {
+            int count = (int) e.getValue().sum();
+            if (count > 0) {
+                counts.put(e.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of native objects that were released by the reaper
+     * because they became unreachable without being disposed.
+     *
+     * @return the number of reaped objects.
+     */
+    public static long getReapedCount() {
+        return Reaper.reaped.get();
+    }
+
+    static final class NativeRef extends WeakReference<NativeObject> {
+        private final Pointer handle;
+        private final AtomicBoolean disposed, ownsHandle;
+        private final StripedCounter live;
+        final Disposer disposer;
+        // Set by NativeObjectTracker
+        NativeObjectTracker.Stats stats;
+        Throwable site;
+        volatile long bytes;
+
+        NativeRef(NativeObject obj, Disposer disposer) {
+            super(obj, Reaper.queue);
+            this.handle = obj.handle;
+            this.disposed = obj.disposed;
+            this.ownsHandle = obj.ownsHandle;
+            this.disposer = disposer;
+            this.live = Reaper.liveCounter(obj.getClass());
+            live.increment();
+            if (NativeObjectTracker.enabled) {
+                NativeObjectTracker.track(this, obj.getClass());
+            }
+            Reaper.refs.put(this, Boolean.TRUE);
+        }
+
+        /**
+         * Stops tracking an object that has been disposed or invalidated.
+         */
+        void release() {
+            Reaper.refs.remove(this);
+            getInstanceMap().remove(handle, this);
+            live.decrement();
+            if (stats != null) {
+                NativeObjectTracker.untrack(this, false);
+            }
+        }
+
+        /**
+         * Releases the native handle of an object that has been collected.
+         */
+        void reap() {
+            if (disposed.getAndSet(true)) {
+                return;
+            }
+            Reaper.refs.remove(this);
+            getInstanceMap().remove(handle, this);
+            live.decrement();
+            if (stats != null) {
+                NativeObjectTracker.untrack(this, true);
+            }
+            Reaper.reaped.incrementAndGet();
+            if (!ownsHandle.get()) {
+                return;
+            }
+            if (disposer != null) {
+                logger.log(LIFECYCLE, "Reaping native handle " + handle);
+                disposer.dispose(handle);
+            } else {
+                logger.warning("Leaked native handle " + handle + ": object was not disposed and has no disposer");
+            }
+        }
+    }
+
+    /**
+     * Releases native handles from a reference queue on a dedicated thread.
+     */
+    private static final class Reaper {
+        private static final ReferenceQueue<NativeObject> queue = new ReferenceQueue<NativeObject>();
+        private static final Map<NativeRef, Boolean> refs = new ConcurrentHashMap<NativeRef, Boolean>();
+        private static final ConcurrentMap<Class<? extends NativeObject>, StripedCounter> live
+                = new ConcurrentHashMap<Class<? extends NativeObject>, StripedCounter>();
+        private static final AtomicLong reaped = new AtomicLong();
+        static {
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    while (true) {
+                        try {
+                            ((NativeRef) queue.remove()).reap();
+                        } catch (InterruptedException ex) {
+                            break;
+                        } catch (Throwable ex) {
+                            // Don't break out of the loop for any other reason
+                            logger.log(Level.WARNING, "Failed to release native object", ex);
+                        }
+                    }
+                }
+            }, "Native object reaper");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        static StripedCounter liveCounter(Class<? extends NativeObject> cls) {
+            StripedCounter counter = live.get(cls);
+            if (counter == null) {
+                StripedCounter tmp = live.putIfAbsent(cls, counter = new StripedCounter());
+                if (tmp != null) {
+                    counter = tmp;
+                }
+            }
+            return counter;
         }
     }
     private final AtomicBoolean disposed = new AtomicBoolean(false);
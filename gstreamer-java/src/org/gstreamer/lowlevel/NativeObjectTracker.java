@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+/**
+ * Accounts for the native objects held by java wrappers, and records where
+ * leaked objects were allocated.
+ * <p>
+ * Tracking is off by default.  It is turned on by setting the
+ * <tt>gstreamer.tracker</tt> system property to true, or by calling
+ * {@link #setEnabled}, after which the tracker is registered with the platform
+ * MBean server as <tt>org.gstreamer:type=NativeObjectTracker</tt>.  Only objects
+ * created while tracking is enabled are accounted for.
+ * <p>
+ * Every object is counted, and the native size of buffers is added up per
+ * class.  Recording the allocation site needs a stack trace, which is too
+ * expensive to take for every buffer, so only one in every
+ * {@link #getSampleRate sample rate} allocations records it.  A sampled object
+ * that is collected without being disposed is reported as a leak site.
+ */
+public final class NativeObjectTracker implements NativeObjectTrackerMXBean {
+    private static final Logger logger = Logger.getLogger(NativeObjectTracker.class.getName());
+    private static final String OBJECT_NAME = "org.gstreamer:type=NativeObjectTracker";
+    private static final int MAX_LEAK_SITES = 1024;
+    private static final int MAX_SITE_FRAMES = 8;
+    private static final NativeObjectTracker INSTANCE = new NativeObjectTracker();
+
+    static volatile boolean enabled = false;
+    private static volatile int sampleRate = Integer.getInteger("gstreamer.tracker.sampleRate", 64);
+    private static boolean registered = false;
+
+    private final ConcurrentMap<Class<?>, Stats> stats = new ConcurrentHashMap<Class<?>, Stats>();
+    private final ConcurrentMap<String, AtomicLong> leakSites = new ConcurrentHashMap<String, AtomicLong>();
+
+    static {
+        if (Boolean.getBoolean("gstreamer.tracker")) {
+            INSTANCE.setEnabled(true);
+        }
+    }
+
+    private NativeObjectTracker() {}
+
+    /**
+     * Gets the tracker.
+     *
+     * @return the tracker instance.
+     */
+    public static NativeObjectTracker getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enable) {
+        synchronized (NativeObjectTracker.class) {
+            if (enable && !registered) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+                    registered = true;
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, "Could not register " + OBJECT_NAME, ex);
+                }
+            }
+            enabled = enable;
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Invalid sample rate " + rate);
+        }
+        sampleRate = rate;
+    }
+
+    public Map<String, Long> getLiveCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<Class<? extends NativeObject>, Integer> e : NativeObject.getLiveObjectCounts().entrySet()) {
+            counts.put(e.getKey().getName(), e.getValue().longValue());
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getLiveBytes() {
+        Map<String, Long> bytes = new HashMap<String, Long>();
+        for (Stats s : stats.values()) {
+            long sum = s.bytes.sum();
+            if (sum > 0) {
+                bytes.put(s.name, sum);
+            }
+        }
+        return bytes;
+    }
+
+    public long getTotalLiveBytes() {
+        long total = 0;
+        for (Stats s : stats.values()) {
+            total += s.bytes.sum();
+        }
+        return total;
+    }
+
+    public Map<String, Long> getCreatedCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Stats s : stats.values()) {
+            counts.put(s.name, s.created.sum());
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getLeakedCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Stats s : stats.values()) {
+            long sum = s.leaked.sum();
+            if (sum > 0) {
+                counts.put(s.name, sum);
+            }
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getLeakSites() {
+        Map<String, Long> sites = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : leakSites.entrySet()) {
+            sites.put(e.getKey(), e.getValue().get());
+        }
+        return sites;
+    }
+
+    public void reset() {
+        for (Stats s : stats.values()) {
+            s.created.reset();
+            s.leaked.reset();
+        }
+        leakSites.clear();
+    }
+
+    /**
+     * Starts tracking a newly created object.
+     */
+    static void track(NativeObject.NativeRef ref, Class<?> cls) {
+        Stats s = INSTANCE.statsFor(cls);
+        s.created.increment();
+        ref.stats = s;
+        int rate = sampleRate;
+        if (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0) {
+            ref.site = new Throwable();
+        }
+    }
+
+    /**
+     * Records the native size of a tracked object.
+     */
+    static void setSize(NativeObject.NativeRef ref, long bytes) {
+        Stats s = ref.stats;
+        if (s != null) {
+            s.bytes.add(bytes - ref.bytes);
+            ref.bytes = bytes;
+        }
+    }
+
+    /**
+     * Stops tracking an object that has been disposed or collected.
+     */
+    static void untrack(NativeObject.NativeRef ref, boolean leaked) {
+        Stats s = ref.stats;
+        if (s == null) {
+            return;
+        }
+        s.bytes.add(-ref.bytes);
+        if (leaked) {
+            s.leaked.increment();
+            if (ref.site != null) {
+                INSTANCE.addLeakSite(ref.site);
+            }
+        }
+    }
+
+    private Stats statsFor(Class<?> cls) {
+        Stats s = stats.get(cls);
+        if (s == null) {
+            Stats tmp = stats.putIfAbsent(cls, s = new Stats(cls.getName()));
+            if (tmp != null) {
+                s = tmp;
+            }
+        }
+        return s;
+    }
+
+    private void addLeakSite(Throwable site) {
+        StringBuilder sb = new StringBuilder();
+        int frames = 0;
+        for (StackTraceElement e : site.getStackTrace()) {
+            if (frames == 0 && isConstructionFrame(e)) {
+                continue;
+            }
+            if (frames > 0) {
+                sb.append(" <- ");
+            }
+            sb.append(e);
+            if (++frames == MAX_SITE_FRAMES) {
+                break;
+            }
+        }
+        String key = sb.toString();
+        AtomicLong count = leakSites.get(key);
+        if (count == null) {
+            if (leakSites.size() >= MAX_LEAK_SITES) {
+                return;
+            }
+            AtomicLong tmp = leakSites.putIfAbsent(key, count = new AtomicLong());
+            if (tmp != null) {
+                count = tmp;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Checks if a stack frame is part of creating the wrapper object, rather
+     * than the code that asked for it.
+     */
+    private static boolean isConstructionFrame(StackTraceElement e) {
+        String cls = e.getClassName();
+        return cls.equals(NativeObject.class.getName())
+                || cls.startsWith(NativeObject.class.getName() + "$")
+                || cls.equals(RefCountedObject.class.getName())
+                || cls.startsWith("java.lang.reflect.")
+                || cls.startsWith("sun.reflect.")
+                || cls.startsWith("jdk.internal.reflect.")
+                || (e.getMethodName().equals("<init>") && cls.startsWith("org.gstreamer."));
+    }
+
+    static final class Stats {
+        final String name;
+        final StripedCounter created = new StripedCounter();
+        final StripedCounter leaked = new StripedCounter();
+        final StripedCounter bytes = new StripedCounter();
+
+        Stats(String name) {
+            this.name = name;
+        }
+    }
+}
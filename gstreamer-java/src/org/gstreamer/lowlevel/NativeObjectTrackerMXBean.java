@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import java.util.Map;
+
+/**
+ * JMX management interface of the {@link NativeObjectTracker}.
+ * <p>
+ * All maps are keyed by class name.
+ */
+public interface NativeObjectTrackerMXBean {
+    boolean isEnabled();
+    void setEnabled(boolean enabled);
+
+    int getSampleRate();
+    void setSampleRate(int sampleRate);
+
+    /** Live (created but not yet disposed or collected) objects per class. */
+    Map<String, Long> getLiveCounts();
+
+    /** Native bytes held by live tracked objects per class. */
+    Map<String, Long> getLiveBytes();
+    long getTotalLiveBytes();
+
+    /** Objects created per class since tracking was enabled. */
+    Map<String, Long> getCreatedCounts();
+
+    /** Objects per class that were collected without being disposed. */
+    Map<String, Long> getLeakedCounts();
+
+    /** Sampled allocation sites of leaked objects, with the number of leaks from each. */
+    Map<String, Long> getLeakSites();
+
+    /** Clears the created, leaked and leak site statistics. */
+    void reset();
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that is cheap to update from many threads at once.
+ * <p>
+ * Updates go to one of several cells picked by the calling thread, each on
+ * its own cache line, so threads creating objects concurrently do not all
+ * contend on a single atomic.  Reading the value sums the cells, so it is
+ * only exact when there are no concurrent updates.
+ */
+final class StripedCounter {
+    private static final int PAD = 8; // longs per 64 byte cache line
+    private static final int STRIPES;
+    static {
+        int n = 1;
+        while (n < Runtime.getRuntime().availableProcessors() * 2 && n < 64) {
+            n <<= 1;
+        }
+        STRIPES = n;
+    }
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+    void add(long delta) {
+        long id = Thread.currentThread().getId();
+        int stripe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 58) & (STRIPES - 1);
+        cells.addAndGet(stripe * PAD, delta);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    void decrement() {
+        add(-1);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; ++i) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < STRIPES; ++i) {
+            cells.set(i * PAD, 0);
+        }
+    }
+}
@@ -62,9 +62,20 @@ import com.sun.jna.Pointer;
  * <p>
  * This class will return the subtype of the super class that best matches the
  * raw pointer passed in.
+ * <p>
+ * The type field is read straight from its offset in the native struct, and
+ * looked up by its integer value in a {@link TypeTable}, so no JNA structure,
+ * enum or boxed integer is created.
  */
 @SuppressWarnings("serial")
 class SubtypeMapper {
+    // Offsets of the type field, which follows the GstMiniObject header in
+    // GstEvent and GstQuery, and the lock and cond pointers in GstMessage
+    private static final int MINI_OBJECT_SIZE = new GstMiniObjectAPI.MiniObjectStruct().size();
+    static final int EVENT_TYPE_OFFSET = MINI_OBJECT_SIZE;
+    static final int QUERY_TYPE_OFFSET = MINI_OBJECT_SIZE;
+    static final int MESSAGE_TYPE_OFFSET = MINI_OBJECT_SIZE + 2 * Pointer.SIZE;
+    
     static <T extends NativeObject> Class<?> subtypeFor(final Class<T> defaultClass, final Pointer ptr) {
         Mapper mapper = MapHolder.mappers.get(defaultClass);
         Class<?> cls = mapper != null ? mapper.subtypeFor(ptr) : null;
@@ -82,23 +93,19 @@ class SubtypeMapper {
     }
     private static class EventMapper implements Mapper {
         static class MapHolder {
-            private static final Map<EventType, Class<? extends Event>> typeMap
-                = new HashMap<EventType, Class<? extends Event>>() {{
-                put(EventType.BUFFERSIZE, BufferSizeEvent.class);
-                put(EventType.EOS, EOSEvent.class);
-                put(EventType.LATENCY, LatencyEvent.class);
-                put(EventType.FLUSH_START, FlushStartEvent.class);
-                put(EventType.FLUSH_STOP, FlushStopEvent.class);
-                put(EventType.NAVIGATION, NavigationEvent.class);
-                put(EventType.NEWSEGMENT, NewSegmentEvent.class);
-                put(EventType.SEEK, SeekEvent.class);
-                put(EventType.TAG, TagEvent.class);
-                put(EventType.QOS, QOSEvent.class);
-            }};
+            private static final TypeTable typeTable = new TypeTable()
+                .put(EventType.BUFFERSIZE.intValue(), BufferSizeEvent.class)
+                .put(EventType.EOS.intValue(), EOSEvent.class)
+                .put(EventType.LATENCY.intValue(), LatencyEvent.class)
+                .put(EventType.FLUSH_START.intValue(), FlushStartEvent.class)
+                .put(EventType.FLUSH_STOP.intValue(), FlushStopEvent.class)
+                .put(EventType.NAVIGATION.intValue(), NavigationEvent.class)
+                .put(EventType.NEWSEGMENT.intValue(), NewSegmentEvent.class)
+                .put(EventType.SEEK.intValue(), SeekEvent.class)
+                .put(EventType.TAG.intValue(), TagEvent.class)
+                .put(EventType.QOS.intValue(), QOSEvent.class);
             public static Class<? extends NativeObject> subtypeFor(Pointer ptr) {
-                GstEventAPI.EventStruct struct = new GstEventAPI.EventStruct(ptr);
-                EventType type = EventType.valueOf((Integer) struct.readField("type"));
-                Class<? extends Event> eventClass = MapHolder.typeMap.get(type);
+                Class<? extends NativeObject> eventClass = typeTable.get(ptr.getInt(EVENT_TYPE_OFFSET));
                 return eventClass != null ? eventClass : Event.class;
             }
         }
@@ -108,23 +115,19 @@ class SubtypeMapper {
     }
     private static class MessageMapper implements Mapper {
         static class MapHolder {
-            private static final Map<MessageType, Class<? extends Message>> typeMap
-                    = new HashMap<MessageType, Class<? extends Message>>() {{
-                put(MessageType.EOS, EOSMessage.class);
-                put(MessageType.ERROR, ErrorMessage.class);
-                put(MessageType.BUFFERING, BufferingMessage.class);
-                put(MessageType.DURATION, DurationMessage.class);
-                put(MessageType.INFO, InfoMessage.class);
-                put(MessageType.LATENCY, LatencyMessage.class);
-                put(MessageType.SEGMENT_DONE, SegmentDoneMessage.class);
-                put(MessageType.STATE_CHANGED, StateChangedMessage.class);
-                put(MessageType.TAG, TagMessage.class);
-                put(MessageType.WARNING, WarningMessage.class);
-            }};
+            private static final TypeTable typeTable = new TypeTable()
+                .put(MessageType.EOS.intValue(), EOSMessage.class)
+                .put(MessageType.ERROR.intValue(), ErrorMessage.class)
+                .put(MessageType.BUFFERING.intValue(), BufferingMessage.class)
+                .put(MessageType.DURATION.intValue(), DurationMessage.class)
+                .put(MessageType.INFO.intValue(), InfoMessage.class)
+                .put(MessageType.LATENCY.intValue(), LatencyMessage.class)
+                .put(MessageType.SEGMENT_DONE.intValue(), SegmentDoneMessage.class)
+                .put(MessageType.STATE_CHANGED.intValue(), StateChangedMessage.class)
+                .put(MessageType.TAG.intValue(), TagMessage.class)
+                .put(MessageType.WARNING.intValue(), WarningMessage.class);
             public static Class<? extends NativeObject> subtypeFor(Pointer ptr) {
-                GstMessageAPI.MessageStruct struct = new GstMessageAPI.MessageStruct(ptr);
-                MessageType type = (MessageType) struct.readField("type");
-                Class<? extends Message> messageClass = MapHolder.typeMap.get(type);
+                Class<? extends NativeObject> messageClass = typeTable.get(ptr.getInt(MESSAGE_TYPE_OFFSET));
                 return messageClass != null ? messageClass : Message.class;
             }
         }
@@ -134,20 +137,16 @@ class SubtypeMapper {
     }
     private static class QueryMapper implements Mapper {
         static class MapHolder {
-            private static final Map<QueryType, Class<? extends Query>> typeMap
-                = new HashMap<QueryType, Class<? extends Query>>() {{
-                put(QueryType.CONVERT, ConvertQuery.class);
-                put(QueryType.DURATION, DurationQuery.class);
-                put(QueryType.FORMATS, FormatsQuery.class);
-                put(QueryType.LATENCY, LatencyQuery.class);
-                put(QueryType.POSITION, PositionQuery.class);
-                put(QueryType.SEEKING, SeekingQuery.class);
-                put(QueryType.SEGMENT, SegmentQuery.class);
-            }};
+            private static final TypeTable typeTable = new TypeTable()
+                .put(QueryType.CONVERT.intValue(), ConvertQuery.class)
+                .put(QueryType.DURATION.intValue(), DurationQuery.class)
+                .put(QueryType.FORMATS.intValue(), FormatsQuery.class)
+                .put(QueryType.LATENCY.intValue(), LatencyQuery.class)
+                .put(QueryType.POSITION.intValue(), PositionQuery.class)
+                .put(QueryType.SEEKING.intValue(), SeekingQuery.class)
+                .put(QueryType.SEGMENT.intValue(), SegmentQuery.class);
             public static Class<? extends NativeObject> subtypeFor(Pointer ptr) {
-                GstQueryAPI.QueryStruct struct = new GstQueryAPI.QueryStruct(ptr);
-                QueryType type = QueryType.valueOf((Integer) struct.readField("type"));
-                Class<? extends Query> queryClass = typeMap.get(type);
+                Class<? extends NativeObject> queryClass = typeTable.get(ptr.getInt(QUERY_TYPE_OFFSET));
                 return queryClass != null ? queryClass : Query.class;
             }
         }
@@ -155,4 +154,37 @@ class SubtypeMapper {
             return MapHolder.subtypeFor(ptr);
         }
     }
+    /**
+     * Subtypes by native type value, in an open-addressed hash table like the
+     * sparse tables of {@link EnumMapper}, so a lookup does not box the value.
+     */
+    private static final class TypeTable {
+        private static final int SIZE = 32;
+        private final int[] keys = new int[SIZE];
+        private final Class<?>[] classes = new Class<?>[SIZE];
+
+        TypeTable put(int type, Class<? extends NativeObject> cls) {
+            int slot = slot(type);
+            keys[slot] = type;
+            classes[slot] = cls;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        Class<? extends NativeObject> get(int type) {
+            return (Class<? extends NativeObject>) classes[slot(type)];
+        }
+
+        /**
+         * Finds the slot holding a type, or the empty slot it would go in.
+         */
+        private int slot(int type) {
+            int mask = SIZE - 1;
+            int slot = (type * 0x9E3779B9) >>> 16 & mask;
+            while (classes[slot] != null && keys[slot] != type) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
 }
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.message;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.gstreamer.ClockTime;
+import org.gstreamer.Format;
+import org.gstreamer.GstObject;
+import org.gstreamer.Message;
+import org.gstreamer.MessageType;
+import org.gstreamer.State;
+import org.gstreamer.lowlevel.EnumMapper;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.GstMessageAPI.MessageStruct;
+import org.gstreamer.lowlevel.NativeObject;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+/**
+ * A reusable view of a {@link Message} for listeners that see a lot of
+ * messages, such as buffering, level or QOS messages.
+ * <p>
+ * The fields of the message are read straight from the native message when
+ * they are asked for, into primitives and enum constants, so a listener that
+ * only uses those does not allocate anything.  No {@link GstObject} wrapper is
+ * created for the source unless {@link #getSource} is called; use
+ * {@link #isFrom} to check where a message came from.
+ * <p>
+ * A view is not thread safe, and is only valid until it is {@link #reset} to
+ * another message.  Listeners added with {@link org.gstreamer.Bus#connect(MessageType, org.gstreamer.Bus.MESSAGE_VIEW)}
+ * are given a view belonging to the dispatching thread, which must not be kept
+ * after the listener returns.
+ */
+public final class MessageView {
+    private static final int TYPE_OFFSET = MessageStruct.offsetOf("type");
+    private static final int TIMESTAMP_OFFSET = MessageStruct.offsetOf("timestamp");
+    private static final int SRC_OFFSET = MessageStruct.offsetOf("src");
+    private static final int STRUCTURE_OFFSET = MessageStruct.offsetOf("structure");
+
+    // What has already been parsed from the current message
+    private static final int STATES = 1 << 0;
+    private static final int FORMAT_VALUE = 1 << 1;
+    private static final int QOS = 1 << 2;
+    private static final int QOS_VALUES = 1 << 3;
+
+    private static final EnumMapper enums = EnumMapper.getInstance();
+
+    // Out parameters for the parse functions, 8 bytes each
+    private final Memory out = new Memory(8 * 4);
+    private final Pointer out0 = out.share(0, 8);
+    private final Pointer out1 = out.share(8, 8);
+    private final Pointer out2 = out.share(16, 8);
+    private final Pointer out3 = out.share(24, 8);
+    private final Address structure = new Address();
+    private final Map<String, Memory> names = new HashMap<String, Memory>();
+
+    private Message message;
+    private Pointer msg;
+    private int type;
+    private int parsed;
+    private int oldState, newState, pendingState;
+    private int format;
+    private long value;
+    private long runningTime;
+    private long jitter;
+    private double proportion;
+    private int quality;
+
+    /**
+     * Points this view at a message.
+     *
+     * @param message the message to view.
+     * @return this view.
+     */
+    public MessageView reset(Message message) {
+        this.message = message;
+        this.msg = message.getNativeAddress();
+        this.type = msg.getInt(TYPE_OFFSET);
+        this.parsed = 0;
+        return this;
+    }
+
+    /**
+     * Drops the reference this view holds to its message.
+     */
+    public void clear() {
+        message = null;
+        msg = null;
+    }
+
+    /**
+     * Gets the message this view is looking at.
+     *
+     * @return the message, or null if the view has been cleared.
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the type of the message.
+     *
+     * @return the message type.
+     */
+    public MessageType getType() {
+        return enums.valueOf(type, MessageType.class);
+    }
+
+    /**
+     * Gets the native value of the message type, for listeners that switch on
+     * {@link MessageType#intValue}.
+     *
+     * @return the message type.
+     */
+    public int getTypeValue() {
+        return type;
+    }
+
+    /**
+     * Gets the timestamp of the message.
+     *
+     * @return the timestamp in nanoseconds, or -1 if it is not set.
+     */
+    public long getTimestamp() {
+        return msg.getLong(TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * Checks whether the message was posted by an object, without creating a
+     * wrapper for the source.
+     *
+     * @param object the object to check for.
+     * @return true if <tt>object</tt> posted the message.
+     */
+    public boolean isFrom(GstObject object) {
+        return object != null && address(msg, SRC_OFFSET) == Pointer.nativeValue(object.getNativeAddress());
+    }
+
+    /**
+     * Gets the object that posted the message.  Unlike the other getters, this
+     * looks up or creates a java wrapper.
+     *
+     * @return the source of the message, or null if it has none.
+     */
+    public GstObject getSource() {
+        Pointer src = msg.getPointer(SRC_OFFSET);
+        return src != null ? NativeObject.objectFor(src, GstObject.class, 1, true) : null;
+    }
+
+    /**
+     * Gets how much of the buffering has completed, from a BUFFERING message.
+     *
+     * @return the percentage, from 0 to 100.
+     */
+    public int getBufferingPercent() {
+        require(MessageType.BUFFERING);
+        GstDirectAPI.gst_message_parse_buffering(msg, out0);
+        return out0.getInt(0);
+    }
+
+    /**
+     * Gets the state an element changed from, from a STATE_CHANGED message.
+     *
+     * @return the old state.
+     */
+    public State getOldState() {
+        parseStates();
+        return enums.valueOf(oldState, State.class);
+    }
+
+    /**
+     * Gets the state an element changed to, from a STATE_CHANGED message.
+     *
+     * @return the new state.
+     */
+    public State getNewState() {
+        parseStates();
+        return enums.valueOf(newState, State.class);
+    }
+
+    /**
+     * Gets the state an element is going to, from a STATE_CHANGED message.
+     *
+     * @return the pending state.
+     */
+    public State getPendingState() {
+        parseStates();
+        return enums.valueOf(pendingState, State.class);
+    }
+
+    /**
+     * Gets the format of the value of a DURATION, SEGMENT_START or
+     * SEGMENT_DONE message.
+     *
+     * @return the format.
+     */
+    public Format getFormat() {
+        parseFormatValue();
+        return enums.valueOf(format, Format.class);
+    }
+
+    /**
+     * Gets the duration from a DURATION message.
+     *
+     * @return the duration in {@link #getFormat}, or -1 if it is unknown.
+     */
+    public long getDuration() {
+        require(MessageType.DURATION);
+        parseFormatValue();
+        return value;
+    }
+
+    /**
+     * Gets the position from a SEGMENT_START or SEGMENT_DONE message.
+     *
+     * @return the position in {@link #getFormat}.
+     */
+    public long getPosition() {
+        if (type == MessageType.DURATION.intValue()) {
+            throw wrongType();
+        }
+        parseFormatValue();
+        return value;
+    }
+
+    /**
+     * Gets the running time of the buffer that caused a QOS message.
+     *
+     * @return the running time in nanoseconds, or -1 if unknown.
+     */
+    public long getQosRunningTime() {
+        if ((parsed & QOS) == 0) {
+            require(MessageType.QOS);
+            GstDirectAPI.gst_message_parse_qos(msg, null, out0, null, null, null);
+            runningTime = out0.getLong(0);
+            parsed |= QOS;
+        }
+        return runningTime;
+    }
+
+    /**
+     * Gets how late the buffer that caused a QOS message was.
+     *
+     * @return the difference between the running time of the buffer and the
+     * time it was due, in nanoseconds; negative if it was early.
+     */
+    public long getQosJitter() {
+        parseQosValues();
+        return jitter;
+    }
+
+    /**
+     * Gets the long term rate of processing, from a QOS message.
+     *
+     * @return the proportion; 1.0 is the ideal rate.
+     */
+    public double getQosProportion() {
+        parseQosValues();
+        return proportion;
+    }
+
+    /**
+     * Gets the quality level of the element that posted a QOS message.
+     *
+     * @return the quality, from 0 to 1000000.
+     */
+    public int getQosQuality() {
+        parseQosValues();
+        return quality;
+    }
+
+    /**
+     * Checks the name of the structure of the message, such as "level" for
+     * the ELEMENT messages posted by the level element.
+     *
+     * @param name the structure name.
+     * @return true if the message has a structure of that name.
+     */
+    public boolean hasStructureName(String name) {
+        return structure() != null && GstDirectAPI.gst_structure_has_name(structure, name(name)) != 0;
+    }
+
+    /**
+     * Gets an integer field from the structure of the message.
+     *
+     * @param field the field name.
+     * @param defaultValue the value to return if there is no such integer field.
+     * @return the field value.
+     */
+    public int getInt(String field, int defaultValue) {
+        if (structure() == null || GstDirectAPI.gst_structure_get_int(structure, name(field), out0) == 0) {
+            return defaultValue;
+        }
+        return out0.getInt(0);
+    }
+
+    /**
+     * Gets a double field from the structure of the message.
+     *
+     * @param field the field name.
+     * @param defaultValue the value to return if there is no such double field.
+     * @return the field value.
+     */
+    public double getDouble(String field, double defaultValue) {
+        if (structure() == null || GstDirectAPI.gst_structure_get_double(structure, name(field), out0) == 0) {
+            return defaultValue;
+        }
+        return out0.getDouble(0);
+    }
+
+    /**
+     * Gets a clock time field from the structure of the message.
+     *
+     * @param field the field name.
+     * @param defaultValue the value to return if there is no such clock time field.
+     * @return the field value in nanoseconds.
+     * @see ClockTime#NONE
+     */
+    public long getClockTime(String field, long defaultValue) {
+        if (structure() == null || GstDirectAPI.gst_structure_get_clock_time(structure, name(field), out0) == 0) {
+            return defaultValue;
+        }
+        return out0.getLong(0);
+    }
+
+    private void parseStates() {
+        if ((parsed & STATES) == 0) {
+            require(MessageType.STATE_CHANGED);
+            GstDirectAPI.gst_message_parse_state_changed(msg, out0, out1, out2);
+            oldState = out0.getInt(0);
+            newState = out1.getInt(0);
+            pendingState = out2.getInt(0);
+            parsed |= STATES;
+        }
+    }
+
+    private void parseFormatValue() {
+        if ((parsed & FORMAT_VALUE) == 0) {
+            if (type == MessageType.DURATION.intValue()) {
+                GstDirectAPI.gst_message_parse_duration(msg, out0, out1);
+            } else if (type == MessageType.SEGMENT_START.intValue()) {
+                GstDirectAPI.gst_message_parse_segment_start(msg, out0, out1);
+            } else if (type == MessageType.SEGMENT_DONE.intValue()) {
+                GstDirectAPI.gst_message_parse_segment_done(msg, out0, out1);
+            } else {
+                throw wrongType();
+            }
+            format = out0.getInt(0);
+            value = out1.getLong(0);
+            parsed |= FORMAT_VALUE;
+        }
+    }
+
+    private void parseQosValues() {
+        if ((parsed & QOS_VALUES) == 0) {
+            require(MessageType.QOS);
+            GstDirectAPI.gst_message_parse_qos_values(msg, out1, out2, out3);
+            jitter = out1.getLong(0);
+            proportion = out2.getDouble(0);
+            quality = out3.getInt(0);
+            parsed |= QOS_VALUES;
+        }
+    }
+
+    private Pointer structure() {
+        long address = address(msg, STRUCTURE_OFFSET);
+        if (address == 0) {
+            return null;
+        }
+        structure.set(address);
+        return structure;
+    }
+
+    private Memory name(String name) {
+        Memory m = names.get(name);
+        if (m == null) {
+            m = new Memory(name.length() * 4 + 1);
+            m.setString(0, name);
+            names.put(name, m);
+        }
+        return m;
+    }
+
+    private void require(MessageType expected) {
+        if (type != expected.intValue()) {
+            throw wrongType();
+        }
+    }
+
+    private IllegalStateException wrongType() {
+        return new IllegalStateException("Not valid for a " + getType() + " message");
+    }
+
+    private static long address(Pointer p, int offset) {
+        return Pointer.SIZE == 8 ? p.getLong(offset) : p.getInt(offset) & 0xffffffffL;
+    }
+
+    /**
+     * A pointer that can be moved, so reading a pointer field does not need a
+     * new Pointer each time.
+     */
+    private static final class Address extends Pointer {
+        Address() {
+            super(0);
+        }
+
+        void set(long address) {
+            peer = address;
+        }
+    }
+}
@@ -18,7 +18,6 @@
 
 package org.gstreamer.swing;
 
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -42,7 +41,6 @@ public class PipelinePositionModel extends DefaultBoundedRangeModel {
 
     private static final long serialVersionUID = 6687380442713003174L;
 
-    private static final int UPDATE_INTERVAL = 1000; // 1 second
     private static final TimeUnit scaleUnit = TimeUnit.SECONDS;
     private static final SwingExecutorService swingExec = new SwingExecutorService();
     private final Pipeline pipeline;
@@ -50,8 +48,14 @@ public class PipelinePositionModel extends DefaultBoundedRangeModel {
     private final AtomicBoolean isSeeking = new AtomicBoolean(false);
     
     private long seekingPos = -1;
+    private volatile boolean visible = true;
     
-    private volatile ScheduledFuture<?> updateTask = null;
+    private final PipelinePositionService.Listener positionListener = new PipelinePositionService.Listener() {
+        public void positionChanged(Pipeline pipeline, long position, long duration) {
+            updatePosition(scaleUnit.convert(duration, TimeUnit.NANOSECONDS),
+                    scaleUnit.convert(position, TimeUnit.NANOSECONDS));
+        }
+    };
     
     /** Creates a new instance of MediaPositionModel */
     public PipelinePositionModel(Pipeline element) {
@@ -63,28 +67,25 @@ public class PipelinePositionModel extends DefaultBoundedRangeModel {
             }
         }));
     }
-    private synchronized void startPoll() {
-        Runnable task = new Runnable() {
-
-            public void run() {
-                final long position = pipeline.queryPosition(scaleUnit);
-                final long duration = pipeline.queryDuration(scaleUnit);
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        updatePosition(duration, position);
-                    }
-                });
-            }
-        };
-        updateTask = Gst.getScheduledExecutorService().scheduleAtFixedRate(task, 
-                UPDATE_INTERVAL, UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
-    }
-    private synchronized void stopPoll() {
-        if (updateTask != null) {
-            updateTask.cancel(true);
-            updateTask = null;
+    private void startPoll() {
+        PipelinePositionService.getDefault().addListener(pipeline, positionListener);
+        if (!visible) {
+            PipelinePositionService.getDefault().setVisible(pipeline, false);
         }
     }
+    private void stopPoll() {
+        PipelinePositionService.getDefault().removeListener(pipeline, positionListener);
+    }
+    /**
+     * Sets whether the slider using this model is showing.  The position is
+     * not polled while it is hidden.
+     *
+     * @param visible false to stop polling while hidden.
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        PipelinePositionService.getDefault().setVisible(pipeline, visible);
+    }
     @Override
     public void addChangeListener(ChangeListener l) {
         if (listenerList.getListenerCount() == 0) {
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.swing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import org.gstreamer.Bus;
+import org.gstreamer.Format;
+import org.gstreamer.Gst;
+import org.gstreamer.GstObject;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.gstreamer.query.DurationQuery;
+import org.gstreamer.query.PositionQuery;
+
+/**
+ * Polls the position and duration of many pipelines from one timer, and
+ * delivers the changes to their listeners in one batch.
+ * <p>
+ * Every tick queries the pipelines that need it: playing pipelines that are
+ * visible, and any pipeline whose state, duration or visibility has changed
+ * since its last poll.  Paused and hidden pipelines are not queried at all.
+ * Durations are cached until the pipeline posts a duration message or
+ * changes state.  The queries are reused from tick to tick.
+ * <p>
+ * Changed values are handed to the listeners through the publish executor,
+ * which is the Swing EDT for the {@link #getDefault default} service.  If the
+ * previous batch has not been delivered yet, the new values are merged
+ * into it instead of queueing another one.
+ */
+public class PipelinePositionService {
+    /** The default time between ticks, in milliseconds. */
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    /**
+     * Receives position updates.
+     */
+    public static interface Listener {
+        /**
+         * Called on the publish executor when the position or duration of a
+         * pipeline has changed.
+         *
+         * @param pipeline the pipeline.
+         * @param position the position in nanoseconds, or -1 if unknown.
+         * @param duration the duration in nanoseconds, or -1 if unknown.
+         */
+        public void positionChanged(Pipeline pipeline, long position, long duration);
+    }
+
+    private static final class DefaultHolder {
+        static final PipelinePositionService instance = new PipelinePositionService(
+                Gst.getScheduledExecutorService(), new Executor() {
+                    public void execute(Runnable command) {
+                        SwingUtilities.invokeLater(command);
+                    }
+                }, DEFAULT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final Executor publisher;
+    private final long interval;
+    private final ConcurrentMap<Pipeline, Entry> entries = new ConcurrentHashMap<Pipeline, Entry>();
+    private final AtomicBoolean publishPending = new AtomicBoolean(false);
+    private ScheduledFuture<?> tickTask = null;
+
+    private final Runnable tick = new Runnable() {
+        public void run() {
+            tick();
+        }
+    };
+    private final Runnable publish = new Runnable() {
+        public void run() {
+            publish();
+        }
+    };
+
+    /**
+     * Creates a new position service.
+     *
+     * @param scheduler the executor the queries are run on.
+     * @param publisher the executor the listeners are called on.
+     * @param interval the time between ticks.
+     * @param unit the unit of {@code interval}.
+     */
+    public PipelinePositionService(ScheduledExecutorService scheduler, Executor publisher,
+            long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid interval " + interval);
+        }
+        this.scheduler = scheduler;
+        this.publisher = publisher;
+        this.interval = unit.toNanos(interval);
+    }
+
+    /**
+     * Gets the shared service, which polls on the Gst executor and calls
+     * listeners on the Swing EDT.
+     *
+     * @return the default service.
+     */
+    public static PipelinePositionService getDefault() {
+        return DefaultHolder.instance;
+    }
+
+    /**
+     * Starts delivering the position of a pipeline to a listener.
+     *
+     * @param pipeline the pipeline to poll.
+     * @param listener the listener to call with its position.
+     */
+    public synchronized void addListener(Pipeline pipeline, Listener listener) {
+        Entry entry = entries.get(pipeline);
+        if (entry == null) {
+            entry = new Entry(pipeline);
+            entries.put(pipeline, entry);
+            entry.connect();
+        }
+        entry.listeners.add(listener);
+        entry.dirty = true;
+        if (tickTask == null) {
+            tickTask = scheduler.scheduleWithFixedDelay(tick, 0, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops delivering the position of a pipeline to a listener.
+     *
+     * @param pipeline the pipeline.
+     * @param listener the listener that was added.
+     */
+    public synchronized void removeListener(Pipeline pipeline, Listener listener) {
+        Entry entry = entries.get(pipeline);
+        if (entry == null) {
+            return;
+        }
+        entry.listeners.remove(listener);
+        if (entry.listeners.isEmpty()) {
+            entries.remove(pipeline);
+            entry.disconnect();
+        }
+        if (entries.isEmpty() && tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+
+    /**
+     * Sets whether the position of a pipeline is being shown.  Hidden
+     * pipelines are not polled; a pipeline is polled again as soon as it is
+     * made visible.  Pipelines are visible when first added.
+     *
+     * @param pipeline the pipeline.
+     * @param visible false to stop polling the pipeline while it is hidden.
+     */
+    public void setVisible(Pipeline pipeline, boolean visible) {
+        Entry entry = entries.get(pipeline);
+        if (entry != null && entry.visible != visible) {
+            entry.visible = visible;
+            entry.dirty = visible;
+        }
+    }
+
+    private void tick() {
+        boolean changed = false;
+        for (Entry entry : entries.values()) {
+            changed |= entry.poll();
+        }
+        if (changed && publishPending.compareAndSet(false, true)) {
+            publisher.execute(publish);
+        }
+    }
+
+    private void publish() {
+        // Values that change from here on need another publish
+        publishPending.set(false);
+        for (Entry entry : entries.values()) {
+            entry.publish();
+        }
+    }
+
+    /**
+     * The polling state of one pipeline.
+     */
+    private final class Entry {
+        final Pipeline pipeline;
+        final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+        volatile boolean visible = true;
+        volatile boolean playing = false;
+        volatile boolean dirty = true;
+        volatile boolean durationValid = false;
+        // Only used on the scheduler
+        private PositionQuery positionQuery;
+        private DurationQuery durationQuery;
+        private long duration = -1;
+        // Latest values, and whether the listeners have seen them
+        private long position = -1;
+        private long latestPosition = -1, latestDuration = -1;
+        private boolean unpublished = false;
+
+        final Bus.STATE_CHANGED stateChanged = new Bus.STATE_CHANGED() {
+            public void stateChanged(GstObject source, State old, State current, State pending) {
+                if (pipeline.equals(source)) {
+                    playing = current == State.PLAYING;
+                    durationValid = false;
+                    dirty = true;
+                }
+            }
+        };
+        final Bus.DURATION durationChanged = new Bus.DURATION() {
+            public void durationChanged(GstObject source, Format format, long duration) {
+                durationValid = false;
+                dirty = true;
+            }
+        };
+
+        Entry(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        void connect() {
+            Bus bus = pipeline.getBus();
+            bus.connect(stateChanged);
+            bus.connect(durationChanged);
+            playing = pipeline.getState(0) == State.PLAYING;
+        }
+
+        void disconnect() {
+            Bus bus = pipeline.getBus();
+            bus.disconnect(stateChanged);
+            bus.disconnect(durationChanged);
+        }
+
+        /**
+         * Queries the pipeline if it needs it.
+         *
+         * @return true if there are new values to publish.
+         */
+        boolean poll() {
+            if (!visible || !(playing || dirty)) {
+                return false;
+            }
+            dirty = false;
+            if (positionQuery == null) {
+                positionQuery = new PositionQuery(Format.TIME);
+                durationQuery = new DurationQuery(Format.TIME);
+            }
+            if (!durationValid) {
+                durationValid = true;
+                duration = pipeline.query(durationQuery) ? durationQuery.getDuration() : -1;
+            }
+            position = pipeline.query(positionQuery) ? positionQuery.getPosition() : -1;
+            synchronized (this) {
+                if (position == latestPosition && duration == latestDuration) {
+                    return false;
+                }
+                latestPosition = position;
+                latestDuration = duration;
+                unpublished = true;
+            }
+            return true;
+        }
+
+        void publish() {
+            long p, d;
+            synchronized (this) {
+                if (!unpublished) {
+                    return;
+                }
+                unpublished = false;
+                p = latestPosition;
+                d = latestDuration;
+            }
+            for (Listener l : listeners) {
+                l.positionChanged(pipeline, p, d);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BufferTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("BufferTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    @Test
+    public void nanosAccessors() {
+        Buffer buf = new Buffer(16);
+        assertEquals(16, buf.getSize());
+        buf.setTimestampNanos(1234);
+        buf.setDurationNanos(40);
+        buf.setOffset(7);
+        buf.setLastOffset(8);
+        assertEquals(1234, buf.getTimestampNanos());
+        assertEquals(ClockTime.fromNanos(1234), buf.getTimestamp());
+        assertEquals(40, buf.getDurationNanos());
+        assertEquals(7, buf.getOffset());
+        assertEquals(8, buf.getLastOffset());
+        buf.setTimestamp(ClockTime.NONE);
+        assertEquals(-1, buf.getTimestampNanos());
+    }
+
+    @Test
+    public void readMetadata() {
+        Buffer buf = new Buffer(32);
+        buf.setTimestampNanos(1000);
+        buf.setDurationNanos(500);
+        buf.setOffset(3);
+        buf.setLastOffset(4);
+        BufferMeta meta = new BufferMeta();
+        assertSame(meta, buf.readMetadata(meta));
+        assertEquals(32, meta.getSize());
+        assertEquals(1000, meta.getTimestampNanos());
+        assertEquals(500, meta.getDurationNanos());
+        assertEquals(3, meta.getOffset());
+        assertEquals(4, meta.getLastOffset());
+        assertEquals(buf.getFlags(), meta.getFlags());
+    }
+}
@@ -22,6 +22,10 @@ package org.gstreamer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -31,7 +35,9 @@ import org.gstreamer.lowlevel.GstBusAPI;
 import org.gstreamer.lowlevel.GstElementAPI;
 import org.gstreamer.lowlevel.GstMessageAPI;
 import org.gstreamer.lowlevel.GstNative;
+import org.gstreamer.message.BufferingMessage;
 import org.gstreamer.message.EOSMessage;
+import org.gstreamer.message.MessageView;
 import org.gstreamer.message.StateChangedMessage;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -222,6 +228,60 @@ public class BusTest {
         assertEquals("Incorrect source object on signal", pipe.src, signalSource.get());
     }
     @Test
+    public void bufferingMessageView() {
+        final TestPipe pipe = new TestPipe("bufferingMessageView");
+       
+        final AtomicBoolean signalFired = new AtomicBoolean(false);
+        final AtomicInteger signalValue = new AtomicInteger(-1);
+        final AtomicBoolean fromSource = new AtomicBoolean(false);
+        final int PERCENT = 95;
+        Bus.MESSAGE_VIEW listener = new Bus.MESSAGE_VIEW() {
+
+            public void busMessage(Bus bus, MessageView view) {
+                signalFired.set(true);
+                signalValue.set(view.getBufferingPercent());
+                fromSource.set(view.isFrom(pipe.src));
+                pipe.quit();
+            }
+        };
+        pipe.getBus().connect(MessageType.BUFFERING, listener);
+        gst.gst_element_post_message(pipe.src, gst.gst_message_new_buffering(pipe.src, PERCENT));
+        pipe.play().run();
+        pipe.getBus().disconnect(listener);
+        pipe.dispose();
+        assertTrue("BUFFERING message not received", signalFired.get());
+        assertEquals("Wrong percent value received in view", PERCENT, signalValue.get());
+        assertTrue("Incorrect source object in view", fromSource.get());
+    }
+    @Test
+    public void messageViewForSeveralTypes() {
+        final TestPipe pipe = new TestPipe("messageViewForSeveralTypes");
+       
+        final List<MessageType> received = new ArrayList<MessageType>();
+        Bus.MESSAGE_VIEW listener = new Bus.MESSAGE_VIEW() {
+
+            public void busMessage(Bus bus, MessageView view) {
+                synchronized (received) {
+                    received.add(view.getType());
+                    if (received.size() == 2) {
+                        pipe.quit();
+                    }
+                }
+            }
+        };
+        pipe.getBus().connect(MessageType.BUFFERING, listener);
+        pipe.getBus().connect(MessageType.TAG, listener);
+        gst.gst_element_post_message(pipe.src, gst.gst_message_new_buffering(pipe.src, 50));
+        gst.gst_element_post_message(pipe.src, gst.gst_message_new_tag(pipe.src, new TagList()));
+        pipe.play().run();
+        pipe.getBus().disconnect(listener);
+        pipe.dispose();
+        synchronized (received) {
+            assertTrue("BUFFERING message not received", received.contains(MessageType.BUFFERING));
+            assertTrue("TAG message not received", received.contains(MessageType.TAG));
+        }
+    }
+    @Test
     public void tagsFound() {
         final TestPipe pipe = new TestPipe("tagsFound");
        
@@ -292,4 +352,86 @@ public class BusTest {
         assertTrue("Message not posted", signalFired.get());
         assertEquals("Wrong source in message", pipe.src, signalSource.get());
     }
+    @Test public void pollInPullMode() {
+        final TestPipe pipe = new TestPipe("pollInPullMode");
+        Bus bus = pipe.getBus();
+        bus.setPullMode(true);
+        assertTrue("Bus not in pull mode", bus.isPullMode());
+        bus.post(new BufferingMessage(pipe.src, 50));
+        bus.post(new EOSMessage(pipe.src));
+        Message msg = bus.poll(MessageType.EOS, 1, TimeUnit.SECONDS);
+        assertEquals("Wrong message type polled", MessageType.EOS, msg.getType());
+        assertEquals("Wrong source in message", pipe.src, msg.getSource());
+        assertEquals("Message not dropped", null, bus.poll(MessageType.ANY, 0, TimeUnit.SECONDS));
+        
+        for (int i = 0; i < 3; ++i) {
+            bus.post(new EOSMessage(pipe.src));
+        }
+        List<Message> messages = new ArrayList<Message>();
+        assertEquals("Wrong number of messages drained", 2, bus.drain(MessageType.mask(MessageType.EOS), 2, messages));
+        int count = 0;
+        for (Message m : bus.messages(MessageType.ANY.intValue(), 0, TimeUnit.SECONDS)) {
+            ++count;
+        }
+        assertEquals("Wrong number of messages iterated", 1, count);
+        bus.setPullMode(false);
+        pipe.dispose();
+    }
+    @Test public void dispatchOverflow() {
+        final TestPipe pipe = new TestPipe("dispatchOverflow");
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final AtomicInteger buffering = new AtomicInteger(0);
+        final AtomicBoolean eos = new AtomicBoolean(false);
+        Bus bus = pipe.getBus();
+        BusDispatcher dispatcher = bus.getDispatcher();
+        dispatcher.setCapacity(1);
+        dispatcher.setExecutor(new Executor() {
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        bus.connect(new Bus.BUFFERING() {
+            public void bufferingData(GstObject source, int percent) {
+                buffering.incrementAndGet();
+            }
+        });
+        bus.connect(new Bus.EOS() {
+            public void endOfStream(GstObject source) {
+                eos.set(true);
+            }
+        });
+        for (int i = 0; i < 3; ++i) {
+            bus.post(new BufferingMessage(pipe.src, i * 10));
+        }
+        bus.post(new EOSMessage(pipe.src));
+        assertEquals("Wrong number of dropped messages", 2, dispatcher.getDroppedCount());
+        assertEquals("Wrong queue depth", 2, dispatcher.getQueueDepth());
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+        assertEquals("Wrong number of buffering messages", 1, buffering.get());
+        assertTrue("EOS message dropped", eos.get());
+        assertEquals("Wrong number of dispatched messages", 2, dispatcher.getDispatchedCount());
+        pipe.dispose();
+    }
+    @Test public void defaultOverflowPolicies() {
+        final TestPipe pipe = new TestPipe("defaultOverflowPolicies");
+        BusDispatcher dispatcher = pipe.getBus().getDispatcher();
+        assertEquals(BusDispatcher.OverflowPolicy.NEVER_DROP, dispatcher.getOverflowPolicy(MessageType.ERROR));
+        assertEquals(BusDispatcher.OverflowPolicy.NEVER_DROP, dispatcher.getOverflowPolicy(MessageType.EOS));
+        assertEquals(BusDispatcher.OverflowPolicy.NEVER_DROP, dispatcher.getOverflowPolicy(MessageType.ASYNC_DONE));
+        assertEquals(BusDispatcher.OverflowPolicy.DROP_OLDEST, dispatcher.getOverflowPolicy(MessageType.STATE_CHANGED));
+        assertEquals(BusDispatcher.OverflowPolicy.DROP_OLDEST, dispatcher.getOverflowPolicy(MessageType.WARNING));
+        pipe.dispose();
+    }
+    @Test public void unknownTypeHasOwnOverflowPolicy() {
+        final TestPipe pipe = new TestPipe("unknownTypeHasOwnOverflowPolicy");
+        BusDispatcher dispatcher = pipe.getBus().getDispatcher();
+        dispatcher.setOverflowPolicy(MessageType.EOS, BusDispatcher.OverflowPolicy.DROP_NEWEST);
+        assertEquals(BusDispatcher.OverflowPolicy.DROP_OLDEST, dispatcher.getOverflowPolicy(MessageType.UNKNOWN));
+        dispatcher.setOverflowPolicy(MessageType.UNKNOWN, BusDispatcher.OverflowPolicy.NEVER_DROP);
+        assertEquals(BusDispatcher.OverflowPolicy.NEVER_DROP, dispatcher.getOverflowPolicy(MessageType.UNKNOWN));
+        assertEquals(BusDispatcher.OverflowPolicy.DROP_NEWEST, dispatcher.getOverflowPolicy(MessageType.EOS));
+        pipe.dispose();
+    }
 }
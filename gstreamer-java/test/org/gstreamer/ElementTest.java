@@ -20,6 +20,7 @@
 package org.gstreamer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
@@ -119,4 +120,16 @@ public class ElementTest {
         pipe.run();
         assertTrue("Message not posted", signalFired.get());
     }
+    @Test public void primitiveProperties() {
+        Element element = ElementFactory.make("fakesrc", "fs");
+        element.setInt("num-buffers", 17);
+        assertEquals("int property not set", 17, element.getInt("num-buffers"));
+        assertEquals("boxed property changed type", Integer.valueOf(17), element.get("num-buffers"));
+        element.set("num-buffers", 23L);
+        assertEquals("int property not set", 23L, element.getLong("num-buffers"));
+        element.setBoolean("silent", false);
+        assertFalse("boolean property not set", element.getBoolean("silent"));
+        element.setBoolean("silent", true);
+        assertEquals("boolean property not set", Boolean.TRUE, element.get("silent"));
+    }
 }
\ No newline at end of file
@@ -20,8 +20,10 @@
 package org.gstreamer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import org.gstreamer.lowlevel.EnumMapper;
+import org.gstreamer.lowlevel.IntegerEnum;
 import org.gstreamer.lowlevel.annotations.DefaultEnumValue;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -60,6 +62,22 @@ public class EnumTest {
         @DefaultEnumValue
         BAR;
     }
+    private static enum SparseEnum implements IntegerEnum {
+        SMALL(1),
+        LARGE(1 << 20),
+        NEGATIVE(-7),
+        ALIAS(1 << 20);
+        private final int value;
+        SparseEnum(int value) {
+            this.value = value;
+        }
+        public int intValue() {
+            return value;
+        }
+    }
+    private static enum NoDefaultEnum {
+        ONE
+    }
     // TODO add test methods here.
     // The methods must be annotated with annotation @Test. For example:
     //
@@ -69,4 +87,25 @@ public class EnumTest {
         TestEnum e = EnumMapper.getInstance().valueOf(0xdeadbeef, TestEnum.class);
         assertEquals("Wrong value returned for the default", TestEnum.BAR, e);
     }
-}
\ No newline at end of file
+    @Test public void valueOfOrdinal() {
+        assertEquals(TestEnum.FOO, EnumMapper.getInstance().valueOf(0, TestEnum.class));
+        assertEquals(TestEnum.BAR, EnumMapper.getInstance().valueOf(1, TestEnum.class));
+    }
+    @Test public void valueOfSparse() {
+        EnumMapper mapper = EnumMapper.getInstance();
+        for (SparseEnum e : new SparseEnum[] { SparseEnum.SMALL, SparseEnum.LARGE, SparseEnum.NEGATIVE }) {
+            assertEquals(e, mapper.valueOf(e.intValue(), SparseEnum.class));
+        }
+        assertEquals("First declared constant should win", SparseEnum.LARGE,
+                mapper.valueOf(1 << 20, SparseEnum.class));
+        assertEquals(MessageType.STATE_CHANGED,
+                mapper.valueOf(MessageType.STATE_CHANGED.intValue(), MessageType.class));
+    }
+    @Test public void valueOfUnknownWithoutDefault() {
+        try {
+            EnumMapper.getInstance().valueOf(42, NoDefaultEnum.class);
+            fail("Unknown value should throw");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
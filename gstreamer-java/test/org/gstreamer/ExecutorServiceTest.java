@@ -22,11 +22,15 @@ package org.gstreamer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.gstreamer.glib.MainContextExecutorService;
 import org.gstreamer.lowlevel.MainLoop;
@@ -160,4 +164,72 @@ public class ExecutorServiceTest {
         exec.run();
         assertTrue("Runnable not called", exec.hasFired());
     }
+    @Test public void scheduledFutureOrdering() {
+        final TestExec exec = new TestExec();
+        Runnable nop = new Runnable() {
+
+            public void run() {
+            }
+        };
+        ScheduledFuture<?> early = exec.exec.schedule(nop, 1, TimeUnit.SECONDS);
+        ScheduledFuture<?> late = exec.exec.schedule(nop, 2, TimeUnit.SECONDS);
+        long delay = early.getDelay(TimeUnit.MILLISECONDS);
+        assertTrue("Wrong delay " + delay, delay > 0 && delay <= 1000);
+        assertTrue("Wrong order", early.compareTo(late) < 0 && late.compareTo(early) > 0);
+        early.cancel(false);
+        late.cancel(false);
+        assertTrue("Not cancelled", early.isCancelled());
+    }
+    @Test public void manyTasks() throws Exception {
+        final MainContextExecutorService exec = new MainContextExecutorService(Gst.getMainContext());
+        final int COUNT = 10000;
+        final CountDownLatch latch = new CountDownLatch(COUNT);
+        for (int i = 0; i < COUNT; ++i) {
+            exec.execute(new Runnable() {
+
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue("Not all tasks run", latch.await(5, TimeUnit.SECONDS));
+        exec.shutdown();
+        assertTrue("Executor not terminated", exec.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue("Executor not terminated", exec.isTerminated());
+    }
+    @Test public void delayedTaskRunsAfterShutdown() throws Exception {
+        final MainContextExecutorService exec = new MainContextExecutorService(Gst.getMainContext());
+        final AtomicLong loopThread = new AtomicLong();
+        exec.submit(new Runnable() {
+
+            public void run() {
+                loopThread.set(Thread.currentThread().getId());
+            }
+        }).get(1, TimeUnit.SECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        exec.schedule(new Runnable() {
+
+            public void run() {
+                latch.countDown();
+            }
+        }, 300, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> periodic = exec.scheduleAtFixedRate(new Runnable() {
+
+            public void run() {
+            }
+        }, 1, 1, TimeUnit.HOURS);
+        exec.shutdown();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        long start = cpuTime ? threads.getThreadCpuTime(loopThread.get()) : 0;
+        assertTrue("Delayed task not run", latch.await(1, TimeUnit.SECONDS));
+        assertTrue("Executor not terminated", exec.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue("Periodic task not cancelled", periodic.isCancelled());
+        if (cpuTime) {
+            // The main loop should have slept until the timer was due, not spun
+            long used = threads.getThreadCpuTime(loopThread.get()) - start;
+            assertTrue("Main loop busy while waiting: " + used + "ns",
+                    used < TimeUnit.MILLISECONDS.toNanos(150));
+        }
+    }
 }
\ No newline at end of file
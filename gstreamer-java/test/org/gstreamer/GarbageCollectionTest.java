@@ -24,6 +24,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.lang.ref.WeakReference;
 
+import org.gstreamer.lowlevel.NativeObject;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -124,6 +125,32 @@ public class GarbageCollectionTest {
         assertTrue("Pipe not destroyed", pipeTracker.waitDestroyed());
     }
     @Test
+    public void signalHandlerReleasedOnDisconnect() {
+        int before = GObject.getConnectedHandlerCount();
+        Element e = ElementFactory.make("fakesrc", "test element");
+        Element.PAD_ADDED listener = new Element.PAD_ADDED() {
+            public void padAdded(Element element, Pad pad) {}
+        };
+        e.connect(listener);
+        assertEquals(before + 1, GObject.getConnectedHandlerCount());
+        e.disconnect(listener);
+        assertEquals(before, GObject.getConnectedHandlerCount());
+    }
+    @Test
+    public void signalHandlerReleasedWithObject() throws Exception {
+        int before = GObject.getConnectedHandlerCount();
+        Element e = ElementFactory.make("fakesrc", "test element");
+        e.connect(new Element.PAD_ADDED() {
+            public void padAdded(Element element, Pad pad) {}
+        });
+        assertEquals(before + 1, GObject.getConnectedHandlerCount());
+        Tracker tracker = new Tracker(e);
+        e = null;
+        assertTrue("Element not garbage collected", tracker.waitGC());
+        assertTrue("GObject not destroyed", tracker.waitDestroyed());
+        assertEquals("Handler not released", before, GObject.getConnectedHandlerCount());
+    }
+    @Test
     public void pipelineBus() {
         Pipeline pipe = new Pipeline("test");
         Bus bus = pipe.getBus();
@@ -157,4 +184,28 @@ public class GarbageCollectionTest {
         assertTrue("Pipe not garbage collected", pipeTracker.waitGC());
         assertTrue("Pipe not destroyed", pipeTracker.waitDestroyed());
     }
+    private static int liveBuffers() {
+        Integer count = NativeObject.getLiveObjectCounts().get(Buffer.class);
+        return count != null ? count : 0;
+    }
+    @Test
+    public void closeBuffer() {
+        int before = liveBuffers();
+        try (Buffer buffer = new Buffer(1024)) {
+            assertEquals("Buffer not counted", before + 1, liveBuffers());
+        }
+        assertEquals("Buffer not released by close", before, liveBuffers());
+    }
+    @Test
+    public void reapBuffer() throws Exception {
+        long reaped = NativeObject.getReapedCount();
+        Buffer buffer = new Buffer(1024);
+        WeakReference<Buffer> ref = new WeakReference<Buffer>(buffer);
+        buffer = null;
+        assertTrue("Buffer not garbage collected", waitGC(ref));
+        for (int i = 0; NativeObject.getReapedCount() == reaped && i < 10; ++i) {
+            Thread.sleep(100);
+        }
+        assertTrue("Buffer not reaped", NativeObject.getReapedCount() > reaped);
+    }
 }
@@ -32,6 +32,7 @@ import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 
 /**
@@ -96,6 +97,13 @@ public class PadTest {
         assertEquals("Could not link pads", PadLinkReturn.OK, srcPad.link(sinkPad));
     }
 
+    @Test
+    public void pushUnlinked() throws Exception {
+        Pad pad = new Pad("src", PadDirection.SRC);
+        assertTrue("Could not activate pad", pad.setActive(true));
+        assertEquals("Push on unlinked pad should fail", FlowReturn.NOT_LINKED, pad.push(new Buffer(16)));
+    }
+
     @Ignore("This seems to fail because gst1.0 doesn't actually send the event because pads " +
     		"are now created in FLUSHING state")
     @Test
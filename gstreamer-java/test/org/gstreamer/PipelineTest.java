@@ -25,6 +25,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.gstreamer.lowlevel.GObjectAPI.GObjectStruct;
 import org.junit.After;
@@ -153,4 +156,28 @@ public class PipelineTest {
         Pipeline pipeline = Pipeline.launch("fakesrc", "fakesink");
         assertEquals("First element not a fakesink", "fakesink", pipeline.getSinks().get(0).getFactory().getName());
     }
+    @Test
+    public void testSetStateAsync() throws Exception {
+        Pipeline pipeline = Pipeline.launch("fakesrc ! fakesink");
+        StateChangeFuture future = pipeline.setStateAsync(State.PAUSED, 5, TimeUnit.SECONDS);
+        assertEquals("Wrong state from future", State.PAUSED, future.get(10, TimeUnit.SECONDS));
+        assertEquals("Pipeline not paused", State.PAUSED, pipeline.getState(0));
+        pipeline.setState(State.NULL);
+    }
+    @Test
+    public void testSetStateAll() throws Exception {
+        List<Pipeline> pipelines = new ArrayList<Pipeline>();
+        for (int i = 0; i < 5; ++i) {
+            pipelines.add(Pipeline.launch("fakesrc ! fakesink"));
+        }
+        List<StateChangeFuture> futures = StateChangeFuture.setStateAll(pipelines, State.PAUSED, 2, 5, TimeUnit.SECONDS);
+        assertEquals("Wrong number of futures", pipelines.size(), futures.size());
+        for (int i = 0; i < futures.size(); ++i) {
+            assertEquals("Wrong state from future", State.PAUSED, futures.get(i).get(10, TimeUnit.SECONDS));
+            assertEquals("Future for wrong pipeline", pipelines.get(i), futures.get(i).getElement());
+        }
+        for (Pipeline pipeline : pipelines) {
+            pipeline.setState(State.NULL);
+        }
+    }
 }
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gstreamer.elements.AppSink;
+import org.gstreamer.elements.AppSrc;
+import org.gstreamer.lowlevel.NativeObject;
+
+/**
+ * Runs several live pipelines side by side in one JVM for a fixed time, and
+ * reports their frame rates and delivery latencies along with the GC time,
+ * live wrapper count and RSS growth of the process.
+ * <p>
+ * Two kinds of pipeline are run: <tt>videotestsrc ! appsink</tt>, and
+ * <tt>audiotestsrc ! appsink</tt> whose buffers are pushed on through
+ * <tt>appsrc ! fakesink</tt>.  The delivery latency of a buffer is the
+ * pipeline running time when it is pulled, less its timestamp.
+ * <p>
+ * It is configured with system properties:
+ * <dl>
+ * <dt>soak.video, soak.audio</dt><dd>the number of pipelines of each kind (2)</dd>
+ * <dt>soak.duration</dt><dd>the measured run time in seconds (60)</dd>
+ * <dt>soak.warmup</dt><dd>seconds to run before measuring (5)</dd>
+ * <dt>soak.output</dt><dd>a file to write the results to, instead of stdout</dd>
+ * <dt>soak.baseline</dt><dd>the results of an earlier run to compare with</dd>
+ * <dt>soak.threshold</dt><dd>how much worse than the baseline a result may
+ * be, as a fraction (0.1)</dd>
+ * </dl>
+ * The results are written as sorted <tt>key=value</tt> lines, which can be
+ * used as the baseline of a later run.  The exit status is 1 if any result
+ * regressed beyond the threshold.
+ */
+public class SoakHarness {
+    private static final String VIDEO = "videotestsrc is-live=true "
+            + "! video/x-raw-yuv, width=320, height=240, framerate=30/1 "
+            + "! appsink name=sink sync=false max-buffers=30";
+    private static final String AUDIO = "audiotestsrc is-live=true samplesperbuffer=441 "
+            + "! appsink name=sink sync=false max-buffers=100";
+    private static final String AUDIO_OUT = "appsrc name=src ! fakesink sync=false";
+
+    /** Results where a larger value is worse, and the smallest change that counts */
+    private static final String[][] WORSE_IF_HIGHER = {
+        { "latency.p99.us", "1000" },
+        { "gc.time.ms", "100" },
+        { "rss.growth.kb", "4096" },
+        { "wrappers.growth", "16" },
+    };
+    /** Results where a smaller value is worse */
+    private static final String[] WORSE_IF_LOWER = { "fps.total" };
+
+    public static void main(String[] args) throws Exception {
+        Gst.init("SoakHarness", args);
+        Map<String, String> results = new SoakHarness().run(
+                Integer.getInteger("soak.video", 2), Integer.getInteger("soak.audio", 2),
+                Integer.getInteger("soak.warmup", 5), Integer.getInteger("soak.duration", 60));
+        write(results, System.getProperty("soak.output"));
+        String baseline = System.getProperty("soak.baseline");
+        if (baseline != null) {
+            double threshold = Double.parseDouble(System.getProperty("soak.threshold", "0.1"));
+            List<String> regressions = compare(results, load(baseline), threshold);
+            for (String r : regressions) {
+                System.err.println("REGRESSION " + r);
+            }
+            System.exit(regressions.isEmpty() ? 0 : 1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the pipelines and gathers the results.
+     *
+     * @return the results, by name.
+     */
+    public Map<String, String> run(int video, int audio, int warmupSeconds, int durationSeconds)
+            throws InterruptedException {
+        List<Stream> streams = new ArrayList<Stream>();
+        for (int i = 0; i < video; ++i) {
+            streams.add(new Stream("video-" + i, VIDEO, null));
+        }
+        for (int i = 0; i < audio; ++i) {
+            streams.add(new Stream("audio-" + i, AUDIO, AUDIO_OUT));
+        }
+        for (Stream s : streams) {
+            s.start();
+        }
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+
+        long wrappersStart = settledWrappers();
+        long rssStart = rssKB();
+        long gcTimeStart = gcTime(), gcCountStart = gcCount();
+        long start = System.nanoTime();
+        for (Stream s : streams) {
+            s.measuring = true;
+        }
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        for (Stream s : streams) {
+            s.measuring = false;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long gcTime = gcTime() - gcTimeStart, gcCount = gcCount() - gcCountStart;
+        long rssEnd = rssKB();
+        long wrappersEnd = settledWrappers();
+
+        Map<String, String> results = new TreeMap<String, String>();
+        Histogram all = new Histogram();
+        long frames = 0;
+        for (Stream s : streams) {
+            s.stop();
+            frames += s.frames;
+            all.add(s.latency);
+            results.put("pipeline." + s.name + ".fps", format(s.frames / seconds));
+            results.put("pipeline." + s.name + ".latency.p50.us", Long.toString(s.latency.percentile(0.5)));
+            results.put("pipeline." + s.name + ".latency.p99.us", Long.toString(s.latency.percentile(0.99)));
+            results.put("pipeline." + s.name + ".errors", Long.toString(s.errors.get()));
+        }
+        streams.clear();
+
+        results.put("pipelines", Integer.toString(video + audio));
+        results.put("duration.s", format(seconds));
+        results.put("fps.total", format(frames / seconds));
+        results.put("latency.p50.us", Long.toString(all.percentile(0.5)));
+        results.put("latency.p99.us", Long.toString(all.percentile(0.99)));
+        results.put("gc.time.ms", Long.toString(gcTime));
+        results.put("gc.count", Long.toString(gcCount));
+        results.put("wrappers.start", Long.toString(wrappersStart));
+        results.put("wrappers.end", Long.toString(wrappersEnd));
+        results.put("wrappers.growth", Long.toString(wrappersEnd - wrappersStart));
+        if (rssStart >= 0 && rssEnd >= 0) {
+            results.put("rss.start.kb", Long.toString(rssStart));
+            results.put("rss.end.kb", Long.toString(rssEnd));
+            results.put("rss.growth.kb", Long.toString(rssEnd - rssStart));
+        }
+        return results;
+    }
+
+    /**
+     * Compares results with a baseline.
+     *
+     * @return a description of every result worse than the baseline by more
+     * than <tt>threshold</tt>.
+     */
+    static List<String> compare(Map<String, String> results, Properties baseline, double threshold) {
+        List<String> regressions = new ArrayList<String>();
+        for (String[] check : WORSE_IF_HIGHER) {
+            String key = check[0];
+            if (!results.containsKey(key) || baseline.getProperty(key) == null) {
+                continue;
+            }
+            double now = Double.parseDouble(results.get(key));
+            double then = Double.parseDouble(baseline.getProperty(key));
+            double limit = then + Math.max(Math.abs(then) * threshold, Double.parseDouble(check[1]));
+            if (now > limit) {
+                regressions.add(key + " " + now + " > " + format(limit) + " (baseline " + then + ")");
+            }
+        }
+        for (String key : WORSE_IF_LOWER) {
+            if (!results.containsKey(key) || baseline.getProperty(key) == null) {
+                continue;
+            }
+            double now = Double.parseDouble(results.get(key));
+            double then = Double.parseDouble(baseline.getProperty(key));
+            double limit = then * (1 - threshold);
+            if (now < limit) {
+                regressions.add(key + " " + now + " < " + format(limit) + " (baseline " + then + ")");
+            }
+        }
+        return regressions;
+    }
+
+    private static void write(Map<String, String> results, String file) throws IOException {
+        PrintWriter out = file != null
+                ? new PrintWriter(new FileWriter(file))
+                : new PrintWriter(System.out, true);
+        for (Map.Entry<String, String> e : results.entrySet()) {
+            out.println(e.getKey() + "=" + e.getValue());
+        }
+        out.flush();
+        if (file != null) {
+            out.close();
+        }
+    }
+
+    private static Properties load(String file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        return props;
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+
+    private static long liveWrappers() {
+        long count = 0;
+        for (Integer n : NativeObject.getLiveObjectCounts().values()) {
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the live wrappers once garbage has been collected and reaped.
+     * Taken while the pipelines are running, so wrappers leaked per buffer
+     * show up as growth between the start and end of the run.
+     */
+    private static long settledWrappers() throws InterruptedException {
+        long count = liveWrappers();
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(100);
+            long n = liveWrappers();
+            if (n == count) {
+                break;
+            }
+            count = n;
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Gets the resident set size of this process, where /proc is available.
+     *
+     * @return the RSS in kB, or -1 if it is not known.
+     */
+    private static long rssKB() {
+        try {
+            BufferedReader in = new BufferedReader(new FileReader("/proc/self/status"));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+        } catch (NumberFormatException ex) {
+        }
+        return -1;
+    }
+
+    /**
+     * One pipeline, and the thread pulling buffers out of it.
+     */
+    private static final class Stream implements Runnable {
+        final String name;
+        final Pipeline pipe;
+        final AppSink sink;
+        final Pipeline outPipe;
+        final AppSrc out;
+        final Histogram latency = new Histogram();
+        final Thread thread;
+        final AtomicLong errors = new AtomicLong();
+        volatile boolean measuring = false;
+        long frames = 0;
+
+        Stream(String name, String description, String outDescription) {
+            this.name = name;
+            pipe = Pipeline.launch(description);
+            sink = (AppSink) pipe.getElementByName("sink");
+            if (outDescription != null) {
+                outPipe = Pipeline.launch(outDescription);
+                out = (AppSrc) outPipe.getElementByName("src");
+            } else {
+                outPipe = null;
+                out = null;
+            }
+            thread = new Thread(this, "soak " + name);
+            Bus.ERROR onError = new Bus.ERROR() {
+                public void errorMessage(GstObject source, int code, String message) {
+                    errors.incrementAndGet();
+                }
+            };
+            pipe.getBus().connect(onError);
+            if (outPipe != null) {
+                outPipe.getBus().connect(onError);
+            }
+        }
+
+        void start() {
+            if (outPipe != null) {
+                outPipe.play();
+            }
+            pipe.play();
+            pipe.getState(5, TimeUnit.SECONDS);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            pipe.stop();
+            thread.join();
+            if (outPipe != null) {
+                outPipe.stop();
+            }
+            pipe.dispose();
+            if (outPipe != null) {
+                outPipe.dispose();
+            }
+        }
+
+        public void run() {
+            Clock clock = pipe.getClock();
+            long baseTime = pipe.getBaseTime().convertTo(TimeUnit.NANOSECONDS);
+            Buffer buffer;
+            while ((buffer = sink.pullBuffer()) != null) {
+                if (measuring) {
+                    ClockTime timestamp = buffer.getTimestamp();
+                    if (clock != null && timestamp.isValid()) {
+                        long now = clock.getTime().convertTo(TimeUnit.NANOSECONDS) - baseTime;
+                        long ts = timestamp.convertTo(TimeUnit.NANOSECONDS);
+                        latency.record(Math.max(0, now - ts) / 1000);
+                    }
+                    ++frames;
+                }
+                if (out != null) {
+                    out.pushBuffer(buffer);
+                } else {
+                    buffer.dispose();
+                }
+            }
+            if (measuring) {
+                // The stream ended while it should still be running
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A histogram with 16 linear sub-buckets per power of two, so percentiles
+     * are within about 6% of the recorded value.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+        private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+        private long total = 0;
+
+        void record(long value) {
+            counts[index(value)]++;
+            ++total;
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; ++i) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+        }
+
+        long percentile(double p) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * total), seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return lowerBound(i);
+                }
+            }
+            return lowerBound(counts.length - 1);
+        }
+
+        private static int index(long value) {
+            if (value < SUB) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        private static long lowerBound(int index) {
+            int bucket = index / SUB, sub = index % SUB;
+            if (bucket == 0) {
+                return sub;
+            }
+            return (long) (SUB + sub) << (bucket - 1);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Gst;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.GstMiniObjectAPI.MiniObjectStruct;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.jna.Pointer;
+
+public class AppSinkTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("AppSinkTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    private static int pullUntilEOS(AppSink sink, BufferBatch batch) {
+        int total = 0;
+        int count;
+        while ((count = sink.pullBuffers(batch, 5, TimeUnit.SECONDS)) > 0 || !sink.isEOS()) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Test(timeout = 20000)
+    public void pullBuffersGetsEveryBuffer() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=50 sizetype=2 sizemax=16 ! appsink name=sink sync=false");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        BufferBatch batch = new BufferBatch(8);
+        sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+        pipe.play();
+        assertEquals(50, pullUntilEOS(sink, batch));
+        assertFalse("Signals turned on", (Boolean) sink.get("emit-signals"));
+        pipe.setState(State.NULL);
+    }
+
+    @Test(timeout = 20000)
+    public void pullBufferSharesQueueWithPullBuffers() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=40 sizetype=2 sizemax=16 ! appsink name=sink sync=false max-buffers=4");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        BufferBatch batch = new BufferBatch(4);
+        sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+        pipe.play();
+        int total = 0;
+        while (true) {
+            Buffer buffer = sink.pullBuffer();
+            if (buffer == null) {
+                break;
+            }
+            ++total;
+            buffer.dispose();
+            int count = sink.pullBuffers(batch, 5, TimeUnit.SECONDS);
+            if (count == 0 && sink.isEOS()) {
+                break;
+            }
+            total += count;
+        }
+        assertEquals(40, total);
+        pipe.setState(State.NULL);
+    }
+
+    @Test(timeout = 20000)
+    public void flushedBuffersAreNotWaitedFor() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=20 sizetype=2 sizemax=16 ! appsink name=sink sync=false max-buffers=5");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        BufferBatch batch = new BufferBatch(1);
+        sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+        pipe.play();
+        assertEquals(1, sink.pullBuffers(batch, 5, TimeUnit.SECONDS));
+        // Drops the buffers still queued in the sink, and restarts the stream
+        pipe.setState(State.READY);
+        pipe.play();
+        batch = new BufferBatch(20);
+        assertEquals(20, pullUntilEOS(sink, batch));
+        pipe.setState(State.NULL);
+    }
+
+    @Test(timeout = 20000)
+    public void droppedBuffersAreNotWaitedFor() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=30 sizetype=2 sizemax=16 ! appsink name=sink sync=false max-buffers=2 drop=true");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        BufferBatch batch = new BufferBatch(8);
+        sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+        pipe.play();
+        while (!sink.isEOS()) {
+            sink.pullBuffers(batch, 100, TimeUnit.MILLISECONDS);
+        }
+        // Only the newest buffers are kept, and the rest are not pulled for
+        assertEquals(0, sink.pullBuffers(batch, 0, TimeUnit.SECONDS));
+        assertTrue(sink.isEOS());
+        pipe.setState(State.NULL);
+    }
+
+    @Test(timeout = 20000)
+    public void pausedBuffersArePulledAfterResume() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=30 sizetype=2 sizemax=16 ! appsink name=sink sync=false max-buffers=3");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        BufferBatch batch = new BufferBatch(1);
+        sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+        pipe.play();
+        int total = sink.pullBuffers(batch, 5, TimeUnit.SECONDS);
+        // Re-prerolls without a flush, so nothing queued is lost
+        pipe.pause();
+        pipe.getState();
+        pipe.play();
+        assertEquals(30, total + pullUntilEOS(sink, batch));
+        assertTrue(sink.isEOS());
+        pipe.setState(State.NULL);
+    }
+
+    @Test(timeout = 20000)
+    public void connectedSignalsStillFire() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=10 sizetype=2 sizemax=16 ! appsink name=sink sync=false emit-signals=true");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        final AtomicInteger newBuffers = new AtomicInteger();
+        final AtomicInteger eos = new AtomicInteger();
+        sink.connect(new AppSink.NEW_BUFFER() {
+            public void newBuffer(AppSink elem) {
+                newBuffers.incrementAndGet();
+            }
+        });
+        sink.connect(new AppSink.EOS() {
+            public void eos(AppSink elem) {
+                eos.incrementAndGet();
+            }
+        });
+        BufferBatch batch = new BufferBatch(4);
+        sink.pullBuffers(batch, 0, TimeUnit.SECONDS);
+        pipe.play();
+        assertEquals(10, pullUntilEOS(sink, batch));
+        assertEquals(10, newBuffers.get());
+        assertEquals(1, eos.get());
+        pipe.setState(State.NULL);
+    }
+
+    @Test
+    public void timesOutWhenNothingQueued() {
+        Pipeline pipe = Pipeline.launch("fakesrc num-buffers=1 ! appsink name=sink");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        BufferBatch batch = new BufferBatch(1);
+        assertEquals(0, sink.pullBuffers(batch, 10, TimeUnit.MILLISECONDS));
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void releaseDropsEveryReference() {
+        BufferBatch batch = new BufferBatch(4);
+        Buffer[] buffers = new Buffer[3];
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = new Buffer(16);
+            batch.add(GstDirectAPI.gst_mini_object_ref(buffers[i].getNativeAddress()));
+        }
+        assertEquals(3, batch.size());
+        assertEquals(buffers[1].getNativeAddress(), batch.get(1).getNativeAddress());
+        batch.release();
+        assertTrue(batch.isEmpty());
+        for (Buffer buffer : buffers) {
+            Pointer ptr = buffer.getNativeAddress();
+            assertEquals(1, ptr.getInt(MiniObjectStruct.offsetOf("refcount")));
+        }
+
+        // The batch can be filled again after release
+        batch.add(GstDirectAPI.gst_mini_object_ref(buffers[0].getNativeAddress()));
+        assertEquals(1, batch.size());
+        batch.close();
+        assertEquals(1, buffers[0].getNativeAddress().getInt(MiniObjectStruct.offsetOf("refcount")));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Caps;
+import org.gstreamer.ElementFactory;
+import org.gstreamer.Gst;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.gstreamer.elements.AppSrcProducer.OfferMode;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AppSrcProducerTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("AppSrcProducerTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    private static AppSrc newSrc() {
+        return (AppSrc) ElementFactory.make("appsrc", null);
+    }
+
+    @Test
+    public void claimedBufferHasNoMetadata() {
+        AppSrcProducer producer = new AppSrcProducer(newSrc(), 1, 64);
+        Buffer buffer = producer.claim(OfferMode.NON_BLOCKING);
+        assertTrue("Claimed buffer not writable", buffer.isWritable());
+        buffer.setTimestampNanos(1000);
+        buffer.setDurationNanos(10);
+        buffer.setOffset(5);
+        buffer.setFlags(1 << 6);
+        buffer.setCaps(Caps.fromString("video/x-raw-rgb"));
+        producer.cancel(buffer);
+
+        buffer = producer.claim(OfferMode.NON_BLOCKING);
+        assertNotNull("Cancelled buffer not released", buffer);
+        assertEquals(64, buffer.getSize());
+        assertEquals(-1, buffer.getTimestampNanos());
+        assertEquals(-1, buffer.getDurationNanos());
+        assertEquals(-1, buffer.getOffset());
+        assertEquals(0, buffer.getFlags());
+        assertNull(buffer.getCaps());
+        producer.cancel(buffer);
+        producer.dispose();
+    }
+
+    @Test
+    public void offerSetsBufferSize() {
+        Pipeline pipe = Pipeline.launch("appsrc name=src ! appsink name=sink sync=false");
+        AppSrc src = (AppSrc) pipe.getElementByName("src");
+        AppSink sink = (AppSink) pipe.getElementByName("sink");
+        AppSrcProducer producer = new AppSrcProducer(src, 2, 64);
+        pipe.play();
+        ByteBuffer data = ByteBuffer.allocate(64);
+        data.put(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }).flip();
+        assertTrue(producer.offer(data, OfferMode.BLOCK));
+        Buffer buffer = sink.pullBuffer();
+        assertEquals(10, buffer.getSize());
+        assertEquals(10, buffer.getByteBuffer().get(9));
+        buffer.dispose();
+        pipe.setState(State.NULL);
+        producer.dispose();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offerRejectsOversizedData() {
+        AppSrcProducer producer = new AppSrcProducer(newSrc(), 1, 16);
+        producer.offer(ByteBuffer.allocate(17), OfferMode.NON_BLOCKING);
+    }
+
+    @Test
+    public void dropOldestReusesQueuedBuffer() {
+        AppSrcProducer producer = new AppSrcProducer(newSrc(), 1, 16);
+        Buffer buffer = producer.claim(OfferMode.NON_BLOCKING);
+        buffer.setTimestampNanos(1000);
+        // Not playing, so the buffer stays queued
+        producer.commit(buffer);
+        assertNull(producer.claim(OfferMode.NON_BLOCKING));
+        buffer = producer.claim(OfferMode.DROP_OLDEST);
+        assertNotNull(buffer);
+        assertEquals(-1, buffer.getTimestampNanos());
+        assertEquals(1, producer.getDroppedCount());
+        assertEquals(0, producer.getFillLevel());
+        producer.cancel(buffer);
+        producer.dispose();
+    }
+
+    @Test
+    public void blockTimesOut() {
+        AppSrcProducer producer = new AppSrcProducer(newSrc(), 1, 16);
+        Buffer buffer = producer.claim(OfferMode.NON_BLOCKING);
+        assertNull(producer.claim(OfferMode.BLOCK, 10, TimeUnit.MILLISECONDS));
+        assertEquals(1, producer.getRejectedCount());
+        producer.cancel(buffer);
+        producer.dispose();
+    }
+
+    @Test
+    public void blockWakesOnRelease() throws Exception {
+        final AppSrcProducer producer = new AppSrcProducer(newSrc(), 1, 16);
+        Buffer buffer = producer.claim(OfferMode.NON_BLOCKING);
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            Future<Buffer> waiter = exec.submit(new Callable<Buffer>() {
+                public Buffer call() {
+                    return producer.claim(OfferMode.BLOCK, 10, TimeUnit.SECONDS);
+                }
+            });
+            Thread.sleep(50);
+            long start = System.nanoTime();
+            producer.cancel(buffer);
+            Buffer claimed = waiter.get(5, TimeUnit.SECONDS);
+            assertNotNull("Waiter not given the released buffer", claimed);
+            assertTrue("Waiter not woken by the release",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            producer.cancel(claimed);
+        } finally {
+            exec.shutdown();
+        }
+        producer.dispose();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Caps;
+import org.gstreamer.Gst;
+import org.gstreamer.lowlevel.GstDirectAPI;
+import org.gstreamer.lowlevel.GstMiniObjectAPI.MiniObjectStruct;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.jna.Pointer;
+
+public class BufferPoolTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("BufferPoolTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    @Test
+    public void acquiredBufferIsWritable() {
+        BufferPool pool = new BufferPool();
+        Buffer buf = pool.acquire(64);
+        assertEquals(64, buf.getSize());
+        assertEquals(64, buf.getByteBuffer().capacity());
+        assertTrue("Pooled buffer not writable", buf.isWritable());
+        pool.recycle(buf);
+    }
+
+    @Test
+    public void handOffGivesOnlyReference() {
+        BufferPool pool = new BufferPool();
+        Pointer ptr = pool.handOff(pool.acquire(64));
+        assertEquals(1, ptr.getInt(MiniObjectStruct.offsetOf("refcount")));
+        GstDirectAPI.gst_mini_object_unref(ptr);
+    }
+
+    @Test
+    public void memoryReusedAfterLastUnref() {
+        BufferPool pool = new BufferPool();
+        Buffer buf = pool.acquire(64);
+        buf.setTimestampNanos(1000);
+        buf.setFlags(1 << 6);
+        buf.setCaps(Caps.fromString("video/x-raw-rgb"));
+        Pointer ptr = pool.handOff(buf);
+        assertEquals(0, pool.getReusedCount());
+        GstDirectAPI.gst_mini_object_unref(ptr);
+
+        Buffer reused = pool.acquire(64);
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals("Metadata not reset", -1, reused.getTimestampNanos());
+        assertEquals("Flags not reset", 0, reused.getFlags());
+        assertNull("Caps not reset", reused.getCaps());
+        pool.recycle(reused);
+    }
+
+    @Test
+    public void unpooledWhenAllInUse() {
+        BufferPool pool = new BufferPool(1);
+        Buffer first = pool.acquire(64);
+        Buffer second = pool.acquire(64);
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals(1, pool.getUnpooledCount());
+        pool.recycle(first);
+        pool.recycle(second);
+        pool.recycle(pool.acquire(64));
+        assertEquals(1, pool.getReusedCount());
+    }
+}
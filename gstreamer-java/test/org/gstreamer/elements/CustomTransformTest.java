@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Element;
+import org.gstreamer.ElementFactory;
+import org.gstreamer.FlowReturn;
+import org.gstreamer.Gst;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CustomTransformTest {
+    private static final int SIZE = 16;
+    // GST_BUFFER_FLAG_DELTA_UNIT
+    private static final int DELTA_UNIT = 1 << 8;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("CustomTransformTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    public static class InvertInPlace extends CustomTransform {
+        final AtomicInteger calls = new AtomicInteger();
+
+        public InvertInPlace(String name) {
+            super(InvertInPlace.class, name);
+        }
+
+        @Override
+        protected FlowReturn transformIp(Buffer buffer) {
+            calls.incrementAndGet();
+            ByteBuffer data = buffer.getByteBuffer();
+            for (int i = 0; i < data.limit(); ++i) {
+                data.put(i, (byte) ~data.get(i));
+            }
+            return FlowReturn.OK;
+        }
+    }
+
+    public static class InvertCopy extends CustomTransform {
+        final AtomicInteger calls = new AtomicInteger();
+
+        public InvertCopy(String name) {
+            super(InvertCopy.class, name);
+        }
+
+        @Override
+        protected FlowReturn transform(Buffer inbuf, Buffer outbuf) {
+            calls.incrementAndGet();
+            ByteBuffer in = inbuf.getByteBuffer(), out = outbuf.getByteBuffer();
+            for (int i = 0; i < in.limit(); ++i) {
+                out.put(i, (byte) ~in.get(i));
+            }
+            return FlowReturn.OK;
+        }
+
+        void usePool(BufferPool pool) {
+            setBufferPool(pool);
+        }
+    }
+
+    @CustomTransform.Passthrough
+    public static class Observer extends CustomTransform {
+        final AtomicInteger observed = new AtomicInteger();
+        final AtomicInteger transformed = new AtomicInteger();
+
+        public Observer(String name) {
+            super(Observer.class, name);
+        }
+
+        @Override
+        protected FlowReturn transform(Buffer inbuf, Buffer outbuf) {
+            transformed.incrementAndGet();
+            return FlowReturn.OK;
+        }
+
+        @Override
+        protected FlowReturn transformIp(Buffer buffer) {
+            observed.incrementAndGet();
+            return FlowReturn.OK;
+        }
+    }
+
+    private static Buffer newInput() {
+        Buffer buffer = new Buffer(SIZE);
+        ByteBuffer data = buffer.getByteBuffer();
+        for (int i = 0; i < SIZE; ++i) {
+            data.put(i, (byte) i);
+        }
+        buffer.setTimestampNanos(1000);
+        buffer.setDurationNanos(40);
+        buffer.setOffset(7);
+        buffer.setFlags(buffer.getFlags() | DELTA_UNIT);
+        return buffer;
+    }
+
+    /**
+     * Pushes one buffer through <tt>filter</tt>, and returns what comes out.
+     */
+    private static Buffer runOne(Element filter) {
+        Pipeline pipe = new Pipeline("test");
+        AppSrc src = (AppSrc) ElementFactory.make("appsrc", "src");
+        AppSink sink = (AppSink) ElementFactory.make("appsink", "sink");
+        sink.set("sync", false);
+        pipe.addMany(src, filter, sink);
+        assertTrue(Element.linkMany(src, filter, sink));
+        pipe.play();
+        src.pushBuffer(newInput());
+        src.endOfStream();
+        Buffer output = sink.pullBuffer();
+        pipe.setState(State.NULL);
+        return output;
+    }
+
+    private static void assertInverted(Buffer output) {
+        ByteBuffer data = output.getByteBuffer();
+        assertEquals(SIZE, output.getSize());
+        for (int i = 0; i < SIZE; ++i) {
+            assertEquals((byte) ~i, data.get(i));
+        }
+    }
+
+    @Test
+    public void inPlaceModifiesBuffer() {
+        InvertInPlace filter = new InvertInPlace("invert");
+        Buffer output = runOne(filter);
+        assertEquals(1, filter.calls.get());
+        assertInverted(output);
+        assertEquals(1000, output.getTimestampNanos());
+    }
+
+    @Test
+    public void transformCopiesMetadata() {
+        InvertCopy filter = new InvertCopy("invert");
+        assertNull("Pool not opt-in", filter.getBufferPool());
+        Buffer output = runOne(filter);
+        assertEquals(1, filter.calls.get());
+        assertInverted(output);
+        assertEquals(1000, output.getTimestampNanos());
+        assertEquals(40, output.getDurationNanos());
+        assertEquals(7, output.getOffset());
+        assertTrue("Flags not copied", (output.getFlags() & DELTA_UNIT) != 0);
+    }
+
+    @Test
+    public void transformWithPool() {
+        InvertCopy filter = new InvertCopy("invert");
+        BufferPool pool = new BufferPool();
+        filter.usePool(pool);
+        Buffer output = runOne(filter);
+        assertInverted(output);
+        assertTrue("Flags not copied", (output.getFlags() & DELTA_UNIT) != 0);
+        assertEquals(1, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void passthroughPushesInput() {
+        Observer filter = new Observer("observer");
+        assertTrue(filter.isPassthrough());
+        Buffer output = runOne(filter);
+        assertEquals(1, filter.observed.get());
+        assertEquals("transform called in passthrough", 0, filter.transformed.get());
+        ByteBuffer data = output.getByteBuffer();
+        for (int i = 0; i < SIZE; ++i) {
+            assertEquals((byte) i, data.get(i));
+        }
+        assertEquals(1000, output.getTimestampNanos());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.elements;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.Gst;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RGBFramePoolTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("RGBFramePoolTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new RGBFramePool(0, false);
+    }
+
+    @Test
+    public void dropsWhenAllFramesLeased() {
+        RGBFramePool pool = new RGBFramePool(2, false);
+        RGBFramePool.Frame a = pool.acquire(4, 2);
+        RGBFramePool.Frame b = pool.acquire(4, 2);
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNull("Frame allocated past capacity", pool.acquire(4, 2));
+        assertEquals(1, pool.getDroppedCount());
+        a.release();
+        assertSame("Released frame not reused", a, pool.acquire(4, 2));
+        assertEquals(1, pool.getDroppedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease() {
+        RGBFramePool pool = new RGBFramePool(1, false);
+        RGBFramePool.Frame frame = pool.acquire(2, 2);
+        frame.release();
+        frame.release();
+    }
+
+    @Test
+    public void resizeDiscardsStaleFrames() {
+        RGBFramePool pool = new RGBFramePool(1, false);
+        RGBFramePool.Frame small = pool.acquire(2, 2);
+        small.release();
+        RGBFramePool.Frame large = pool.acquire(4, 4);
+        assertNotNull("Free stale frame still counted against capacity", large);
+        assertNotSame(small, large);
+        assertEquals(4, large.getWidth());
+        assertEquals(16, large.getBuffer().capacity());
+        large.release();
+
+        // A frame leased across a resize is dropped when it comes back
+        RGBFramePool.Frame leased = pool.acquire(4, 4);
+        RGBFramePool.Frame resized = pool.acquire(8, 8);
+        assertNull("Leased frame not counted against capacity", resized);
+        leased.release();
+        resized = pool.acquire(8, 8);
+        assertNotNull(resized);
+        assertEquals(64, resized.getBuffer().capacity());
+    }
+
+    @Test
+    public void copyHeapFrame() {
+        copy(false);
+    }
+
+    @Test
+    public void copyDirectFrame() {
+        copy(true);
+    }
+
+    private static void copy(boolean direct) {
+        RGBFramePool pool = new RGBFramePool(1, direct);
+        RGBFramePool.Frame frame = pool.acquire(4, 2);
+        Buffer buffer = new Buffer(4 * 2 * 4);
+        IntBuffer pixels = buffer.getByteBuffer().order(ByteOrder.nativeOrder()).asIntBuffer();
+        for (int i = 0; i < 8; ++i) {
+            pixels.put(i, 0x10203 * (i + 1));
+        }
+        RGBFramePool.copy(buffer, frame);
+        IntBuffer rgb = frame.getBuffer();
+        assertEquals(direct, rgb.isDirect());
+        assertEquals(8, rgb.remaining());
+        for (int i = 0; i < 8; ++i) {
+            assertEquals(0x10203 * (i + 1), rgb.get(i));
+        }
+        frame.release();
+        buffer.dispose();
+    }
+
+    @Test
+    public void copyClampsToFrameSize() {
+        RGBFramePool pool = new RGBFramePool(1, true);
+        RGBFramePool.Frame frame = pool.acquire(2, 1);
+        Buffer buffer = new Buffer(16);
+        ByteBuffer bytes = buffer.getByteBuffer();
+        for (int i = 0; i < 16; ++i) {
+            bytes.put(i, (byte) i);
+        }
+        RGBFramePool.copy(buffer, frame);
+        assertEquals(2, frame.getBuffer().remaining());
+        assertEquals(bytes.order(ByteOrder.nativeOrder()).getInt(4), frame.getBuffer().get(1));
+        frame.release();
+        buffer.dispose();
+    }
+}
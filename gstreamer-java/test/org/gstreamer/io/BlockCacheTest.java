@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BlockCacheTest {
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * A read-only channel over a byte array.
+     */
+    private static class ByteArrayChannel implements SeekableByteChannel {
+        final byte[] data;
+        int position = 0;
+
+        ByteArrayChannel(byte[] data) {
+            this.data = data;
+        }
+
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= data.length) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), data.length - position);
+            dst.put(data, position, n);
+            position += n;
+            return n;
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            throw new IOException("Read only");
+        }
+
+        public long position() {
+            return position;
+        }
+
+        public SeekableByteChannel position(long newPosition) {
+            position = (int) newPosition;
+            return this;
+        }
+
+        public long size() {
+            return data.length;
+        }
+
+        public SeekableByteChannel truncate(long size) throws IOException {
+            throw new IOException("Read only");
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    /**
+     * A byte array channel that also does scattering reads, and counts them.
+     */
+    private static class ScatteringArrayChannel extends ByteArrayChannel implements ScatteringByteChannel {
+        int reads = 0;
+
+        ScatteringArrayChannel(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ++reads;
+            return super.read(dst);
+        }
+
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            ++reads;
+            if (position >= data.length) {
+                return -1;
+            }
+            long total = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                int n = Math.min(dsts[i].remaining(), data.length - position);
+                dsts[i].put(data, position, n);
+                position += n;
+                total += n;
+            }
+            return total;
+        }
+
+        public long read(ByteBuffer[] dsts) throws IOException {
+            return read(dsts, 0, dsts.length);
+        }
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static void assertRead(byte[] expected, BlockCache cache, long position, int length) throws IOException {
+        ByteBuffer dst = ByteBuffer.allocate(length);
+        int n = cache.read(position, dst);
+        assertEquals("Wrong length read at " + position,
+                Math.min(length, expected.length - (int) position), n);
+        for (int i = 0; i < n; ++i) {
+            assertEquals("Wrong data at " + (position + i), expected[(int) position + i], dst.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blockSizeNotPowerOf2() {
+        new BlockCache(new ByteArrayChannel(new byte[0]), 1000, 4, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cacheSizeOverflows() {
+        new BlockCache(new ByteArrayChannel(new byte[0]), 1 << 20, 1 << 12, 0);
+    }
+
+    @Test
+    public void readsAcrossBlocks() throws IOException {
+        byte[] data = randomData(8 * BLOCK_SIZE);
+        BlockCache cache = new BlockCache(new ByteArrayChannel(data), BLOCK_SIZE, 4, 0);
+        assertRead(data, cache, 0, 3 * BLOCK_SIZE);
+        assertRead(data, cache, BLOCK_SIZE - 10, 20);
+        assertRead(data, cache, 5 * BLOCK_SIZE + 100, 2 * BLOCK_SIZE);
+    }
+
+    @Test
+    public void leastRecentlyUsedBlockEvicted() throws IOException {
+        byte[] data = randomData(4 * BLOCK_SIZE);
+        BlockCache cache = new BlockCache(new ByteArrayChannel(data), BLOCK_SIZE, 2, 0);
+        assertRead(data, cache, 0, 1);
+        assertRead(data, cache, BLOCK_SIZE, 1);
+        assertRead(data, cache, 0, 1);
+        assertEquals(1, cache.getHitCount());
+        // Block 1 is now the least recently used, so block 2 replaces it
+        assertRead(data, cache, 2 * BLOCK_SIZE, 1);
+        assertRead(data, cache, 0, 1);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertRead(data, cache, BLOCK_SIZE, 1);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void sequentialReadLoadsAhead() throws IOException {
+        final int blocks = 16;
+        byte[] data = randomData(blocks * BLOCK_SIZE);
+        BlockCache cache = new BlockCache(new ByteArrayChannel(data), BLOCK_SIZE, 8, 4);
+        for (int i = 0; i < blocks; ++i) {
+            assertRead(data, cache, i * BLOCK_SIZE, BLOCK_SIZE);
+        }
+        assertTrue("No blocks read ahead", cache.getReadAheadCount() > 0);
+        assertEquals(blocks, cache.getHitCount() + cache.getMissCount());
+        assertTrue("Too many misses: " + cache.getMissCount(), cache.getMissCount() < blocks / 2);
+
+        // A random read does not trigger read-ahead
+        long readAhead = cache.getReadAheadCount();
+        cache.clear();
+        assertRead(data, cache, 9 * BLOCK_SIZE, 1);
+        assertEquals(readAhead, cache.getReadAheadCount());
+    }
+
+    @Test
+    public void readAheadRunIsOneScatteringRead() throws IOException {
+        byte[] data = randomData(16 * BLOCK_SIZE);
+        ScatteringArrayChannel channel = new ScatteringArrayChannel(data);
+        BlockCache cache = new BlockCache(channel, BLOCK_SIZE, 8, 4);
+        assertRead(data, cache, 0, BLOCK_SIZE);
+        assertRead(data, cache, BLOCK_SIZE, BLOCK_SIZE);
+        assertEquals(2, channel.reads);
+        // The second sequential miss loads the block and one ahead in one read
+        assertEquals(1, cache.getReadAheadCount());
+        assertRead(data, cache, 2 * BLOCK_SIZE, BLOCK_SIZE);
+        assertEquals(2, channel.reads);
+    }
+
+    @Test
+    public void randomReadsThroughEvictions() throws IOException {
+        byte[] data = randomData(64 * BLOCK_SIZE + 100);
+        BlockCache cache = new BlockCache(new ByteArrayChannel(data), BLOCK_SIZE, 5, 2);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; ++i) {
+            long position = random.nextInt(data.length);
+            int length = 1 + random.nextInt(3 * BLOCK_SIZE);
+            if (random.nextInt(4) == 0) {
+                // Runs of sequential misses, to mix in read-ahead
+                position = (position & ~(BLOCK_SIZE - 1));
+                for (int b = 0; b < 4 && position < data.length; ++b, position += BLOCK_SIZE) {
+                    assertRead(data, cache, position, BLOCK_SIZE);
+                }
+            } else {
+                assertRead(data, cache, position, length);
+            }
+        }
+        assertTrue("No hits", cache.getHitCount() > 0);
+    }
+
+    @Test
+    public void shortLastBlock() throws IOException {
+        byte[] data = randomData(2 * BLOCK_SIZE + BLOCK_SIZE / 2);
+        BlockCache cache = new BlockCache(new ByteArrayChannel(data), BLOCK_SIZE, 4, 2);
+        assertRead(data, cache, 2 * BLOCK_SIZE - 10, BLOCK_SIZE);
+        assertRead(data, cache, 2 * BLOCK_SIZE + 10, BLOCK_SIZE);
+        assertEquals("Read past the end", -1, cache.read(data.length, ByteBuffer.allocate(10)));
+        assertEquals(0, cache.read(data.length, ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void clearDropsBlocks() throws IOException {
+        byte[] data = randomData(2 * BLOCK_SIZE);
+        BlockCache cache = new BlockCache(new ByteArrayChannel(data), BLOCK_SIZE, 2, 0);
+        assertRead(data, cache, 0, 10);
+        assertRead(data, cache, 0, 10);
+        assertEquals(1, cache.getHitCount());
+
+        // Changed contents are only seen once the cache is cleared
+        data[0] = (byte) ~data[0];
+        ByteBuffer dst = ByteBuffer.allocate(1);
+        cache.read(0, dst);
+        assertEquals((byte) ~data[0], dst.get(0));
+        cache.clear();
+        assertRead(data, cache, 0, 10);
+        assertEquals(2, cache.getMissCount());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.gstreamer.Bus;
+import org.gstreamer.Gst;
+import org.gstreamer.GstObject;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MappedFileSrcTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("MappedFileSrcTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    private static File createFile(byte[] data) throws Exception {
+        File file = File.createTempFile("MappedFileSrcTest", null);
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Plays the file through the source into a byte array, and returns what
+     * was read.
+     */
+    private static byte[] readThrough(File file, long windowSize) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            MappedFileSrc src = new MappedFileSrc(channel, "src");
+            if (windowSize > 0) {
+                src.setWindowSize(windowSize);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WriteableByteChannelSink sink = new WriteableByteChannelSink(Channels.newChannel(out), "sink");
+            Pipeline pipe = new Pipeline("MappedFileSrcTest");
+            pipe.addMany(src, sink);
+            assertTrue(src.link(sink));
+            final CountDownLatch eos = new CountDownLatch(1);
+            pipe.getBus().connect(new Bus.EOS() {
+                public void endOfStream(GstObject source) {
+                    eos.countDown();
+                }
+            });
+            pipe.play();
+            try {
+                assertTrue("No EOS", eos.await(10, TimeUnit.SECONDS));
+            } finally {
+                pipe.setState(State.NULL);
+                pipe.dispose();
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowTooSmall() throws Exception {
+        FileInputStream in = new FileInputStream(createFile(new byte[1]));
+        try {
+            new MappedFileSrc(in.getChannel(), "src").setWindowSize(4096);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void wholeFileMapped() throws Exception {
+        byte[] data = randomData(100000);
+        assertArrayEquals(data, readThrough(createFile(data), 0));
+        assertEquals("Windows still mapped after stop", 0, MappedFileSrc.getMappedWindowCount());
+    }
+
+    @Test
+    public void fileMappedInWindows() throws Exception {
+        // Not a multiple of the window size, so the last window is short
+        byte[] data = randomData(5 * 65536 + 1234);
+        assertArrayEquals(data, readThrough(createFile(data), 65536));
+        assertEquals("Windows still mapped after stop", 0, MappedFileSrc.getMappedWindowCount());
+    }
+}
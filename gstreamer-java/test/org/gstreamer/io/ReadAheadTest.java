@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReadAheadTest {
+    private static final int MIN_CHUNK = 1024, MAX_CHUNK = 64 * 1024;
+
+    /**
+     * A channel that hands out zeros, a few bytes at a time and slowly if
+     * <tt>delay</tt> is set, and fails once <tt>failAfter</tt> bytes are read.
+     */
+    private static class TestChannel implements ReadableByteChannel {
+        final int delay;
+        final int perRead;
+        final long failAfter;
+        final IOException failure = new IOException("Test failure");
+        long position = 0;
+
+        TestChannel(int delay, int perRead, long failAfter) {
+            this.delay = delay;
+            this.perRead = perRead;
+            this.failAfter = failAfter;
+        }
+
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= failAfter) {
+                throw failure;
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+            }
+            int n = (int) Math.min(Math.min(dst.remaining(), perRead), failAfter - position);
+            dst.position(dst.position() + n);
+            position += n;
+            return n;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    private static byte[] readAll(ReadAhead ra) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(3000);
+        while (ra.read(buf) >= 0) {
+            buf.flip();
+            out.write(buf.array(), 0, buf.limit());
+            buf.clear();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void readsWholeStream() throws IOException {
+        byte[] data = new byte[500000];
+        new Random(1).nextBytes(data);
+        ReadAhead ra = new ReadAhead(Channels.newChannel(new ByteArrayInputStream(data)),
+                4, MIN_CHUNK, MAX_CHUNK, "readsWholeStream");
+        assertArrayEquals(data, readAll(ra));
+        assertEquals(-1, ra.read(ByteBuffer.allocate(10)));
+        assertEquals(data.length, ra.getBytesRead());
+    }
+
+    @Test
+    public void errorAfterData() throws IOException {
+        TestChannel channel = new TestChannel(0, MIN_CHUNK, 10000);
+        ReadAhead ra = new ReadAhead(channel, 4, MIN_CHUNK, MAX_CHUNK, "errorAfterData");
+        ByteBuffer buf = ByteBuffer.allocate(100000);
+        int total = 0;
+        try {
+            for (int n; (n = ra.read(buf)) >= 0; ) {
+                total += n;
+            }
+            fail("Error not propagated");
+        } catch (IOException ex) {
+            assertSame(channel.failure, ex);
+        }
+        assertEquals("Data before the error lost", 10000, total);
+    }
+
+    @Test
+    public void chunkSizeGrowsForFastChannel() throws Exception {
+        ReadAhead ra = new ReadAhead(new TestChannel(0, Integer.MAX_VALUE, Long.MAX_VALUE),
+                4, MIN_CHUNK, MAX_CHUNK, "chunkSizeGrowsForFastChannel");
+        ByteBuffer buf = ByteBuffer.allocate(MAX_CHUNK);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ra.getChunkSize() < MAX_CHUNK && System.currentTimeMillis() < deadline) {
+            buf.clear();
+            ra.read(buf);
+        }
+        ra.stop();
+        assertEquals(MAX_CHUNK, ra.getChunkSize());
+        drain(ra);
+    }
+
+    @Test
+    public void chunkSizeStaysSmallForSlowChannel() throws Exception {
+        // 1k every 50ms is far below a 1k chunk per 20ms
+        ReadAhead ra = new ReadAhead(new TestChannel(50, MIN_CHUNK, Long.MAX_VALUE),
+                4, MIN_CHUNK, MAX_CHUNK, "chunkSizeStaysSmallForSlowChannel");
+        ByteBuffer buf = ByteBuffer.allocate(MAX_CHUNK);
+        for (int i = 0; i < 5; ++i) {
+            buf.clear();
+            ra.read(buf);
+            assertEquals(MIN_CHUNK, ra.getChunkSize());
+        }
+        ra.stop();
+        drain(ra);
+    }
+
+    @Test
+    public void underrunWhenReaderFallsBehind() throws Exception {
+        Pipe pipe = Pipe.open();
+        ReadAhead ra = new ReadAhead(pipe.source(), 4, MIN_CHUNK, MAX_CHUNK, "underrunWhenReaderFallsBehind");
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        final Pipe.SinkChannel sink = pipe.sink();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    sink.write(ByteBuffer.wrap(new byte[10]));
+                    sink.close();
+                } catch (Exception ex) {
+                }
+            }
+        };
+        writer.start();
+        assertEquals(10, ra.read(buf));
+        assertTrue("Underrun not counted", ra.getUnderrunCount() > 0);
+        buf.clear();
+        assertEquals(-1, ra.read(buf));
+        writer.join();
+        pipe.source().close();
+    }
+
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        Pipe pipe = Pipe.open();
+        ReadAhead ra = new ReadAhead(pipe.source(), 4, MIN_CHUNK, MAX_CHUNK, "interruptedWhileWaiting");
+        Thread.currentThread().interrupt();
+        try {
+            for (int i = 0; i < 2; ++i) {
+                try {
+                    ra.read(ByteBuffer.allocate(10));
+                    fail("Interrupt not propagated");
+                } catch (InterruptedIOException ex) {
+                    assertTrue("Interrupt status cleared", Thread.currentThread().isInterrupted());
+                }
+            }
+        } finally {
+            Thread.interrupted();
+            ra.stop();
+            pipe.sink().close();
+            ra.join();
+            pipe.source().close();
+        }
+    }
+
+    private static void drain(ReadAhead ra) throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_CHUNK);
+        while (ra.read(buf) >= 0) {
+            buf.clear();
+        }
+        ra.join();
+    }
+}
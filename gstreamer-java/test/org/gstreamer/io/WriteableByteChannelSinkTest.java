@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gstreamer.Bus;
+import org.gstreamer.Element;
+import org.gstreamer.Gst;
+import org.gstreamer.GstObject;
+import org.gstreamer.Pipeline;
+import org.gstreamer.State;
+import org.gstreamer.io.WriteableByteChannelSink.OverflowPolicy;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class WriteableByteChannelSinkTest {
+    private static final int BUFFERS = 10, BUFFER_SIZE = 100;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("WriteableByteChannelSinkTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    private static class CountingStream extends ByteArrayOutputStream {
+        final AtomicInteger flushes = new AtomicInteger();
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs fakesrc into the sink, and calls <tt>atEOS</tt> from the EOS
+     * message, before the pipeline is stopped.
+     */
+    private static void runToEOS(Element sink, final Runnable atEOS) throws Exception {
+        Pipeline pipe = Pipeline.launch("fakesrc name=src num-buffers=" + BUFFERS
+                + " sizetype=fixed sizemax=" + BUFFER_SIZE);
+        pipe.add(sink);
+        assertTrue(pipe.getElementByName("src").link(sink));
+        final CountDownLatch eos = new CountDownLatch(1);
+        pipe.getBus().connect(new Bus.EOS() {
+            public void endOfStream(GstObject source) {
+                atEOS.run();
+                eos.countDown();
+            }
+        });
+        pipe.play();
+        try {
+            assertTrue("No EOS", eos.await(10, TimeUnit.SECONDS));
+        } finally {
+            pipe.setState(State.NULL);
+        }
+    }
+
+    @Test
+    public void batchedDataWrittenAtEOS() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WriteableByteChannelSink sink = new WriteableByteChannelSink(Channels.newChannel(out), "sink");
+        sink.setBatching(1 << 20, 0, TimeUnit.SECONDS);
+        final AtomicInteger atEOS = new AtomicInteger();
+        runToEOS(sink, new Runnable() {
+            public void run() {
+                atEOS.set(out.size());
+            }
+        });
+        assertEquals(BUFFERS * BUFFER_SIZE, atEOS.get());
+        assertEquals(BUFFERS * BUFFER_SIZE, sink.getBytesWritten());
+    }
+
+    @Test
+    public void asyncQueueDrainedAtEOS() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WriteableByteChannelSink sink = new WriteableByteChannelSink(Channels.newChannel(out), "sink");
+        sink.setBatching(3 * BUFFER_SIZE, 0, TimeUnit.SECONDS);
+        sink.setAsyncWriter(4, OverflowPolicy.BLOCK);
+        final AtomicInteger atEOS = new AtomicInteger();
+        runToEOS(sink, new Runnable() {
+            public void run() {
+                synchronized (out) {
+                    atEOS.set(out.size());
+                }
+            }
+        });
+        assertEquals(BUFFERS * BUFFER_SIZE, atEOS.get());
+        assertEquals(0, sink.getQueueDepth());
+    }
+
+    @Test
+    public void streamFlushedPerBatch() throws Exception {
+        final CountingStream out = new CountingStream();
+        OutputStreamSink sink = new OutputStreamSink(out, "sink");
+        sink.setBatching(1 << 20, 0, TimeUnit.SECONDS);
+        final AtomicInteger dataAtEOS = new AtomicInteger();
+        final AtomicInteger flushesAtEOS = new AtomicInteger();
+        runToEOS(sink, new Runnable() {
+            public void run() {
+                dataAtEOS.set(out.size());
+                flushesAtEOS.set(out.flushes.get());
+            }
+        });
+        assertEquals(BUFFERS * BUFFER_SIZE, dataAtEOS.get());
+        // Once for the single batch, and once for EOS
+        assertEquals(2, flushesAtEOS.get());
+    }
+
+    @Test
+    public void streamWrittenWithoutBatching() throws Exception {
+        final CountingStream out = new CountingStream();
+        OutputStreamSink sink = new OutputStreamSink(out, "sink");
+        final AtomicInteger dataAtEOS = new AtomicInteger();
+        final AtomicInteger flushesAtEOS = new AtomicInteger();
+        runToEOS(sink, new Runnable() {
+            public void run() {
+                dataAtEOS.set(out.size());
+                flushesAtEOS.set(out.flushes.get());
+            }
+        });
+        assertEquals(BUFFERS * BUFFER_SIZE, dataAtEOS.get());
+        assertEquals(BUFFERS * BUFFER_SIZE, sink.getBytesWritten());
+        // Only for EOS, not for every buffer
+        assertEquals(1, flushesAtEOS.get());
+    }
+}
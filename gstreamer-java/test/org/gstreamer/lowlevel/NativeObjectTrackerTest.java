@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.gstreamer.Buffer;
+import org.gstreamer.GarbageCollectionTest;
+import org.gstreamer.Gst;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class NativeObjectTrackerTest {
+    private static final NativeObjectTracker tracker = NativeObjectTracker.getInstance();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("NativeObjectTrackerTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    @Before
+    public void setUp() {
+        tracker.setSampleRate(1);
+        tracker.setEnabled(true);
+        tracker.reset();
+    }
+
+    @After
+    public void tearDown() {
+        tracker.setEnabled(false);
+    }
+
+    private static long bufferBytes() {
+        Long bytes = tracker.getLiveBytes().get(Buffer.class.getName());
+        return bytes != null ? bytes : 0;
+    }
+
+    @Test
+    public void liveBytes() {
+        long before = bufferBytes();
+        Buffer buffer = new Buffer(4096);
+        assertEquals("Buffer size not accounted", before + 4096, bufferBytes());
+        assertEquals("Created count wrong", Long.valueOf(1), tracker.getCreatedCounts().get(Buffer.class.getName()));
+        buffer.dispose();
+        assertEquals("Buffer size not released", before, bufferBytes());
+        assertFalse("Disposed buffer reported as leaked", tracker.getLeakedCounts().containsKey(Buffer.class.getName()));
+    }
+
+    @Test
+    public void leakedBuffer() throws Exception {
+        Buffer buffer = new Buffer(4096);
+        WeakReference<Buffer> ref = new WeakReference<Buffer>(buffer);
+        buffer = null;
+        assertTrue("Buffer not garbage collected", GarbageCollectionTest.waitGC(ref));
+        for (int i = 0; tracker.getLeakSites().isEmpty() && i < 10; ++i) {
+            Thread.sleep(100);
+        }
+        assertEquals("Leak not counted", Long.valueOf(1), tracker.getLeakedCounts().get(Buffer.class.getName()));
+        String site = tracker.getLeakSites().keySet().iterator().next();
+        assertTrue("Wrong allocation site: " + site, site.startsWith(getClass().getName() + ".leakedBuffer"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013 gstreamer-java contributors
+ *
+ * This file is part of gstreamer-java.
+ *
+ * This code is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License version 3 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * version 3 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.gstreamer.lowlevel;
+
+import static org.junit.Assert.assertEquals;
+
+import org.gstreamer.Element;
+import org.gstreamer.ElementFactory;
+import org.gstreamer.Event;
+import org.gstreamer.Format;
+import org.gstreamer.Gst;
+import org.gstreamer.Message;
+import org.gstreamer.MessageType;
+import org.gstreamer.Query;
+import org.gstreamer.event.EOSEvent;
+import org.gstreamer.message.EOSMessage;
+import org.gstreamer.query.DurationQuery;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.jna.Pointer;
+
+public class SubtypeMapperTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Gst.init("SubtypeMapperTest", new String[] {});
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Gst.deinit();
+    }
+
+    @Test
+    public void eventTypeOffset() {
+        Event event = new EOSEvent();
+        Pointer ptr = event.getNativeAddress();
+        GstEventAPI.EventStruct struct = new GstEventAPI.EventStruct(ptr);
+        assertEquals(struct.readField("type"), ptr.getInt(SubtypeMapper.EVENT_TYPE_OFFSET));
+        assertEquals(EOSEvent.class, SubtypeMapper.subtypeFor(Event.class, ptr));
+    }
+
+    @Test
+    public void messageTypeOffset() {
+        Element src = ElementFactory.make("fakesrc", "src");
+        Message message = new EOSMessage(src);
+        Pointer ptr = message.getNativeAddress();
+        GstMessageAPI.MessageStruct struct = new GstMessageAPI.MessageStruct(ptr);
+        assertEquals(((MessageType) struct.readField("type")).intValue(), ptr.getInt(SubtypeMapper.MESSAGE_TYPE_OFFSET));
+        assertEquals(EOSMessage.class, SubtypeMapper.subtypeFor(Message.class, ptr));
+    }
+
+    @Test
+    public void queryTypeOffset() {
+        Query query = new DurationQuery(Format.TIME);
+        Pointer ptr = query.getNativeAddress();
+        GstQueryAPI.QueryStruct struct = new GstQueryAPI.QueryStruct(ptr);
+        assertEquals(struct.readField("type"), ptr.getInt(SubtypeMapper.QUERY_TYPE_OFFSET));
+        assertEquals(DurationQuery.class, SubtypeMapper.subtypeFor(Query.class, ptr));
+    }
+}